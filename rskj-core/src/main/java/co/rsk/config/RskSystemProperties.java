@@ -104,6 +104,10 @@ public class RskSystemProperties extends SystemProperties {
         return config.hasPath("sync.waitForSync") && config.getBoolean("sync.waitForSync");
     }
 
+    public boolean parallelBlockDownload() {
+        return config.hasPath("sync.parallelDownload") && config.getBoolean("sync.parallelDownload");
+    }
+
     // TODO review added method
     public boolean isRpcEnabled() {
         return config.hasPath("rpc.enabled") ?
@@ -159,6 +163,36 @@ public class RskSystemProperties extends SystemProperties {
                 config.getBoolean("blockchain.flush") : true;
     }
 
+    public long trieCacheSize() {
+        return config.hasPath("trie.cache.size") ?
+                config.getLong("trie.cache.size") : 64L * 1024 * 1024;
+    }
+
+    public int trieParallelHashThreshold() {
+        return config.hasPath("trie.hash.parallel.threshold") ?
+                config.getInt("trie.hash.parallel.threshold") : 1024;
+    }
+
+    public int executionParallelThreads() {
+        return config.hasPath("execution.parallel.threads") ?
+                config.getInt("execution.parallel.threads") : 0;
+    }
+
+    public boolean isPruneEnabled() {
+        return config.hasPath("prune.enabled") ?
+                config.getBoolean("prune.enabled") : false;
+    }
+
+    public int pruneBlocks() {
+        return config.hasPath("prune.blocks") ?
+                config.getInt("prune.blocks") : 1000;
+    }
+
+    public int pruneInterval() {
+        return config.hasPath("prune.interval") ?
+                config.getInt("prune.interval") : 1000;
+    }
+
     public int soLingerTime() {
         return config.hasPath("rpc.linger.time") ?
                 config.getInt("rpc.linger.time") : -1;
@@ -18,11 +18,13 @@
 
 package co.rsk.core;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import co.rsk.db.RepositoryImpl;
 import co.rsk.panic.PanicProcessor;
+import co.rsk.trie.TrieIterator;
 import org.apache.commons.lang3.StringUtils;
 import org.ethereum.core.AccountState;
 import org.ethereum.core.Repository;
@@ -34,43 +36,74 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.ethereum.crypto.SHA3Helper.sha3;
 
 /**
  * Created by mario on 13/01/17.
  */
 public class NetworkStateExporter {
     private static final byte[] ZERO_BYTE_ARRAY = new byte[]{0};
+    private static final int ACCOUNTS_BY_RANGE = 100000;
+    // number of two bytes prefixes of the address hashes
+    private static final int PREFIXES = 1 << 16;
     private static final Logger logger = LoggerFactory.getLogger(NetworkStateExporter.class);
 
     private Repository repository;
+    private final int accountsByRange;
 
     private static final PanicProcessor panicProcessor = new PanicProcessor();
 
     public NetworkStateExporter(Repository repository) {
+        this(repository, ACCOUNTS_BY_RANGE);
+    }
+
+    NetworkStateExporter(Repository repository, int accountsByRange) {
         this.repository = repository;
+        this.accountsByRange = accountsByRange;
     }
 
+    /**
+     * exportStatus writes the accounts and contracts of the current state to a json file
+     *
+     * The accounts are written while they are read, so the whole state is not kept in memory.
+     * The state trie only has the hashes of the addresses, so the account hashes are split
+     * in ranges of accountsByRange accounts approximately. For each range, the addresses
+     * with their hash in the range are read from the details, and the accounts in the range
+     * are visited with a trie iterator
+     *
+     * Each range is one full pass over the details keys, so the time grows with the square of
+     * the number of accounts: n accounts take n / accountsByRange passes of n keys.
+     * accountsByRange trades the memory used by the addresses of a range for the number of passes
+     *
+     * @param outputFile    the file name
+     *
+     * @return  true if the state was exported
+     */
     public boolean exportStatus(String outputFile) {
-        Repository frozenRepository = this.repository.getSnapshotTo(this.repository.getRoot());
+        RepositoryImpl frozenRepository = (RepositoryImpl) this.repository.getSnapshotTo(this.repository.getRoot());
 
         File dumpFile = new File(outputFile);
 
-        try(FileWriter fw = new FileWriter(dumpFile.getAbsoluteFile()); BufferedWriter bw = new BufferedWriter(fw)) {
-            JsonNodeFactory jsonFactory = new JsonNodeFactory(false);
-            ObjectNode mainNode = jsonFactory.objectNode();
-            for (ByteArrayWrapper address : frozenRepository.getAccountsKeys()) {
-                if(!address.equals(new ByteArrayWrapper(ZERO_BYTE_ARRAY))) {
-                    mainNode.set(Hex.toHexString(address.getData()), createAccountNode(mainNode, address.getData(), frozenRepository));
-                }
-            }
-            ObjectMapper mapper = new ObjectMapper();
-            ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
-            bw.write(writer.writeValueAsString(mainNode));
+        try (JsonGenerator generator = new JsonFactory().createGenerator(dumpFile.getAbsoluteFile(), JsonEncoding.UTF8)) {
+            generator.setPrettyPrinter(new DefaultPrettyPrinter());
+            generator.writeStartObject();
+
+            long[] naddresses = new long[1];
+            frozenRepository.forEachAccountAddress(address -> naddresses[0]++);
+
+            int nranges = (int) Math.min(PREFIXES, Math.max(1, (naddresses[0] + this.accountsByRange - 1) / this.accountsByRange));
+
+            for (int k = 0; k < nranges; k++)
+                writeAccounts(generator, frozenRepository, PREFIXES * k / nranges, PREFIXES * (k + 1) / nranges);
+
+            generator.writeEndObject();
             return true;
         } catch (IOException e) {
             logger.error(e.getMessage(), e);
@@ -79,30 +112,66 @@ public class NetworkStateExporter {
         }
     }
 
-    private ObjectNode createContractNode(ContractDetails contractDetails, ObjectNode accountNode) {
-        ObjectNode contractNode = accountNode.objectNode();
-        contractNode.put("code", Hex.toHexString(contractDetails.getCode()));
-        ObjectNode dataNode = contractNode.objectNode();
+    // writes the accounts whose address hash starts with a two bytes prefix in [from, to)
+    private void writeAccounts(JsonGenerator generator, RepositoryImpl frozenRepository, int from, int to) throws IOException {
+        Map<ByteArrayWrapper, byte[]> addresses = new HashMap<>();
+
+        frozenRepository.forEachAccountAddress(address -> {
+            byte[] hash = sha3(address);
+            int prefix = ((hash[0] & 0xff) << 8) | (hash[1] & 0xff);
+
+            if (prefix >= from && prefix < to)
+                addresses.put(new ByteArrayWrapper(hash), address);
+        });
+
+        byte[] fromKey = from == 0 ? null : toPrefix(from);
+        byte[] toKey = to == PREFIXES ? null : toPrefix(to);
+
+        TrieIterator iterator = frozenRepository.getAccountsIterator(fromKey, toKey);
+
+        while (iterator.hasNext()) {
+            TrieIterator.Entry entry = iterator.next();
+            byte[] address = addresses.get(new ByteArrayWrapper(entry.getKey()));
+
+            if (address == null) {
+                logger.warn("Account without address in state, hash {}", Hex.toHexString(entry.getKey()));
+                continue;
+            }
+
+            if (Arrays.equals(address, ZERO_BYTE_ARRAY))
+                continue;
+
+            generator.writeObjectFieldStart(Hex.toHexString(address));
+            writeAccount(generator, address, new AccountState(entry.getValue()), frozenRepository);
+            generator.writeEndObject();
+        }
+    }
+
+    private static byte[] toPrefix(int prefix) {
+        return new byte[] { (byte) (prefix >> 8), (byte) prefix };
+    }
+
+    private void writeContract(JsonGenerator generator, ContractDetails contractDetails) throws IOException {
+        generator.writeStringField("code", Hex.toHexString(contractDetails.getCode()));
+        generator.writeObjectFieldStart("data");
         for (DataWord key : contractDetails.getStorageKeys()) {
             byte[] value = contractDetails.getBytes(key);
-            dataNode.put(Hex.toHexString(key.getData()), Hex.toHexString(value));
+            generator.writeStringField(Hex.toHexString(key.getData()), Hex.toHexString(value));
         }
-        contractNode.set("data", dataNode);
-        return contractNode;
+        generator.writeEndObject();
     }
 
-    private ObjectNode createAccountNode(ObjectNode mainNode, byte[] address, Repository frozenRepository) {
-        ObjectNode accountNode = mainNode.objectNode();
-        AccountState accountState = frozenRepository.getAccountState(address);
+    private void writeAccount(JsonGenerator generator, byte[] address, AccountState accountState, Repository frozenRepository) throws IOException {
         BigInteger balance = accountState.getBalance();
-        accountNode.put("balance", balance.toString());
+        generator.writeStringField("balance", balance.toString());
         BigInteger nonce = accountState.getNonce();
-        accountNode.put("nonce", nonce.toString());
+        generator.writeStringField("nonce", nonce.toString());
         ContractDetails contractDetails = frozenRepository.getContractDetails(address);
         String addWrapper = Hex.toHexString(address);
         if (!contractDetails.isNullObject() && !StringUtils.equals(PrecompiledContracts.REMASC_ADDR, addWrapper)) {
-            accountNode.set("contract", createContractNode(contractDetails, accountNode));
+            generator.writeObjectFieldStart("contract");
+            writeContract(generator, contractDetails);
+            generator.writeEndObject();
         }
-        return accountNode;
     }
 }
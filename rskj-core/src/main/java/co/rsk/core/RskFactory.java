@@ -21,12 +21,18 @@ package co.rsk.core;
 import co.rsk.blocks.FileBlockPlayer;
 import co.rsk.blocks.FileBlockRecorder;
 import co.rsk.config.RskSystemProperties;
+import co.rsk.core.bc.BlockChainImpl;
+import co.rsk.db.StatePruner;
 import co.rsk.net.BlockProcessResult;
+import co.rsk.trie.TrieStoreImpl;
+import co.rsk.trie.TrieStorePruner;
 import org.ethereum.config.DefaultConfig;
 import org.ethereum.config.SystemProperties;
 import org.ethereum.core.Block;
 import org.ethereum.core.Blockchain;
 import org.ethereum.core.ImportResult;
+import org.ethereum.core.Repository;
+import org.ethereum.db.BlockStore;
 import org.ethereum.net.eth.EthVersion;
 import org.ethereum.net.server.ChannelManager;
 import org.ethereum.util.BuildInfo;
@@ -93,6 +99,14 @@ public class RskFactory {
 
         rs.getBlockchain().setRsk(true);
 
+        if (RskSystemProperties.RSKCONFIG.isPruneEnabled()) {
+            TrieStorePruner pruner = new TrieStorePruner(context.getBean(TrieStoreImpl.class));
+            StatePruner statePruner = new StatePruner(context.getBean(BlockStore.class), context.getBean(Repository.class).getDetailsDataStore(), pruner,
+                    RskSystemProperties.RSKCONFIG.pruneBlocks(), RskSystemProperties.RSKCONFIG.pruneInterval());
+
+            context.getBean(BlockChainImpl.class).setStatePruner(statePruner);
+        }
+
         if (RskSystemProperties.RSKCONFIG.isBlocksEnabled()) {
             String recorder = RskSystemProperties.RSKCONFIG.blocksRecorder();
 
@@ -21,12 +21,16 @@ package co.rsk.core;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.mine.MinerClient;
 import co.rsk.mine.MinerServer;
+import co.rsk.net.BlockDownloader;
 import co.rsk.net.BlockStore;
 import co.rsk.net.MessageHandler;
 import co.rsk.net.NodeBlockProcessor;
 import co.rsk.net.NodeMessageHandler;
+import co.rsk.net.StateSyncProcessor;
 import co.rsk.net.handler.TxHandlerImpl;
+import co.rsk.trie.TrieStoreImpl;
 import org.ethereum.facade.EthereumImpl;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -40,6 +44,11 @@ public class RskImpl extends EthereumImpl implements Rsk {
 
     private MessageHandler messageHandler;
 
+    private StateSyncProcessor stateSyncProcessor;
+
+    @Autowired
+    private TrieStoreImpl trieStore;
+
     @Override
     public MinerClient getMinerClient() {
         return getWorldManager().getMinerClient();
@@ -56,6 +65,7 @@ public class RskImpl extends EthereumImpl implements Rsk {
             this.nodeBlockProcessor = getNodeBlockProcessor(); // Initialize nodeBlockProcessor if not done already.
             NodeMessageHandler handler = new NodeMessageHandler(this.nodeBlockProcessor, getChannelManager(),
                     getWorldManager().getPendingState(), new TxHandlerImpl(getWorldManager()));
+            handler.setStateSyncProcessor(getStateSyncProcessor());
             handler.start();
             this.messageHandler = handler;
         }
@@ -67,10 +77,23 @@ public class RskImpl extends EthereumImpl implements Rsk {
     public NodeBlockProcessor getNodeBlockProcessor() {
         if (this.nodeBlockProcessor == null) {
             this.nodeBlockProcessor = new NodeBlockProcessor(new BlockStore(), this.getWorldManager().getBlockchain(), this.getWorldManager());
+
+            if (RskSystemProperties.RSKCONFIG.parallelBlockDownload()) {
+                BlockDownloader blockDownloader = new BlockDownloader();
+                blockDownloader.start();
+                this.nodeBlockProcessor.setBlockDownloader(blockDownloader);
+            }
         }
         return this.nodeBlockProcessor;
     }
 
+    public StateSyncProcessor getStateSyncProcessor() {
+        if (this.stateSyncProcessor == null && this.trieStore != null)
+            this.stateSyncProcessor = new StateSyncProcessor(this.trieStore);
+
+        return this.stateSyncProcessor;
+    }
+
     @Override
     public boolean isPlayingBlocks() {
         return isplaying;
@@ -21,6 +21,7 @@ package co.rsk.core.bc;
 import co.rsk.config.RskSystemProperties;
 import com.google.common.annotations.VisibleForTesting;
 import co.rsk.blocks.BlockRecorder;
+import co.rsk.db.StatePruner;
 import co.rsk.net.Metrics;
 import co.rsk.panic.PanicProcessor;
 import co.rsk.validators.BlockValidator;
@@ -108,6 +109,7 @@ public class BlockChainImpl implements Blockchain, org.ethereum.facade.Blockchai
     private final Object accessLock = new Object();
     private BlockExecutor blockExecutor;
     private BlockRecorder blockRecorder;
+    private StatePruner statePruner;
     private boolean isrsk;
     private boolean noValidation;
 
@@ -309,6 +311,9 @@ public class BlockChainImpl implements Blockchain, org.ethereum.facade.Blockchai
             logger.trace("Start flushData");
             flushData();
 
+            if (statePruner != null)
+                statePruner.onBestBlock(block);
+
             logger.trace("Better block {} {}", block.getNumber(), block.getShortHash());
 
             logger.debug("block added to the blockChain: index: [{}]", block.getNumber());
@@ -468,6 +473,10 @@ public class BlockChainImpl implements Blockchain, org.ethereum.facade.Blockchai
         this.blockRecorder = blockRecorder;
     }
 
+    public void setStatePruner(StatePruner statePruner) {
+        this.statePruner = statePruner;
+    }
+
     @Override
     public ReceiptStore getReceiptStore() { return receiptStore; }
 
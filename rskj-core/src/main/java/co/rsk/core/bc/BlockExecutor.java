@@ -18,10 +18,16 @@
 
 package co.rsk.core.bc;
 
+import co.rsk.config.RskSystemProperties;
 import co.rsk.panic.PanicProcessor;
+import org.ethereum.config.SystemProperties;
 import org.ethereum.core.*;
 import org.ethereum.db.BlockStore;
+import org.ethereum.db.ByteArrayWrapper;
+import org.ethereum.db.RecordingRepositoryTrack;
 import org.ethereum.listener.EthereumListener;
+import org.ethereum.vm.DataWord;
+import org.ethereum.vm.PrecompiledContracts;
 import org.ethereum.vm.program.invoke.ProgramInvokeFactory;
 import org.ethereum.vm.program.invoke.ProgramInvokeFactoryImpl;
 import org.slf4j.Logger;
@@ -30,7 +36,12 @@ import org.spongycastle.util.encoders.Hex;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * BlockExecutor has methods to execute block with its transactions.
@@ -38,6 +49,10 @@ import java.util.List;
  * - execute and validate the block final state
  * - execute and complete the block final state
  * <p>
+ * When parallel execution is enabled, the transactions are first executed in parallel over
+ * the parent state, see SpeculativeExecution, and then their results are applied in order,
+ * executing again the transactions with conflicts
+ * <p>
  * Created by ajlopez on 29/07/2016.
  */
 public class BlockExecutor {
@@ -48,15 +63,22 @@ public class BlockExecutor {
     private Blockchain blockChain;
     private BlockStore blockStore;
     private EthereumListener listener;
+    private final int threads;
+    private ExecutorService executorService;
 
     private ProgramInvokeFactory programInvokeFactory = new ProgramInvokeFactoryImpl();
 
 
     public BlockExecutor(Repository repository, Blockchain blockChain, BlockStore blockStore, EthereumListener listener) {
+        this(repository, blockChain, blockStore, listener, RskSystemProperties.RSKCONFIG.executionParallelThreads());
+    }
+
+    public BlockExecutor(Repository repository, Blockchain blockChain, BlockStore blockStore, EthereumListener listener, int threads) {
         this.repository = repository;
         this.blockChain = blockChain;
         this.blockStore = blockStore;
         this.listener = listener;
+        this.threads = threads;
     }
 
     /**
@@ -189,35 +211,59 @@ public class BlockExecutor {
 
         byte[] lastStateRootHash = initialRepository.getRoot();
 
-        Repository track = initialRepository.startTracking();
+        List<Transaction> transactions = block.getTransactionsList();
+        List<SpeculativeExecution> executions = executeInParallel(block, stateRoot, transactions);
+
+        RecordingRepositoryTrack recordingTrack = executions == null ? null : new RecordingRepositoryTrack(initialRepository);
+        Repository track = recordingTrack == null ? initialRepository.startTracking() : recordingTrack;
+        Set<ByteArrayWrapper> writtenAccounts = new HashSet<>();
+        Set<ByteArrayWrapper> writtenCells = new HashSet<>();
         int i = 1;
         long totalGasUsed = 0;
         long totalPaidFees = 0;
         List<TransactionReceipt> receipts = new ArrayList<>();
         List<Transaction> executedTransactions = new ArrayList<>();
 
-        for (Transaction tx : block.getTransactionsList()) {
+        for (int k = 0; k < transactions.size(); k++) {
+            Transaction tx = transactions.get(k);
+            SpeculativeExecution execution = executions == null ? null : executions.get(k);
+            TransactionExecutor txExecutor;
+
             logger.info("apply block: [{}] tx: [{}] ", block.getNumber(), i);
-            TransactionExecutor txExecutor = new TransactionExecutor(tx, block.getCoinbase(), track, blockStore, blockChain.getReceiptStore(), programInvokeFactory, block, listener, totalGasUsed);
-
-            boolean readyToExecute = txExecutor.init();
-            if (!ignoreReadyToExecute && !readyToExecute) {
-                if (discardInvalidTxs) {
-                    logger.warn("block: [{}] discarded tx: [{}]", block.getNumber(), Hex.toHexString(tx.getHash()));
-                    continue;
-                } else {
-                    logger.warn("block: [{}] execution interrupted because of invalid tx: [{}]", block.getNumber(), Hex.toHexString(tx.getHash()));
-                    return BlockResult.INTERRUPTED_EXECUTION_BLOCK_RESULT;
+
+            if (execution != null && execution.canBeApplied(totalGasUsed, writtenAccounts, writtenCells)) {
+                executedTransactions.add(tx);
+
+                txExecutor = execution.applyTo(track, listener);
+
+                logger.info("tx applied");
+            } else {
+                txExecutor = new TransactionExecutor(tx, block.getCoinbase(), track, blockStore, blockChain.getReceiptStore(), programInvokeFactory, block, listener, totalGasUsed);
+
+                boolean readyToExecute = txExecutor.init();
+                if (!ignoreReadyToExecute && !readyToExecute) {
+                    if (discardInvalidTxs) {
+                        logger.warn("block: [{}] discarded tx: [{}]", block.getNumber(), Hex.toHexString(tx.getHash()));
+                        continue;
+                    } else {
+                        logger.warn("block: [{}] execution interrupted because of invalid tx: [{}]", block.getNumber(), Hex.toHexString(tx.getHash()));
+                        return BlockResult.INTERRUPTED_EXECUTION_BLOCK_RESULT;
+                    }
                 }
-            }
 
-            executedTransactions.add(tx);
+                executedTransactions.add(tx);
+
+                txExecutor.execute();
+                txExecutor.go();
+                txExecutor.finalization();
 
-            txExecutor.execute();
-            txExecutor.go();
-            txExecutor.finalization();
+                logger.info("tx executed");
+            }
 
-            logger.info("tx executed");
+            if (recordingTrack != null) {
+                writtenAccounts.addAll(recordingTrack.getWrittenAccounts());
+                writtenCells.addAll(recordingTrack.getWrittenStorageCells());
+            }
 
             track.commit();
 
@@ -231,7 +277,8 @@ public class BlockExecutor {
             TransactionReceipt receipt = new TransactionReceipt();
             receipt.setGasUsed(gasUsed);
             receipt.setCumulativeGas(totalGasUsed);
-            lastStateRootHash = initialRepository.getRoot();
+            // intermediate states are only hashed, the final state is saved once per block
+            lastStateRootHash = initialRepository.calculateRoot();
             receipt.setPostTxState(lastStateRootHash);
             receipt.setTransaction(tx);
             receipt.setLogInfoList(txExecutor.getVMLogs());
@@ -248,6 +295,57 @@ public class BlockExecutor {
             logger.info("tx done");
         }
 
+        if (!executedTransactions.isEmpty())
+            lastStateRootHash = initialRepository.getRoot();
+
         return new BlockResult(executedTransactions, receipts, lastStateRootHash, totalGasUsed, totalPaidFees);
     }
+
+    /**
+     * executeInParallel executes the transactions over the parent state, using the parallel threads
+     *
+     * The transactions to precompiled contracts are not executed, they are executed later in order
+     *
+     * @return  the speculative executions, with null for the transactions not executed,
+     *          or null if the parallel execution is disabled
+     */
+    private List<SpeculativeExecution> executeInParallel(Block block, byte[] stateRoot, List<Transaction> transactions) {
+        if (this.threads < 2 || transactions.size() < 2 || SystemProperties.CONFIG.vmTrace())
+            return null;
+
+        List<SpeculativeExecution> executions = new ArrayList<>();
+        List<Callable<Object>> tasks = new ArrayList<>();
+
+        for (Transaction tx : transactions) {
+            if (!tx.isContractCreation() && PrecompiledContracts.getContractForAddress(new DataWord(tx.getReceiveAddress())) != null) {
+                executions.add(null);
+                continue;
+            }
+
+            SpeculativeExecution execution = new SpeculativeExecution(tx, block, repository, stateRoot, blockStore, blockChain.getReceiptStore(), programInvokeFactory);
+            executions.add(execution);
+            tasks.add(Executors.callable(execution::execute));
+        }
+
+        try {
+            getExecutorService().invokeAll(tasks);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        return executions;
+    }
+
+    private synchronized ExecutorService getExecutorService() {
+        if (this.executorService == null)
+            this.executorService = Executors.newFixedThreadPool(this.threads, r -> {
+                Thread thread = new Thread(r, "BlockExecutor");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        return this.executorService;
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.core.bc;
+
+import org.ethereum.core.*;
+import org.ethereum.db.BlockStore;
+import org.ethereum.db.ByteArrayWrapper;
+import org.ethereum.db.ReceiptStore;
+import org.ethereum.db.RecordingRepositoryTrack;
+import org.ethereum.listener.EthereumListener;
+import org.ethereum.listener.EthereumListenerAdapter;
+import org.ethereum.vm.program.invoke.ProgramInvokeFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * SpeculativeExecution executes a transaction of a block over the state of the parent block,
+ * in a recording track, so it can run in parallel with the other transactions of the block
+ *
+ * Its result can be applied to the block state only if the accounts and storage cells
+ * it read were not written by the previous transactions of the block. The fees are added
+ * to the fees account in the finalization, so they are applied as a balance increment,
+ * and the fees account is not a conflict unless the transaction read it before.
+ * The listener events are kept, and only sent when the result is applied
+ */
+class SpeculativeExecution {
+    private static final Logger logger = LoggerFactory.getLogger("blockexecutor");
+
+    private final Transaction tx;
+    private final Block block;
+    private final Repository repository;
+    private final byte[] stateRoot;
+    private final BlockStore blockStore;
+    private final ReceiptStore receiptStore;
+    private final ProgramInvokeFactory programInvokeFactory;
+    private final DeferredListener listener = new DeferredListener();
+
+    private Repository snapshot;
+    private RecordingRepositoryTrack track;
+    private TransactionExecutor executor;
+    private Set<ByteArrayWrapper> readAccounts;
+    private Set<ByteArrayWrapper> readCells;
+    private boolean executed;
+
+    SpeculativeExecution(Transaction tx, Block block, Repository repository, byte[] stateRoot, BlockStore blockStore, ReceiptStore receiptStore, ProgramInvokeFactory programInvokeFactory) {
+        this.tx = tx;
+        this.block = block;
+        this.repository = repository;
+        this.stateRoot = stateRoot;
+        this.blockStore = blockStore;
+        this.receiptStore = receiptStore;
+        this.programInvokeFactory = programInvokeFactory;
+    }
+
+    /**
+     * execute runs the transaction over a new snapshot of the parent state.
+     * It can be called from any thread
+     */
+    void execute() {
+        try {
+            this.snapshot = this.repository.getSnapshotTo(this.stateRoot);
+            this.track = new RecordingRepositoryTrack(this.snapshot);
+            this.executor = new TransactionExecutor(tx, block.getCoinbase(), this.track, blockStore, receiptStore, programInvokeFactory, block, this.listener, 0);
+
+            if (!this.executor.init())
+                return;
+
+            this.executor.execute();
+            this.executor.go();
+
+            this.readAccounts = this.track.getReadAccounts();
+
+            this.executor.finalization();
+
+            this.readCells = this.track.getReadStorageCells();
+            this.executed = true;
+        }
+        catch (RuntimeException ex) {
+            logger.warn("Speculative execution of tx [{}] failed, it will be executed in order", Hex.toHexString(tx.getHash()), ex);
+        }
+    }
+
+    /**
+     * canBeApplied checks the transaction result is the same it would have in order
+     *
+     * @param gasUsedInTheBlock the gas used by the previous transactions
+     * @param writtenAccounts   the accounts written by the previous transactions
+     * @param writtenCells      the storage cells written by the previous transactions
+     *
+     * @return  true if the transaction was executed, fits in the block gas limit, and has no conflicts
+     */
+    boolean canBeApplied(long gasUsedInTheBlock, Set<ByteArrayWrapper> writtenAccounts, Set<ByteArrayWrapper> writtenCells) {
+        if (!this.executed)
+            return false;
+
+        // the only init check that depends on the previous transactions, besides the state
+        BigInteger txGasLimit = new BigInteger(1, tx.getGasLimit());
+        BigInteger blockGasLimit = new BigInteger(1, block.getGasLimit());
+
+        if (txGasLimit.add(BigInteger.valueOf(gasUsedInTheBlock)).compareTo(blockGasLimit) > 0)
+            return false;
+
+        return Collections.disjoint(this.readAccounts, writtenAccounts) && Collections.disjoint(this.readCells, writtenCells);
+    }
+
+    /**
+     * applyTo moves the transaction result to the block track, and sends the listener events
+     *
+     * @param blockTrack    the block track, with the state after the previous transactions
+     * @param blockListener the block listener, or null
+     *
+     * @return  the transaction executor, with the gas used, fees and logs
+     */
+    TransactionExecutor applyTo(Repository blockTrack, EthereumListener blockListener) {
+        byte[] feesRecipient = this.executor.getFeesRecipient();
+
+        if (this.readAccounts.contains(new ByteArrayWrapper(feesRecipient)))
+            this.track.commitTo(blockTrack, null);
+        else {
+            BigInteger fees = this.track.getBalance(feesRecipient).subtract(this.snapshot.getBalance(feesRecipient));
+            this.track.commitTo(blockTrack, feesRecipient);
+            blockTrack.addBalance(feesRecipient, fees);
+        }
+
+        if (blockListener != null)
+            this.listener.sendTo(blockListener);
+
+        return this.executor;
+    }
+
+    private static class DeferredListener extends EthereumListenerAdapter {
+        private final List<Consumer<EthereumListener>> events = new ArrayList<>();
+
+        @Override
+        public void onVMTraceCreated(String transactionHash, String trace) {
+            this.events.add(listener -> listener.onVMTraceCreated(transactionHash, trace));
+        }
+
+        @Override
+        public void onTransactionExecuted(TransactionExecutionSummary summary) {
+            this.events.add(listener -> listener.onTransactionExecuted(summary));
+        }
+
+        void sendTo(EthereumListener listener) {
+            for (Consumer<EthereumListener> event : this.events)
+                event.accept(listener);
+        }
+    }
+}
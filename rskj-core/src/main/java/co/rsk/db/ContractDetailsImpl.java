@@ -27,6 +27,7 @@ import org.ethereum.datasource.HashMapDB;
 import org.ethereum.datasource.KeyValueDataSource;
 import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.db.ContractDetails;
+import org.ethereum.util.ByteUtil;
 import org.ethereum.util.RLP;
 import org.ethereum.util.RLPElement;
 import org.ethereum.util.RLPItem;
@@ -40,6 +41,7 @@ import org.spongycastle.util.encoders.Hex;
 import javax.annotation.Nullable;
 import java.util.*;
 
+import static org.ethereum.crypto.HashUtil.EMPTY_TRIE_HASH;
 import static org.ethereum.datasource.DataSourcePool.levelDbByName;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.ethereum.util.ByteUtil.toHexString;
@@ -47,6 +49,15 @@ import static org.ethereum.util.ByteUtil.wrap;
 
 /**
  * Created by ajlopez on 05/04/2017.
+ *
+ * The contract storage can be kept in a trie store shared by all the contracts,
+ * i.e. the state trie store. Then, only the changed storage nodes are saved, and
+ * the encoded details have the storage root instead of the storage. The storage keys
+ * are kept as the values of another trie in the same store, and only its root is encoded.
+ *
+ * Without a shared trie store, the storage is serialized with the details, or it is saved
+ * in its own data source if it has many keys. These encoded details are decoded too, and
+ * moved to the shared trie store if it is available
  */
 public class ContractDetailsImpl implements ContractDetails {
     private static final PanicProcessor panicProcessor = new PanicProcessor();
@@ -62,7 +73,19 @@ public class ContractDetailsImpl implements ContractDetails {
     private boolean closed;
     private Set<ByteArrayWrapper> keys = new HashSet<>();
 
+    // the trie store shared by the storage and keys tries, null if the storage is encoded with the details
+    private TrieStore trieStore;
+
+    // the storage keys as trie values, only used with a shared trie store
+    private Trie keysTrie;
+    private int keysCount;
+
     public ContractDetailsImpl(byte[] encoded) {
+        this(encoded, null);
+    }
+
+    public ContractDetailsImpl(byte[] encoded, TrieStore trieStore) {
+        this.trieStore = trieStore;
         decode(encoded);
     }
 
@@ -176,6 +199,11 @@ public class ContractDetailsImpl implements ContractDetails {
         RLPList rlpData = RLP.decode2(rlpBytes);
         RLPList rlpList = (RLPList) rlpData.get(0);
 
+        if (!hasEncodedStorage(rlpList)) {
+            decodeWithTrieStore(rlpList);
+            return;
+        }
+
         RLPItem rlpAddress = (RLPItem) rlpList.get(0);
         RLPItem rlpIsExternalStorage = (RLPItem) rlpList.get(1);
         RLPItem rlpStorage = (RLPItem) rlpList.get(2);
@@ -197,6 +225,46 @@ public class ContractDetailsImpl implements ContractDetails {
             addKey(key.getRLPData());
 
         logger.trace("decoding contract details from bytes, hash {}, address {}, storage size {}, has external storage {}", this.getStorageHashAsString(), this.getAddressAsString(), this.getStorageSize(), this.hasExternalStorage());
+
+        if (this.trieStore != null)
+            this.moveToTrieStore();
+    }
+
+    private void decodeWithTrieStore(RLPList rlpList) {
+        if (this.trieStore == null)
+            throw new IllegalStateException("Contract details without encoded storage need a trie store");
+
+        this.address = rlpList.get(0).getRLPData();
+        this.trie = retrieveTrie(this.trieStore, rlpList.get(1).getRLPData(), true);
+
+        byte[] rlpCode = rlpList.get(2).getRLPData();
+        this.code = rlpCode == null ? EMPTY_BYTE_ARRAY : rlpCode;
+
+        this.keysTrie = retrieveTrie(this.trieStore, rlpList.get(3).getRLPData(), false);
+        this.keysCount = ByteUtil.byteArrayToInt(rlpList.get(4).getRLPData());
+
+        logger.trace("decoding contract details from bytes, hash {}, address {}, storage size {}, using trie store", this.getStorageHashAsString(), this.getAddressAsString(), this.keysCount);
+    }
+
+    /**
+     * getKeysRoot returns the root of the storage keys trie in the encoded details
+     *
+     * @param encoded   the encoded contract details
+     *
+     * @return  the keys trie root, null if the details have their storage encoded
+     */
+    public static byte[] getKeysRoot(byte[] encoded) {
+        RLPList rlpList = (RLPList) RLP.decode2(encoded).get(0);
+
+        if (hasEncodedStorage(rlpList))
+            return null;
+
+        return rlpList.get(3).getRLPData();
+    }
+
+    // the details with encoded storage have the list of storage keys as the last element
+    private static boolean hasEncodedStorage(RLPList rlpList) {
+        return rlpList.get(4) instanceof RLPList;
     }
 
     @Override
@@ -221,6 +289,9 @@ public class ContractDetailsImpl implements ContractDetails {
 
     @Override
     public byte[] getEncoded() {
+        if (this.usesTrieStore())
+            return this.getEncodedWithTrieStore();
+
         logger.trace("getting contract details as bytes, hash {}, address {}, storage size {}, has external storage {}", this.getStorageHashAsString(), this.getAddressAsString(), this.getStorageSize(), this.hasExternalStorage());
 
         byte[] rlpAddress = RLP.encodeElement(address);
@@ -235,16 +306,31 @@ public class ContractDetailsImpl implements ContractDetails {
         return RLP.encodeList(rlpAddress, rlpIsExternalStorage, rlpStorage, rlpCode, rlpKeys);
     }
 
+    private synchronized byte[] getEncodedWithTrieStore() {
+        this.trie.save();
+        this.keysTrie.save();
+
+        logger.trace("getting contract details as bytes, hash {}, address {}, storage size {}, using trie store", this.getStorageHashAsString(), this.getAddressAsString(), this.keysCount);
+
+        byte[] rlpAddress = RLP.encodeElement(this.address);
+        byte[] rlpStorageRoot = RLP.encodeElement(this.trie.getHash());
+        byte[] rlpCode = RLP.encodeElement(this.code);
+        byte[] rlpKeysRoot = RLP.encodeElement(this.keysTrie.getHash());
+        byte[] rlpKeysCount = RLP.encodeInt(this.keysCount);
+
+        return RLP.encodeList(rlpAddress, rlpStorageRoot, rlpCode, rlpKeysRoot, rlpKeysCount);
+    }
+
     @Override
     public synchronized int getStorageSize() {
-        return keys.size();
+        return this.usesTrieStore() ? this.keysCount : this.keys.size();
     }
 
     @Override
     public synchronized Set<DataWord> getStorageKeys() {
         Set<DataWord> result = new HashSet<>();
 
-        for (ByteArrayWrapper key : keys)
+        for (ByteArrayWrapper key : this.getKeys())
             result.add(new DataWord(key));
 
         return result;
@@ -255,7 +341,7 @@ public class ContractDetailsImpl implements ContractDetails {
         Map<DataWord, DataWord> storage = new HashMap<>();
 
         if (keys == null)
-            for (ByteArrayWrapper keyBytes : this.keys) {
+            for (ByteArrayWrapper keyBytes : this.getKeys()) {
                 DataWord key = new DataWord(keyBytes);
                 DataWord value = get(key);
 
@@ -310,6 +396,15 @@ public class ContractDetailsImpl implements ContractDetails {
         String addressString = this.getAddressAsString();
         logger.trace("syncing storage address {}", addressString);
 
+        if (this.usesTrieStore()) {
+            logger.trace("syncing to trie store, hash {}, address {}, storage size {}", hashString, addressString, this.keysCount);
+
+            this.trie.save();
+            this.keysTrie.save();
+
+            return;
+        }
+
         if (this.trie.hasStore()) {
             logger.trace("syncing to storage, hash {}, address {}, storage size {}", hashString, addressString, this.getStorageSize());
 
@@ -351,13 +446,24 @@ public class ContractDetailsImpl implements ContractDetails {
     public synchronized ContractDetails getSnapshotTo(byte[] hash) {
         logger.trace("get snapshot");
 
-        this.trie.save();
+        Trie snapshot;
 
-        ContractDetailsImpl details = new ContractDetailsImpl(this.address, this.trie.getSnapshotTo(hash), this.code);
+        // the tries are immutable, the current one can be shared if it has the same root
+        if (this.usesTrieStore() && Arrays.equals(hash, this.trie.getHash()))
+            snapshot = this.trie;
+        else {
+            this.trie.save();
+            snapshot = this.trie.getSnapshotTo(hash);
+        }
+
+        ContractDetailsImpl details = new ContractDetailsImpl(this.address, snapshot, this.code);
         details.keys = new HashSet<>();
         details.keys.addAll(this.keys);
         details.externalStorage = this.externalStorage;
         details.originalExternalStorage = this.originalExternalStorage;
+        details.trieStore = this.trieStore;
+        details.keysTrie = this.keysTrie;
+        details.keysCount = this.keysCount;
 
         if (this.externalStorage)
             levelDbByName(getDataSourceName());
@@ -369,7 +475,25 @@ public class ContractDetailsImpl implements ContractDetails {
 
     @Override
     public boolean isNullObject() {
-        return (code==null || code.length==0) && keys.isEmpty();
+        return (code==null || code.length==0) && getStorageSize() == 0;
+    }
+
+    /**
+     * setTrieStore moves the storage to a trie store shared by all the contracts, if it is not
+     * already using one. After it, only the storage and keys roots are encoded with the details
+     *
+     * @param trieStore the shared trie store
+     */
+    public synchronized void setTrieStore(TrieStore trieStore) {
+        if (this.usesTrieStore())
+            return;
+
+        this.trieStore = trieStore;
+        this.moveToTrieStore();
+    }
+
+    public boolean usesTrieStore() {
+        return this.keysTrie != null;
     }
 
     @VisibleForTesting
@@ -382,14 +506,103 @@ public class ContractDetailsImpl implements ContractDetails {
     }
 
     private void addKey(byte[] key) {
-        keys.add(wrap(key));
+        if (!this.usesTrieStore()) {
+            keys.add(wrap(key));
+            return;
+        }
+
+        if (this.keysTrie.get(key) != null)
+            return;
+
+        this.keysTrie = this.keysTrie.put(key, ByteUtils.clone(key));
+        this.keysCount++;
     }
 
     private void removeKey(byte[] key) {
-        keys.remove(wrap(key));
+        if (!this.usesTrieStore()) {
+            keys.remove(wrap(key));
+            return;
+        }
+
+        if (this.keysTrie.get(key) == null)
+            return;
+
+        this.keysTrie = this.keysTrie.delete(key);
+        this.keysCount--;
+    }
+
+    private Set<ByteArrayWrapper> getKeys() {
+        if (!this.usesTrieStore())
+            return this.keys;
+
+        Set<ByteArrayWrapper> result = new HashSet<>();
+
+        for (byte[] key : this.keysTrie.getValues())
+            result.add(wrap(key));
+
+        return result;
+    }
+
+    /**
+     * moveToTrieStore copies the storage trie nodes to the shared trie store, and creates the
+     * trie of storage keys. The data source of an external storage is closed, it is not used anymore
+     *
+     * All the nodes of the original store are copied, not only the current trie, so
+     * the storage roots of previous blocks are still available to getSnapshotTo
+     */
+    private void moveToTrieStore() {
+        checkDataSourceIsOpened();
+
+        byte[] root = this.trie.getHash();
+
+        TrieStore originalStore = ((TrieImpl) this.trie).getStore();
+
+        if (originalStore instanceof TrieStoreImpl && this.trieStore instanceof TrieStoreImpl) {
+            this.trie.save();
+            ((TrieStoreImpl) this.trieStore).copyFrom((TrieStoreImpl) originalStore);
+        }
+        else
+            this.trie.copyTo(this.trieStore);
+        this.trie = retrieveTrie(this.trieStore, root, true);
+
+        Trie newKeysTrie = new TrieImpl(this.trieStore, false);
+
+        for (ByteArrayWrapper key : this.keys)
+            newKeysTrie = newKeysTrie.put(key.getData(), key.getData());
+
+        this.keysTrie = newKeysTrie;
+        this.keysCount = this.keys.size();
+        this.keys = new HashSet<>();
+
+        if (this.externalStorage) {
+            logger.trace("moving external storage to trie store, hash {}, address {}", getHashAsString(root), this.getAddressAsString());
+            DataSourcePool.closeDataSource(getDataSourceName());
+        }
+
+        this.externalStorage = false;
+        this.originalExternalStorage = false;
+        this.closed = false;
+    }
+
+    private static Trie retrieveTrie(TrieStore store, byte[] root, boolean isSecure) {
+        if (root == null || Arrays.equals(root, EMPTY_TRIE_HASH))
+            return new TrieImpl(store, isSecure);
+
+        Trie trie = store.retrieve(root);
+
+        if (trie == null) {
+            String message = "error retrieving contract details trie, hash " + getHashAsString(root);
+            panicProcessor.panic("contractdetails", message);
+            throw new TrieSerializationException(message, null);
+        }
+
+        return trie;
     }
 
     private void checkExternalStorage() {
+        if (this.usesTrieStore())
+            return;
+
         this.externalStorage = (keys.size() > SystemProperties.CONFIG.detailsInMemoryStorageLimit()) || this.externalStorage;
     }
 
@@ -20,6 +20,7 @@ package co.rsk.db;
 
 import co.rsk.trie.Trie;
 import co.rsk.trie.TrieImpl;
+import co.rsk.trie.TrieIterator;
 import co.rsk.trie.TrieStore;
 import org.ethereum.core.AccountState;
 import org.ethereum.core.Block;
@@ -37,6 +38,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.ethereum.crypto.HashUtil.EMPTY_TRIE_HASH;
 import static org.ethereum.crypto.SHA3Helper.sha3;
@@ -44,6 +46,11 @@ import static org.ethereum.util.ByteUtil.wrap;
 
 /**
  * Created by ajlopez on 29/03/2017.
+ *
+ * The updates are synchronized, but the reads are not: the trie is persistent, so a read
+ * uses the current root trie, without waiting for an update, flush or block connection
+ * in progress. The snapshots are new repositories sharing the stores, and can be read
+ * by other threads without locking this repository
  */
 public class RepositoryImpl implements Repository, org.ethereum.facade.Repository {
     private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
@@ -51,10 +58,10 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
 
     private static final Logger logger = LoggerFactory.getLogger("repository");
 
-    private TrieStore store;
-    private Trie trie;
-    private DetailsDataStore detailsDataStore;
-    private boolean closed;
+    private final TrieStore store;
+    private final DetailsDataStore detailsDataStore;
+    private volatile Trie trie;
+    private volatile boolean closed;
 
     public RepositoryImpl() {
         this(null);
@@ -65,6 +72,7 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
         this.trie = new TrieImpl(store, true);
         this.detailsDataStore = new DetailsDataStore();
         this.detailsDataStore.setDB(new DatabaseImpl(new HashMapDB()));
+        this.detailsDataStore.setTrieStore(store);
     }
 
     public RepositoryImpl(TrieStore store, KeyValueDataSource detailsDS) {
@@ -72,6 +80,7 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
         this.trie = new TrieImpl(store, true);
         this.detailsDataStore = new DetailsDataStore();
         this.detailsDataStore.setDB(new DatabaseImpl(detailsDS));
+        this.detailsDataStore.setTrieStore(store);
     }
 
     public RepositoryImpl(TrieStore store, DetailsDataStore detailsDataStore) {
@@ -89,21 +98,13 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
     }
 
     @Override
-    public synchronized boolean isExist(byte[] addr) {
+    public boolean isExist(byte[] addr) {
         return getAccountState(addr) != null;
     }
 
     @Override
-    public synchronized AccountState getAccountState(byte[] addr) {
-        AccountState result = null;
-        byte[] accountData = null;
-
-        accountData = this.trie.get(addr);
-
-        if (accountData != null && accountData.length != 0)
-            result = new AccountState(accountData);
-
-        return result;
+    public AccountState getAccountState(byte[] addr) {
+        return getAccountState(this.trie, addr);
     }
 
     @Override
@@ -137,14 +138,14 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
     }
 
     @Override
-    public synchronized ContractDetails getContractDetails(byte[] addr) {
+    public ContractDetails getContractDetails(byte[] addr) {
         // That part is important cause if we have
         // to sync details storage according the trie root
         // saved in the account
         AccountState accountState = getAccountState(addr);
         byte[] storageRoot = EMPTY_TRIE_HASH;
         if (accountState != null)
-            storageRoot = getAccountState(addr).getStateRoot();
+            storageRoot = accountState.getStateRoot();
         ContractDetails details =  detailsDataStore.get(addr);
         if (details != null)
             details = details.getSnapshotTo(storageRoot);
@@ -170,11 +171,11 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
     }
 
     @Override
-    public synchronized byte[] getCode(byte[] addr) {
-        if (!isExist(addr))
-            return EMPTY_BYTE_ARRAY;
+    public byte[] getCode(byte[] addr) {
+        AccountState account = getAccountState(addr);
 
-        AccountState  account = getAccountState(addr);
+        if (account == null)
+            return EMPTY_BYTE_ARRAY;
 
         if (account.isHibernated())
             return EMPTY_BYTE_ARRAY;
@@ -216,7 +217,7 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
     }
 
     @Override
-    public synchronized DataWord getStorageValue(byte[] addr, DataWord key) {
+    public DataWord getStorageValue(byte[] addr, DataWord key) {
         ContractDetails details = getContractDetails(addr);
         return (details == null) ? null : details.get(key);
     }
@@ -240,13 +241,13 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
     }
 
     @Override
-    public synchronized byte[] getStorageBytes(byte[] addr, DataWord key) {
+    public byte[] getStorageBytes(byte[] addr, DataWord key) {
         ContractDetails details = getContractDetails(addr);
         return (details == null) ? null : details.getBytes(key);
     }
 
     @Override
-    public synchronized BigInteger getBalance(byte[] addr) {
+    public BigInteger getBalance(byte[] addr) {
         AccountState account = getAccountState(addr);
         return (account == null) ? AccountState.EMPTY.getBalance() : account.getBalance();
     }
@@ -272,6 +273,29 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
         return result;
     }
 
+    /**
+     * forEachAccountAddress visits the addresses of the accounts with contract details,
+     * without loading all of them in memory. Deleted accounts can be visited too
+     *
+     * @param consumer  the address consumer
+     */
+    public void forEachAccountAddress(Consumer<byte[]> consumer) {
+        this.detailsDataStore.forEachKey(consumer);
+    }
+
+    /**
+     * getAccountsIterator returns an iterator of the encoded account states, in ascending key order.
+     * The state trie is secure, so the keys are the hashes of the addresses
+     *
+     * @param from  the first key hash (or prefix) to include, null to start from the first key
+     * @param to    the key hash (or prefix) where the iteration ends, excluded, null to iterate to the last key
+     *
+     * @return  the iterator
+     */
+    public TrieIterator getAccountsIterator(byte[] from, byte[] to) {
+        return this.trie.iterator(from, to);
+    }
+
     @Override
     public synchronized void dumpState(Block block, long gasUsed, int txNumber, byte[] txHash) {
         // To be implemented
@@ -312,7 +336,7 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
     }
 
     @Override
-    public synchronized boolean isClosed() {
+    public boolean isClosed() {
         return this.closed;
     }
 
@@ -384,6 +408,15 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
         return rootHash;
     }
 
+    @Override
+    public synchronized byte[] calculateRoot() {
+        byte[] rootHash = this.trie.getHash();
+
+        logger.trace("calculating repository root hash {}", Hex.toHexString(rootHash));
+
+        return rootHash;
+    }
+
     @Override
     public synchronized void loadAccount(byte[] addr,
                                          Map<ByteArrayWrapper, AccountState> cacheAccounts,
@@ -401,14 +434,14 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
     }
 
     @Override
-    public synchronized Repository getSnapshotTo(byte[] root) {
+    public Repository getSnapshotTo(byte[] root) {
         RepositoryImpl snapshotRepository = new RepositoryImpl(this.store, this.detailsDataStore);
         snapshotRepository.syncToRoot(root);
         return snapshotRepository;
     }
 
     @Override
-    public synchronized DetailsDataStore getDetailsDataStore() {
+    public DetailsDataStore getDetailsDataStore() {
         return this.detailsDataStore;
     }
 
@@ -422,6 +455,15 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
         this.trie = this.trie.put(addr, accountState.getEncoded());
     }
 
+    private static AccountState getAccountState(Trie trie, byte[] addr) {
+        byte[] accountData = trie.get(addr);
+
+        if (accountData != null && accountData.length != 0)
+            return new AccountState(accountData);
+
+        return null;
+    }
+
     @Nonnull
     private synchronized AccountState getAccountStateOrCreateNew(byte[] addr) {
         AccountState account = getAccountState(addr);
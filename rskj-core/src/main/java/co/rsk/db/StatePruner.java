@@ -0,0 +1,139 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.db;
+
+import co.rsk.trie.TrieStorePruner;
+import org.ethereum.core.AccountState;
+import org.ethereum.core.Block;
+import org.ethereum.db.BlockStore;
+import org.ethereum.db.DetailsDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * StatePruner prunes the state trie store every interval best blocks
+ *
+ * The states of the last blocksToKeep block numbers, in all the branches, are kept,
+ * with the contract storages referenced by their accounts, and the storage keys of the
+ * contract details. The older states are deleted in background, so they cannot be used after
+ * a pruning, i.e. to connect a block with an older parent
+ */
+public class StatePruner {
+    private static final Logger logger = LoggerFactory.getLogger("prune");
+
+    private final BlockStore blockStore;
+    private final DetailsDataStore detailsDataStore;
+    private final TrieStorePruner pruner;
+    private final int blocksToKeep;
+    private final int interval;
+    private final Executor executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public StatePruner(BlockStore blockStore, DetailsDataStore detailsDataStore, TrieStorePruner pruner, int blocksToKeep, int interval) {
+        this(blockStore, detailsDataStore, pruner, blocksToKeep, interval, Executors.newSingleThreadExecutor(r -> new Thread(r, "StatePruner")));
+    }
+
+    public StatePruner(BlockStore blockStore, DetailsDataStore detailsDataStore, TrieStorePruner pruner, int blocksToKeep, int interval, Executor executor) {
+        this.blockStore = blockStore;
+        this.detailsDataStore = detailsDataStore;
+        this.pruner = pruner;
+        this.blocksToKeep = blocksToKeep;
+        this.interval = interval;
+        this.executor = executor;
+    }
+
+    /**
+     * onBestBlock starts a pruning if the block number is a multiple of the interval,
+     * and there is no pruning in progress
+     *
+     * It should be called after the block and its state are saved
+     *
+     * @param block the new best block
+     *
+     * @return  true if a pruning was started
+     */
+    public boolean onBestBlock(Block block) {
+        long number = block.getNumber();
+
+        if (number < this.blocksToKeep || number % this.interval != 0)
+            return false;
+
+        if (!this.running.compareAndSet(false, true))
+            return false;
+
+        List<byte[]> roots;
+
+        try {
+            this.pruner.startPruning();
+            roots = this.getStateRoots(number);
+        }
+        catch (RuntimeException ex) {
+            this.pruner.stopPruning();
+            this.running.set(false);
+            throw ex;
+        }
+
+        logger.info("Pruning state at block {}, keeping {} states", number, roots.size());
+
+        this.executor.execute(() -> {
+            try {
+                this.pruner.mark(roots, StatePruner::getStorageRoot);
+
+                if (this.detailsDataStore != null)
+                    this.detailsDataStore.forEachStorageKeysRoot(root -> this.pruner.mark(Collections.singletonList(root)));
+
+                this.pruner.sweep();
+            }
+            catch (Exception ex) {
+                logger.error("Error pruning state", ex);
+                this.pruner.stopPruning();
+            }
+            finally {
+                this.running.set(false);
+            }
+        });
+
+        return true;
+    }
+
+    public boolean isRunning() {
+        return this.running.get();
+    }
+
+    private static byte[] getStorageRoot(byte[] accountData) {
+        return new AccountState(accountData).getStateRoot();
+    }
+
+    private List<byte[]> getStateRoots(long number) {
+        List<byte[]> roots = new ArrayList<>();
+
+        for (long n = number - this.blocksToKeep + 1; n <= number; n++)
+            for (Block block : this.blockStore.getChainBlocksByNumber(n))
+                roots.add(block.getStateRoot());
+
+        return roots;
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package co.rsk.net;
+
+import co.rsk.net.messages.GetBlocksMessage;
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.db.ByteArrayWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * BlockDownloader downloads the bodies of the blocks announced by a header skeleton
+ * from several peers at the same time.
+ *
+ * The verified headers are queued in ascending order, and assigned in batches
+ * to the idle peers, the faster peers first. Each peer has at most one request in flight;
+ * the hashes of a request that times out, or that are not delivered, are queued again
+ * for another peer. The received blocks are imported by the block processor, that keeps
+ * the out of order blocks in its store until their parents are connected.
+ *
+ * The timeouts are checked on a timer, started by start, so the requests of a silent peer
+ * are assigned again even if no other message arrives. The disconnected peers are removed.
+ *
+ * A hash is requested at most maxAttempts times. After that it is dropped from the queue,
+ * and returned by takeFailed, so the block processor requests it one by one.
+ */
+public class BlockDownloader {
+    private static final Logger logger = LoggerFactory.getLogger("blockdownloader");
+
+    public static final int BATCH_SIZE = 32;
+    public static final long REQUEST_TIMEOUT = 10000;
+    public static final long TIMEOUT_CHECK_INTERVAL = 1000;
+    public static final int MAX_ATTEMPTS = 3;
+
+    // weight of the last delivery in the peer score
+    private static final double SCORE_ALPHA = 0.3;
+
+    private final int batchSize;
+    private final long timeout;
+    private final int maxAttempts;
+
+    private final Map<NodeID, Peer> peers = new HashMap<>();
+    private final Deque<BlockHeader> pending = new ArrayDeque<>();
+    private final Set<ByteArrayWrapper> queued = new HashSet<>();
+    private final Map<ByteArrayWrapper, Integer> attempts = new HashMap<>();
+    private final List<BlockHeader> failed = new ArrayList<>();
+
+    private byte[] lastHeaderHash;
+    private long lastHeaderNumber;
+
+    private ScheduledExecutorService timer;
+
+    public BlockDownloader() {
+        this(BATCH_SIZE, REQUEST_TIMEOUT, MAX_ATTEMPTS);
+    }
+
+    public BlockDownloader(int batchSize, long timeout) {
+        this(batchSize, timeout, MAX_ATTEMPTS);
+    }
+
+    public BlockDownloader(int batchSize, long timeout, int maxAttempts) {
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public synchronized void start() {
+        if (this.timer != null)
+            return;
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BlockDownloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.timer.scheduleWithFixedDelay(() -> this.onTimer(System.currentTimeMillis()), TIMEOUT_CHECK_INTERVAL, TIMEOUT_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (this.timer != null)
+            this.timer.shutdown();
+
+        this.timer = null;
+    }
+
+    /**
+     * onTimer queues again the requests that timed out, and assigns them to the idle peers
+     *
+     * @param now   the current time, in milliseconds
+     */
+    synchronized void onTimer(long now) {
+        try {
+            this.checkTimeouts(now);
+            this.assign(now);
+        }
+        catch (RuntimeException ex) {
+            logger.error("Error checking block request timeouts", ex);
+        }
+    }
+
+    public synchronized void addPeer(MessageSender sender) {
+        Peer peer = this.peers.get(sender.getNodeID());
+
+        if (peer == null)
+            this.peers.put(sender.getNodeID(), new Peer(sender));
+        else
+            peer.sender = sender;
+    }
+
+    /**
+     * removePeer removes a disconnected peer, its request in flight is queued again
+     *
+     * @param nodeID    the disconnected peer
+     */
+    public synchronized void removePeer(NodeID nodeID) {
+        Peer peer = this.peers.remove(nodeID);
+
+        if (peer == null || peer.request == null)
+            return;
+
+        logger.trace("Node {} removed with a request of {} blocks", nodeID, peer.request.size());
+
+        this.requeue(peer.request);
+    }
+
+    /**
+     * addHeaders queues the headers whose bodies should be downloaded.
+     *
+     * The headers should be a chain: each parent should be the previous header,
+     * a queued header or a known block. The headers after the first one that
+     * doesn't follow the chain are discarded.
+     *
+     * @param headers   the headers, in ascending order
+     * @param isKnown   tests if a hash is of a block already known
+     *
+     * @return the number of queued headers
+     */
+    public synchronized int addHeaders(List<BlockHeader> headers, Predicate<byte[]> isKnown) {
+        int added = 0;
+        byte[] previousHash = null;
+
+        for (BlockHeader header : headers) {
+            ByteArrayWrapper hash = new ByteArrayWrapper(header.getHash());
+
+            if (this.queued.contains(hash) || isKnown.test(header.getHash())) {
+                previousHash = header.getHash();
+                continue;
+            }
+
+            byte[] parentHash = header.getParentHash();
+
+            if (!Arrays.equals(parentHash, previousHash) && !this.queued.contains(new ByteArrayWrapper(parentHash)) && !isKnown.test(parentHash)) {
+                logger.trace("Header {} doesn't follow the chain", header.getNumber());
+                break;
+            }
+
+            this.pending.addLast(header);
+            this.queued.add(hash);
+            previousHash = header.getHash();
+            added++;
+
+            if (header.getNumber() > this.lastHeaderNumber) {
+                this.lastHeaderNumber = header.getNumber();
+                this.lastHeaderHash = header.getHash();
+            }
+        }
+
+        return added;
+    }
+
+    /**
+     * onBlocks processes the blocks received from a peer, updating its score.
+     * The requested hashes that were not delivered are queued again.
+     *
+     * @param nodeID    the peer that sent the blocks
+     * @param blocks    the received blocks
+     * @param now       the current time, in milliseconds
+     *
+     * @return the requested blocks, in ascending order
+     */
+    public synchronized List<Block> onBlocks(NodeID nodeID, List<Block> blocks, long now) {
+        Peer peer = this.peers.get(nodeID);
+
+        if (peer == null || peer.request == null)
+            return Collections.emptyList();
+
+        Map<ByteArrayWrapper, Block> received = new HashMap<>();
+
+        for (Block block : blocks)
+            received.put(new ByteArrayWrapper(block.getHash()), block);
+
+        List<Block> delivered = new ArrayList<>();
+        List<BlockHeader> missing = new ArrayList<>();
+
+        for (BlockHeader header : peer.request) {
+            ByteArrayWrapper hash = new ByteArrayWrapper(header.getHash());
+            Block block = received.get(hash);
+
+            if (block == null) {
+                missing.add(header);
+                continue;
+            }
+
+            delivered.add(block);
+            this.queued.remove(hash);
+            this.attempts.remove(hash);
+        }
+
+        long elapsed = Math.max(now - peer.requestTime, 1);
+        peer.updateScore((double) delivered.size() / elapsed);
+        peer.request = null;
+
+        this.requeue(missing);
+
+        delivered.sort((a, b) -> Long.compare(a.getNumber(), b.getNumber()));
+
+        return delivered;
+    }
+
+    /**
+     * checkTimeouts queues again the hashes of the requests that timed out,
+     * and penalizes the peers that didn't answer them
+     *
+     * @param now   the current time, in milliseconds
+     */
+    public synchronized void checkTimeouts(long now) {
+        for (Peer peer : this.peers.values()) {
+            if (peer.request == null || now - peer.requestTime < this.timeout)
+                continue;
+
+            logger.trace("Request of {} blocks to node {} timed out", peer.request.size(), peer.sender.getNodeID());
+
+            this.requeue(peer.request);
+            peer.request = null;
+            peer.updateScore(0);
+        }
+    }
+
+    /**
+     * assign sends a batch of the queued hashes to each idle peer, in score order
+     *
+     * @param now   the current time, in milliseconds
+     */
+    public synchronized void assign(long now) {
+        if (this.pending.isEmpty())
+            return;
+
+        List<Peer> idle = new ArrayList<>();
+
+        for (Peer peer : this.peers.values())
+            if (peer.request == null)
+                idle.add(peer);
+
+        idle.sort((a, b) -> Double.compare(b.score, a.score));
+
+        for (Peer peer : idle) {
+            if (this.pending.isEmpty())
+                return;
+
+            List<BlockHeader> request = new ArrayList<>();
+            List<byte[]> hashes = new ArrayList<>();
+
+            while (!this.pending.isEmpty() && request.size() < this.batchSize) {
+                BlockHeader header = this.pending.removeFirst();
+                request.add(header);
+                hashes.add(header.getHash());
+            }
+
+            peer.request = request;
+            peer.requestTime = now;
+
+            logger.trace("Requesting {} blocks from {} to node {}", request.size(), request.get(0).getNumber(), peer.sender.getNodeID());
+
+            peer.sender.sendMessage(new GetBlocksMessage(hashes));
+        }
+    }
+
+    /**
+     * isRequested tests if a block is queued or in flight, so it should not be requested again
+     */
+    public synchronized boolean isRequested(byte[] hash) {
+        return this.queued.contains(new ByteArrayWrapper(hash));
+    }
+
+    /**
+     * takeFailed returns the headers dropped after maxAttempts failed requests, and forgets them
+     *
+     * @return the dropped headers, in ascending order
+     */
+    public synchronized List<BlockHeader> takeFailed() {
+        if (this.failed.isEmpty())
+            return Collections.emptyList();
+
+        List<BlockHeader> result = new ArrayList<>(this.failed);
+        this.failed.clear();
+
+        result.sort((a, b) -> Long.compare(a.getNumber(), b.getNumber()));
+
+        return result;
+    }
+
+    public synchronized long getLastHeaderNumber() {
+        return this.lastHeaderNumber;
+    }
+
+    public synchronized byte[] getLastHeaderHash() {
+        return this.lastHeaderHash;
+    }
+
+    public synchronized int getPendingSize() {
+        return this.pending.size();
+    }
+
+    public synchronized boolean isDownloading() {
+        return !this.queued.isEmpty();
+    }
+
+    synchronized double getScore(NodeID nodeID) {
+        Peer peer = this.peers.get(nodeID);
+
+        return peer == null ? 0 : peer.score;
+    }
+
+    private void requeue(List<BlockHeader> headers) {
+        for (int k = headers.size(); k-- > 0;) {
+            BlockHeader header = headers.get(k);
+            ByteArrayWrapper hash = new ByteArrayWrapper(header.getHash());
+
+            if (this.attempts.merge(hash, 1, Integer::sum) < this.maxAttempts) {
+                this.pending.addFirst(header);
+                continue;
+            }
+
+            logger.trace("Block {} dropped after {} attempts", header.getNumber(), this.maxAttempts);
+
+            this.queued.remove(hash);
+            this.attempts.remove(hash);
+            this.failed.add(header);
+        }
+    }
+
+    private static class Peer {
+        private MessageSender sender;
+        private double score;
+        private List<BlockHeader> request;
+        private long requestTime;
+
+        Peer(MessageSender sender) {
+            this.sender = sender;
+        }
+
+        void updateScore(double throughput) {
+            this.score = SCORE_ALPHA * throughput + (1 - SCORE_ALPHA) * this.score;
+        }
+    }
+}
@@ -31,6 +31,9 @@ import java.util.*;
  * BlockNodeInformation will only hold a limited amount of blocks and peers. Blocks
  * that aren't accessed frequently will be deleted, as well as peers.
  * Peers will only remember the last maxBlocks blocks that were inserted.
+ * <p>
+ * It is accessed by the message handler and the request threads, so the methods are synchronized,
+ * and the retrieved sets are copies.
  */
 public class BlockNodeInformation {
     private final Map<NodeID, Set<ByteArrayWrapper>> blocksByNode;
@@ -68,7 +71,7 @@ public class BlockNodeInformation {
      * @param blockHash the block hash.
      * @param nodeID    the node to add the block to.
      */
-    public void addBlockToNode(@Nonnull final ByteArrayWrapper blockHash, @Nonnull final NodeID nodeID) {
+    public synchronized void addBlockToNode(@Nonnull final ByteArrayWrapper blockHash, @Nonnull final NodeID nodeID) {
         Set<ByteArrayWrapper> nodeBlocks = blocksByNode.get(nodeID);
         if (nodeBlocks == null) {
             // Create a new empty LRUCache for the blocks that a node know.
@@ -102,12 +105,12 @@ public class BlockNodeInformation {
      * @return all the blocks known by the given nodeID.
      */
     @Nonnull
-    public Set<ByteArrayWrapper> getBlocksByNode(@Nonnull final NodeID nodeID) {
+    public synchronized Set<ByteArrayWrapper> getBlocksByNode(@Nonnull final NodeID nodeID) {
         Set<ByteArrayWrapper> result = blocksByNode.get(nodeID);
         if (result == null) {
             result = new HashSet<>();
         }
-        return Collections.unmodifiableSet(result);
+        return Collections.unmodifiableSet(new HashSet<>(result));
     }
 
     /**
@@ -117,12 +120,12 @@ public class BlockNodeInformation {
      * @return A set containing all the nodes that have that block.
      */
     @Nonnull
-    public Set<NodeID> getNodesByBlock(@Nonnull final ByteArrayWrapper blockHash) {
+    public synchronized Set<NodeID> getNodesByBlock(@Nonnull final ByteArrayWrapper blockHash) {
         Set<NodeID> result = nodesByBlock.get(blockHash);
         if (result == null) {
             result = new HashSet<>();
         }
-        return Collections.unmodifiableSet(result);
+        return Collections.unmodifiableSet(new HashSet<>(result));
     }
 
     /**
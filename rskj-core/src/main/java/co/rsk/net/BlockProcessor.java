@@ -35,6 +35,10 @@ public interface BlockProcessor {
 
     void processGetBlock(MessageSender sender, byte[] hash);
 
+    void processGetBlocks(MessageSender sender, List<byte[]> hashes);
+
+    void processBlocks(MessageSender sender, List<Block> blocks);
+
     void processGetBlockHeaders(MessageSender sender, long blockNumber, byte[] hash, int maxHeaders, int skip, boolean reverse);
 
     void processGetBlockHeaders(MessageSender sender, byte[] hash);
@@ -47,6 +47,9 @@ import java.util.stream.Collectors;
  */
 public class NodeBlockProcessor implements BlockProcessor {
     private static final int NBLOCKS_TO_SYNC = 30;
+    private static final int MAX_BLOCKS_AHEAD = 1000;
+    private static final int MAX_HEADERS_TO_REQUEST = 192;
+    private static final int MAX_BLOCKS_TO_SEND = 128;
 
     private final Object syncLock = new Object();
     @GuardedBy("syncLock")
@@ -70,6 +73,8 @@ public class NodeBlockProcessor implements BlockProcessor {
 
     private Map<ByteArrayWrapper, Integer> unknownBlockHashes = new HashMap<>();
 
+    private BlockDownloader blockDownloader;
+
     /**
      * Creates a new NodeBlockProcessor using the given BlockStore and Blockchain.
      *
@@ -110,6 +115,30 @@ public class NodeBlockProcessor implements BlockProcessor {
         return this.lastKnownBlockNumber;
     }
 
+    /**
+     * setBlockDownloader enables the download of the block bodies from several peers,
+     * driven by the headers received from the peers that are ahead.
+     *
+     * @param blockDownloader the downloader to use, or null to request the blocks one by one.
+     */
+    public void setBlockDownloader(@Nullable BlockDownloader blockDownloader) {
+        this.blockDownloader = blockDownloader;
+    }
+
+    /**
+     * removePeer removes a disconnected peer from the block downloader, its blocks
+     * in flight are requested to the other peers.
+     *
+     * @param nodeID the disconnected peer.
+     */
+    public void removePeer(@Nonnull final NodeID nodeID) {
+        if (this.blockDownloader == null)
+            return;
+
+        this.blockDownloader.removePeer(nodeID);
+        this.blockDownloader.assign(System.currentTimeMillis());
+    }
+
     /**
      * processNewBlockHashesMessage processes a "NewBlockHashes" message. This means that we received hashes
      * from new blocks and we should request all the blocks that we don't have.
@@ -141,6 +170,23 @@ public class NodeBlockProcessor implements BlockProcessor {
         // sort block headers in ascending order, so we can process them in that order.
         blockHeaders.sort((a, b) -> Long.compare(a.getNumber(), b.getNumber()));
 
+        if (this.blockDownloader != null) {
+            int added = this.blockDownloader.addHeaders(blockHeaders, h -> hasBlock(h) || store.hasHeader(h));
+
+            this.requestFailedBlocks(sender);
+
+            if (added > 0 || this.blockDownloader.isDownloading()) {
+                logger.trace("Queued {} headers to download from {}", added, sender.getNodeID());
+                this.blockDownloader.addPeer(sender);
+                this.blockDownloader.assign(System.currentTimeMillis());
+                this.requestHeaders(sender, this.lastKnownBlockNumber);
+                return;
+            }
+
+            // The headers don't follow the known chain, request the blocks one by one
+            // so their missing ancestors are requested too.
+        }
+
         blockHeaders.stream()
                 .filter(h -> !hasHeader(h))
                 .forEach(h -> processBlockHeader(sender, h));
@@ -199,7 +245,7 @@ public class NodeBlockProcessor implements BlockProcessor {
         if (blockNumber > this.lastKnownBlockNumber)
             this.lastKnownBlockNumber = blockNumber;
 
-        if (blockNumber >= bestBlockNumber + 1000) {
+        if (blockNumber >= bestBlockNumber + MAX_BLOCKS_AHEAD) {
             logger.trace("Block too advanced {} {} from {} ", blockNumber, block.getShortHash(), sender != null ? sender.getNodeID().toString() : "N/A");
             return new BlockProcessResult(false, null);
         }
@@ -278,6 +324,9 @@ public class NodeBlockProcessor implements BlockProcessor {
         if (sender == null)
             return;
 
+        if (this.blockDownloader != null && this.blockDownloader.isRequested(hash.getData()))
+            return;
+
         if (unknownBlockHashes.containsKey(hash)) {
             int counter = unknownBlockHashes.get(hash).intValue();
 
@@ -313,12 +362,22 @@ public class NodeBlockProcessor implements BlockProcessor {
         final byte[] hash = status.getBestBlockHash();
         nodeInformation.addBlockToNode(new ByteArrayWrapper(hash), sender.getNodeID());
 
-        if (!this.hasBlock(hash))
-            sender.sendMessage(new GetBlockMessage(hash));
-
         final long bestBlockNumber = this.getBestBlockNumber();
         final long peerBestBlockNumber = status.getBestBlockNumber();
 
+        if (this.blockDownloader != null) {
+            long now = System.currentTimeMillis();
+            this.blockDownloader.addPeer(sender);
+            this.blockDownloader.checkTimeouts(now);
+            this.blockDownloader.assign(now);
+            this.requestFailedBlocks(sender);
+        }
+
+        if (this.blockDownloader != null && peerBestBlockNumber >= bestBlockNumber + NBLOCKS_TO_SYNC)
+            this.requestHeaders(sender, peerBestBlockNumber);
+        else if (!this.hasBlock(hash))
+            sender.sendMessage(new GetBlockMessage(hash));
+
         if (peerBestBlockNumber > this.lastKnownBlockNumber)
             this.lastKnownBlockNumber = peerBestBlockNumber;
 
@@ -376,6 +435,98 @@ public class NodeBlockProcessor implements BlockProcessor {
         sender.sendMessage(new BlockMessage(block));
     }
 
+    /**
+     * processGetBlocks sends the requested blocks that are available to a peer, in one message.
+     * An empty response is also sent, so the peer can request the blocks to another node.
+     *
+     * @param sender the sender of the GetBlocks message.
+     * @param hashes the requested blocks' hashes.
+     */
+    @Override
+    public void processGetBlocks(@Nonnull final MessageSender sender, @Nonnull final List<byte[]> hashes) {
+        logger.trace("Processing get {} blocks from {}", hashes.size(), sender.getNodeID());
+        List<Block> blocks = new ArrayList<>();
+
+        for (byte[] hash : hashes) {
+            if (blocks.size() >= MAX_BLOCKS_TO_SEND)
+                break;
+
+            Block block = this.getBlock(hash);
+
+            if (block == null)
+                continue;
+
+            nodeInformation.addBlockToNode(new ByteArrayWrapper(hash), sender.getNodeID());
+            blocks.add(block);
+        }
+
+        sender.sendMessage(new BlocksMessage(blocks));
+    }
+
+    /**
+     * processBlocks processes the blocks received in response to a GetBlocks message.
+     * Only the blocks requested by the block downloader are processed, in ascending order,
+     * and the next batch is requested.
+     *
+     * @param sender the sender of the blocks.
+     * @param blocks the received blocks.
+     */
+    @Override
+    public void processBlocks(@Nonnull final MessageSender sender, @Nonnull final List<Block> blocks) {
+        if (this.blockDownloader == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        List<Block> requested = this.blockDownloader.onBlocks(sender.getNodeID(), blocks, now);
+
+        logger.trace("Processing {} blocks from {}", requested.size(), sender.getNodeID());
+
+        for (Block block : requested)
+            this.processBlock(sender, block);
+
+        this.blockDownloader.checkTimeouts(now);
+        this.blockDownloader.assign(now);
+        this.requestFailedBlocks(sender);
+
+        if (this.blockDownloader.getPendingSize() < MAX_HEADERS_TO_REQUEST)
+            this.requestHeaders(sender, this.lastKnownBlockNumber);
+    }
+
+    /**
+     * requestFailedBlocks requests one by one the blocks that the block downloader
+     * failed to download, as it is done without a block downloader.
+     *
+     * @param sender the peer to request the blocks.
+     */
+    private void requestFailedBlocks(@Nonnull final MessageSender sender) {
+        this.blockDownloader.takeFailed().stream()
+                .filter(h -> !hasHeader(h))
+                .forEach(h -> processBlockHeader(sender, h));
+    }
+
+    /**
+     * requestHeaders requests to a peer the next headers to download, after the best block
+     * and the headers already queued, up to the peer best block and the blocks that can be processed.
+     *
+     * @param sender           the peer to request the headers.
+     * @param peerBestNumber   the best block number known of the peer.
+     */
+    private void requestHeaders(@Nonnull final MessageSender sender, final long peerBestNumber) {
+        final long bestBlockNumber = this.getBestBlockNumber();
+        final long start = Math.max(bestBlockNumber, this.blockDownloader.getLastHeaderNumber()) + 1;
+        final long end = Math.min(peerBestNumber, bestBlockNumber + MAX_BLOCKS_AHEAD - 1);
+
+        if (start > end)
+            return;
+
+        final int count = (int) Math.min(MAX_HEADERS_TO_REQUEST, end - start + 1);
+
+        logger.trace("Requesting {} headers from {} to {}", count, start, sender.getNodeID());
+
+        // the reverse flag requests the headers in ascending order
+        sender.sendMessage(new GetBlockHeadersMessage(start, null, count, 0, true));
+    }
+
     /**
      * processGetBlock sends a requested block to a peer if the block is available.
      *
@@ -396,29 +547,30 @@ public class NodeBlockProcessor implements BlockProcessor {
                                        final int maxHeaders,
                                        final int skip,
                                        final boolean reverse) {
-        // TODO(mvanotti): Implement reverse retrieval.
-        Block block;
+        final org.ethereum.db.BlockStore blockStore = this.getBlockchain().getBlockStore();
+
         if (hash == null) {
-            block = this.getBlockchain().getBlockByNumber(blockNumber);
-        } else {
-            block = this.getBlock(hash);
+            hash = blockStore.getBlockHashByNumber(blockNumber);
         }
 
         List<BlockHeader> result = new LinkedList<>();
-        for (int i = 0; i < maxHeaders; i += 1) {
-            if (block == null) {
-                break;
-            }
 
-            result.add(block.getHeader());
+        if (!reverse) {
+            // The blocks that are not in the blockchain yet are only in the node store.
+            Block block = hash == null ? null : this.getBlockFromStore(hash);
 
-            block = skipNBlocks(block, skip);
-            if (block == null) {
-                break;
+            while (block != null && result.size() < maxHeaders) {
+                result.add(block.getHeader());
+
+                block = skipNBlocks(block, skip);
+                hash = block == null ? null : block.getParentHash();
+                block = hash == null ? null : this.getBlockFromStore(hash);
             }
+        }
 
-            hash = block.getParentHash();
-            block = this.getBlock(hash);
+        // The headers in the blockchain are decoded without their blocks.
+        if (hash != null && result.size() < maxHeaders) {
+            result.addAll(blockStore.getHeaders(hash, maxHeaders - result.size(), skip, reverse));
         }
 
         if (result.isEmpty()) {
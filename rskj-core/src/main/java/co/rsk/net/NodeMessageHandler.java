@@ -22,8 +22,10 @@ import co.rsk.net.handler.TxHandler;
 import co.rsk.net.messages.*;
 import com.google.common.annotations.VisibleForTesting;
 import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
 import org.ethereum.core.PendingState;
 import org.ethereum.core.Transaction;
+import org.ethereum.core.TransactionSenders;
 import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.net.server.ChannelManager;
 import org.ethereum.validator.ProofOfWorkRule;
@@ -33,14 +35,18 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Created by ajlopez on 5/10/2016.
+ * <p>
+ * The posted messages are queued by class: blocks, status, requests and transactions,
+ * each queue serving its peers in round robin. The blocks are processed first, and in order, by the
+ * handler thread, then the status and the transaction messages. The read only requests
+ * (GetBlock and GetBlockHeaders) are served by a pool of worker threads.
  */
 public class NodeMessageHandler implements MessageHandler, Runnable {
     private static final Logger logger = LoggerFactory.getLogger("messagehandler");
@@ -53,11 +59,29 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
 
     private TransactionNodeInformation transactionNodeInformation;
 
-    private LinkedBlockingQueue<MessageTask> queue = new LinkedBlockingQueue<>();
+    private static final int MAX_PEER_BLOCK_MESSAGES = 1000;
+    private static final int MAX_PEER_STATUS_MESSAGES = 100;
+    private static final int MAX_PEER_REQUEST_MESSAGES = 100;
+    private static final int MAX_PEER_TRANSACTION_MESSAGES = 100;
+    private static final int REQUEST_THREADS = 2;
+    private static final long TRANSACTION_RELAY_INTERVAL = 250;
+    private static final int MAX_RELAYED_TRANSACTIONS_PER_MESSAGE = 256;
+
+    private final PeerFairQueue<MessageTask> blockQueue = new PeerFairQueue<>(MAX_PEER_BLOCK_MESSAGES);
+    private final PeerFairQueue<MessageTask> statusQueue = new PeerFairQueue<>(MAX_PEER_STATUS_MESSAGES);
+    private final PeerFairQueue<MessageTask> requestQueue = new PeerFairQueue<>(MAX_PEER_REQUEST_MESSAGES);
+    private final PeerFairQueue<MessageTask> transactionQueue = new PeerFairQueue<>(MAX_PEER_TRANSACTION_MESSAGES);
+    private final Object queueLock = new Object();
     private volatile boolean stopped;
 
+    // transactions accepted since the last relay, in arrival order
+    private final Map<ByteArrayWrapper, Transaction> transactionsToRelay = new LinkedHashMap<>();
+    private ScheduledExecutorService relayExecutor;
+
     private TxHandler txHandler;
 
+    private StateSyncProcessor stateSyncProcessor;
+
     public NodeMessageHandler(@Nonnull final BlockProcessor blockProcessor,
                               @Nullable final ChannelManager channelManager,
                               @Nullable final PendingState pendingState,
@@ -70,6 +94,10 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
         this.txHandler = txHandler;
     }
 
+    public void setStateSyncProcessor(StateSyncProcessor stateSyncProcessor) {
+        this.stateSyncProcessor = stateSyncProcessor;
+    }
+
     @VisibleForTesting
     public NodeMessageHandler disablePoWValidation() {
         this.PoWRule = null;
@@ -88,11 +116,7 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
 
         MessageType mType = message.getMessageType();
 
-        if (mType == MessageType.GET_BLOCK_MESSAGE)
-            this.processGetBlockMessage(sender, (GetBlockMessage) message);
-
-        if (mType == MessageType.GET_BLOCK_HEADERS_MESSAGE)
-            this.processGetBlockHeadersMessage(sender, (GetBlockHeadersMessage) message);
+        this.processRequest(sender, message);
 
         if (mType == MessageType.BLOCK_MESSAGE)
             this.processBlockMessage(sender, (BlockMessage) message);
@@ -103,6 +127,12 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
         if (mType == MessageType.BLOCK_HEADERS_MESSAGE)
             this.processBlockHeadersMessage(sender, (BlockHeadersMessage) message);
 
+        if (mType == MessageType.BLOCKS_MESSAGE)
+            this.processBlocksMessage(sender, (BlocksMessage) message);
+
+        if (mType == MessageType.GET_TRIE_NODES_MESSAGE)
+            this.processGetTrieNodesMessage(sender, (GetTrieNodesMessage) message);
+
         if(!blockProcessor.hasBetterBlockToSync()) {
             if (mType == MessageType.NEW_BLOCK_HASHES)
                 this.processNewBlockHashesMessage(sender, (NewBlockHashesMessage) message);
@@ -113,24 +143,77 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
         loggerMessageProcess.debug("Message[{}] processed after [{}] nano.", message.getMessageType(), System.nanoTime() - start);
     }
 
+    /**
+     * processRequest processes the read only requests, GetBlock, GetBlocks and GetBlockHeaders messages,
+     * that don't need the handler lock.
+     *
+     * @param sender  the message sender.
+     * @param message the message to be processed.
+     */
+    private void processRequest(final MessageSender sender, @Nonnull final Message message) {
+        MessageType mType = message.getMessageType();
+
+        if (mType == MessageType.GET_BLOCK_MESSAGE)
+            this.processGetBlockMessage(sender, (GetBlockMessage) message);
+
+        if (mType == MessageType.GET_BLOCK_HEADERS_MESSAGE)
+            this.processGetBlockHeadersMessage(sender, (GetBlockHeadersMessage) message);
+
+        if (mType == MessageType.GET_BLOCKS_MESSAGE)
+            this.processGetBlocksMessage(sender, (GetBlocksMessage) message);
+    }
+
     @Override
     public void postMessage(MessageSender sender, Message message) throws InterruptedException {
-        try {
-            logger.trace("Start post message (queue size {}) (message type {})", this.queue.size(), message.getMessageType());
-            this.queue.put(new MessageTask(sender, message));
-            logger.trace("End post message (queue size {})", this.queue.size());
-        } catch (InterruptedException e) {
-            logger.error("Error post message", e);
-            throw e;
+        MessageType mType = message.getMessageType();
+        PeerFairQueue<MessageTask> queue;
+
+        if (mType == MessageType.GET_BLOCK_MESSAGE || mType == MessageType.GET_BLOCK_HEADERS_MESSAGE || mType == MessageType.GET_BLOCKS_MESSAGE)
+            queue = this.requestQueue;
+        else if (mType == MessageType.TRANSACTIONS)
+            queue = this.transactionQueue;
+        else if (mType == MessageType.STATUS_MESSAGE)
+            queue = this.statusQueue;
+        else
+            queue = this.blockQueue;
+
+        synchronized (this.queueLock) {
+            logger.trace("Start post message (queue size {}) (message type {})", queue.size(), mType);
+
+            if (!queue.offer(sender.getNodeID(), new MessageTask(sender, message))) {
+                logger.warn("Message {} discarded, too many messages from node {}", mType, sender.getNodeID());
+                return;
+            }
+
+            this.queueLock.notifyAll();
+            logger.trace("End post message (queue size {})", queue.size());
         }
     }
 
     public void start() {
         new Thread(this).start();
+
+        for (int k = 0; k < REQUEST_THREADS; k++)
+            new Thread(this::serveRequests, "NodeMessageHandler-requests").start();
+
+        this.relayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "NodeMessageHandler-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.relayExecutor.scheduleWithFixedDelay(this::relayTransactions, TRANSACTION_RELAY_INTERVAL, TRANSACTION_RELAY_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     public void stop() {
         this.stopped = true;
+
+        if (this.relayExecutor != null)
+            this.relayExecutor.shutdown();
+
+        synchronized (this.queueLock) {
+            this.queueLock.notifyAll();
+        }
     }
 
     @Override
@@ -139,14 +222,7 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
             try {
                 logger.trace("Get task");
 
-                MessageTask task;
-
-                if (this.queue.isEmpty())
-                    task = this.queue.poll(60, TimeUnit.SECONDS);
-                else
-                    task = this.queue.poll();
-
-                loggerMessageProcess.debug("Queued Messages: {}", this.queue.size());
+                MessageTask task = this.takeTask(this.blockQueue, this.statusQueue, this.transactionQueue);
 
                 if (task != null) {
                     logger.trace("Start task");
@@ -155,12 +231,79 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
                 } else
                     logger.trace("No task");
             }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Throwable ex) {
+                logger.error("Error {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * serveRequests processes the read only requests, out of the handler lock, so they are served
+     * while the handler thread is processing a block.
+     */
+    private void serveRequests() {
+        while (!stopped) {
+            try {
+                MessageTask task = this.takeTask(this.requestQueue);
+
+                if (task != null)
+                    this.processRequest(task.getSender(), task.getMessage());
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
             catch (Throwable ex) {
                 logger.error("Error {}", ex.getMessage());
             }
         }
     }
 
+    /**
+     * takeTask retrieves a task from the first non empty queue, waiting up to a minute.
+     *
+     * @param queues the queues, in priority order.
+     * @return the task, or null if there is no task.
+     */
+    @SafeVarargs
+    @CheckForNull
+    private final MessageTask takeTask(PeerFairQueue<MessageTask>... queues) throws InterruptedException {
+        synchronized (this.queueLock) {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+
+            while (!stopped) {
+                for (PeerFairQueue<MessageTask> queue : queues)
+                    if (!queue.isEmpty()) {
+                        loggerMessageProcess.debug("Queued Messages: blocks {}, status {}, requests {}, transactions {}",
+                                this.blockQueue.size(), this.statusQueue.size(), this.requestQueue.size(), this.transactionQueue.size());
+                        return queue.poll();
+                    }
+
+                long timeout = deadline - System.currentTimeMillis();
+
+                if (timeout <= 0)
+                    return null;
+
+                this.queueLock.wait(timeout);
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * getMessageQueueSize returns the number of posted messages that are not processed yet.
+     */
+    public int getMessageQueueSize() {
+        synchronized (this.queueLock) {
+            return this.blockQueue.size() + this.statusQueue.size() + this.requestQueue.size() + this.transactionQueue.size();
+        }
+    }
+
     @CheckForNull
     public synchronized Block getBestBlock() {
         if (this.blockProcessor != null)
@@ -211,6 +354,8 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
             return;
         }
 
+        TransactionSenders.recoverSenders(block.getTransactionsList());
+
         long start = System.nanoTime();
         BlockProcessResult result = this.blockProcessor.processBlock(sender, block);
 
@@ -257,6 +402,11 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
             this.blockProcessor.processGetBlock(sender, hash);
     }
 
+    private void processGetBlocksMessage(@Nonnull final MessageSender sender, @Nonnull final GetBlocksMessage message) {
+        if (this.blockProcessor != null)
+            this.blockProcessor.processGetBlocks(sender, message.getHashes());
+    }
+
     private void processGetBlockHeadersMessage(@Nonnull final MessageSender sender, @Nonnull final GetBlockHeadersMessage message) {
         // TODO(mvanotti): Add upper bound to maxHeaders.
         final byte[] hash = message.getBlockHash();
@@ -269,12 +419,57 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
             this.blockProcessor.processGetBlockHeaders(sender, blockNumber, hash, maxHeaders, skipBlocks, reverse);
     }
 
+    /**
+     * processBlockHeadersMessage processes the headers received in response to a GetBlockHeaders message,
+     * discarding the ones with an invalid PoW, so they are not queued to download.
+     *
+     * @param sender  the message sender.
+     * @param message the BlockHeadersMessage.
+     */
     private void processBlockHeadersMessage(@Nonnull final MessageSender sender, @Nonnull final BlockHeadersMessage message) {
         message.getBlockHeaders().forEach(h -> Metrics.newBlockHeader(h, sender.getNodeID()));
 
+        List<BlockHeader> headers = new ArrayList<>();
+
+        for (BlockHeader header : message.getBlockHeaders()) {
+            if (isValidBlock(new Block(header)))
+                headers.add(header);
+            else
+                logger.trace("Invalid header {} received from {}", header.getNumber(), sender.getNodeID());
+        }
+
         if (blockProcessor != null) {
-            blockProcessor.processBlockHeaders(sender, message.getBlockHeaders());
+            blockProcessor.processBlockHeaders(sender, headers);
+        }
+    }
+
+    /**
+     * processBlocksMessage processes the blocks received in response to a GetBlocks message,
+     * discarding the ones with an invalid PoW.
+     *
+     * @param sender  the message sender.
+     * @param message the BlocksMessage.
+     */
+    private void processBlocksMessage(@Nonnull final MessageSender sender, @Nonnull final BlocksMessage message) {
+        List<Block> blocks = new ArrayList<>();
+
+        for (Block block : message.getBlocks()) {
+            if (!isValidBlock(block)) {
+                logger.trace("Invalid block {} {}", block.getNumber(), block.getShortHash());
+                continue;
+            }
+
+            TransactionSenders.recoverSenders(block.getTransactionsList());
+            blocks.add(block);
         }
+
+        if (this.blockProcessor != null)
+            this.blockProcessor.processBlocks(sender, blocks);
+    }
+
+    private void processGetTrieNodesMessage(@Nonnull final MessageSender sender, @Nonnull final GetTrieNodesMessage message) {
+        if (this.stateSyncProcessor != null)
+            this.stateSyncProcessor.processGetTrieNodes(sender, message.getHashes());
     }
 
     private void processNewBlockHashesMessage(@Nonnull final MessageSender sender, @Nonnull final NewBlockHashesMessage message) {
@@ -292,6 +487,8 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
         List<Transaction> txs = message.getTransactions();
         Metrics.processTxsMessage("start", txs, sender.getNodeID());
 
+        TransactionSenders.recoverSenders(txs);
+
         List<Transaction> acceptedTxs = txHandler.retrieveValidTxs(txs);
 
         Metrics.processTxsMessage("txsValidated", acceptedTxs, sender.getNodeID());
@@ -303,31 +500,72 @@ public class NodeMessageHandler implements MessageHandler, Runnable {
 
         Metrics.processTxsMessage("validTxsAddedToPendingState", acceptedTxs, sender.getNodeID());
 
-        if (channelManager != null) {
-            /* Relay all transactions to peers that don't have them */
-            for (Transaction tx : acceptedTxs) {
-                final Set<NodeID> nodesToSkip = new HashSet<>(transactionNodeInformation.getNodesByTransaction(tx.getHash()));
-                nodesToSkip.add(sender.getNodeID());
-                final Set<NodeID> newNodes = channelManager.broadcastTransaction(tx, nodesToSkip);
-
-                final ByteArrayWrapper txhash = new ByteArrayWrapper(tx.getHash());
-                for (NodeID nodeID : newNodes)
-                    transactionNodeInformation.addTransactionToNode(txhash, nodeID);
-            }
-
-            Metrics.processTxsMessage("validTxsRelayed", acceptedTxs, sender.getNodeID());
-        }
-
         for (Transaction tx : acceptedTxs) {
             final ByteArrayWrapper txhash = new ByteArrayWrapper(tx.getHash());
             transactionNodeInformation.addTransactionToNode(txhash, sender.getNodeID());
         }
 
         Metrics.processTxsMessage("txToNodeInfoUpdated", acceptedTxs, sender.getNodeID());
+
+        if (channelManager != null) {
+            /* Relay the transactions in the next batch, to the peers that don't have them */
+            synchronized (this.transactionsToRelay) {
+                for (Transaction tx : acceptedTxs)
+                    this.transactionsToRelay.putIfAbsent(new ByteArrayWrapper(tx.getHash()), tx);
+            }
+
+            Metrics.processTxsMessage("validTxsQueuedToRelay", acceptedTxs, sender.getNodeID());
+        }
         Metrics.processTxsMessage("finish", acceptedTxs, sender.getNodeID());
         loggerMessageProcess.debug("Tx message process finished after [{}] nano.", System.nanoTime() - start);
     }
 
+    /**
+     * relayTransactions sends the transactions accepted since the last relay to the peers
+     * that don't know them yet. The transactions known by the same peers are sent together,
+     * in messages that are encoded once for all the receivers.
+     */
+    @VisibleForTesting
+    void relayTransactions() {
+        List<Transaction> txs;
+
+        synchronized (this.transactionsToRelay) {
+            if (this.transactionsToRelay.isEmpty())
+                return;
+
+            txs = new ArrayList<>(this.transactionsToRelay.values());
+            this.transactionsToRelay.clear();
+        }
+
+        Map<Set<NodeID>, List<Transaction>> txsByNodesToSkip = new LinkedHashMap<>();
+
+        for (Transaction tx : txs)
+            txsByNodesToSkip.computeIfAbsent(transactionNodeInformation.getNodesByTransaction(tx.getHash()), k -> new ArrayList<>()).add(tx);
+
+        try {
+            for (Map.Entry<Set<NodeID>, List<Transaction>> entry : txsByNodesToSkip.entrySet()) {
+                List<Transaction> group = entry.getValue();
+
+                for (int k = 0; k < group.size(); k += MAX_RELAYED_TRANSACTIONS_PER_MESSAGE) {
+                    List<Transaction> batch = group.subList(k, Math.min(k + MAX_RELAYED_TRANSACTIONS_PER_MESSAGE, group.size()));
+                    Set<NodeID> newNodes = channelManager.broadcastTransactions(batch, entry.getKey());
+
+                    for (Transaction tx : batch) {
+                        final ByteArrayWrapper txhash = new ByteArrayWrapper(tx.getHash());
+
+                        for (NodeID nodeID : newNodes)
+                            transactionNodeInformation.addTransactionToNode(txhash, nodeID);
+                    }
+                }
+            }
+        }
+        catch (Exception ex) {
+            logger.error("Error relaying transactions", ex);
+        }
+
+        loggerMessageProcess.debug("Relayed {} transactions in {} groups", txs.size(), txsByNodesToSkip.size());
+    }
+
     private static class MessageTask {
         private MessageSender sender;
         private Message message;
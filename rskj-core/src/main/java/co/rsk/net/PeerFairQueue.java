@@ -0,0 +1,99 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package co.rsk.net;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * PeerFairQueue is a bounded queue with a FIFO queue for each peer.
+ * The peers are served in round robin, so a peer sending many messages only delays its own messages.
+ * <p>
+ * Each peer can have at most maxPeerElements pending elements, the exceeding ones are rejected.
+ * It is not thread safe, the owner should synchronize the access.
+ */
+class PeerFairQueue<T> {
+    private final int maxPeerElements;
+    private final Map<NodeID, Deque<T>> queues = new HashMap<>();
+    private final Deque<NodeID> peers = new ArrayDeque<>();
+    private int size;
+
+    PeerFairQueue(int maxPeerElements) {
+        this.maxPeerElements = maxPeerElements;
+    }
+
+    /**
+     * offer adds an element at the end of the peer queue.
+     *
+     * @param nodeID  the peer that sent the element.
+     * @param element the element to add.
+     * @return true if the element was added, false if the peer queue is full.
+     */
+    boolean offer(@Nonnull final NodeID nodeID, @Nonnull final T element) {
+        Deque<T> queue = queues.get(nodeID);
+
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            queues.put(nodeID, queue);
+            peers.addLast(nodeID);
+        }
+        else if (queue.size() >= maxPeerElements) {
+            return false;
+        }
+
+        queue.addLast(element);
+        size++;
+
+        return true;
+    }
+
+    /**
+     * poll retrieves the first element of the next peer, and moves that peer to the end of the round.
+     *
+     * @return the element, or null if the queue is empty.
+     */
+    @CheckForNull
+    T poll() {
+        NodeID nodeID = peers.pollFirst();
+
+        if (nodeID == null)
+            return null;
+
+        Deque<T> queue = queues.get(nodeID);
+        T element = queue.pollFirst();
+        size--;
+
+        if (queue.isEmpty())
+            queues.remove(nodeID);
+        else
+            peers.addLast(nodeID);
+
+        return element;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
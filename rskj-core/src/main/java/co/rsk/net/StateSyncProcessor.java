@@ -0,0 +1,66 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net;
+
+import co.rsk.net.messages.TrieNodesMessage;
+import co.rsk.trie.TrieStoreImpl;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StateSyncProcessor serves the state trie nodes requested by hash to the peers,
+ * so they can download the state of a block instead of executing all the blocks from genesis
+ *
+ * The nodes are sent in their serialized form, so the peer can verify each node by hashing it,
+ * and request its subnodes next. Only the serving side is implemented: this node
+ * still syncs by executing the blocks.
+ */
+public class StateSyncProcessor {
+    public static final int MAX_NODES_BY_REQUEST = 384;
+
+    private final TrieStoreImpl store;
+
+    public StateSyncProcessor(@Nonnull final TrieStoreImpl store) {
+        this.store = store;
+    }
+
+    /**
+     * processGetTrieNodes sends the requested nodes found in the store to the peer
+     *
+     * @param sender    the peer
+     * @param hashes    the requested node hashes
+     */
+    public void processGetTrieNodes(@Nonnull final MessageSender sender, @Nonnull final List<byte[]> hashes) {
+        List<byte[]> nodes = new ArrayList<>();
+
+        for (byte[] hash : hashes) {
+            if (nodes.size() >= MAX_NODES_BY_REQUEST)
+                break;
+
+            byte[] message = this.store.retrieveMessage(hash);
+
+            if (message != null)
+                nodes.add(message);
+        }
+
+        sender.sendMessage(new TrieNodesMessage(nodes));
+    }
+}
@@ -59,7 +59,7 @@ public class TransactionNodeInformation {
      * @param transactionHash the transaction hash.
      * @param nodeID    the node to add the block to.
      */
-    public void addTransactionToNode(@Nonnull final ByteArrayWrapper transactionHash, @Nonnull final NodeID nodeID) {
+    public synchronized void addTransactionToNode(@Nonnull final ByteArrayWrapper transactionHash, @Nonnull final NodeID nodeID) {
         Set<NodeID> transactionNodes = nodesByTransaction.get(transactionHash);
         if (transactionNodes == null) {
             // Create a new set for the nodes that know about a block.
@@ -78,12 +78,12 @@ public class TransactionNodeInformation {
      * @return A set containing all the nodes that have that block.
      */
     @Nonnull
-    public Set<NodeID> getNodesByTransaction(@Nonnull final ByteArrayWrapper transactionHash) {
+    public synchronized Set<NodeID> getNodesByTransaction(@Nonnull final ByteArrayWrapper transactionHash) {
         Set<NodeID> result = nodesByTransaction.get(transactionHash);
         if (result == null) {
-            result = new HashSet<>();
+            return Collections.emptySet();
         }
-        return Collections.unmodifiableSet(result);
+        return Collections.unmodifiableSet(new HashSet<>(result));
     }
 
     /**
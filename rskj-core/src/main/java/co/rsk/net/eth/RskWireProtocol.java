@@ -30,6 +30,7 @@ import co.rsk.net.messages.Message;
 import co.rsk.net.messages.StatusMessage;
 import io.netty.channel.ChannelHandlerContext;
 import org.ethereum.core.*;
+import org.ethereum.config.SystemProperties;
 import org.ethereum.core.genesis.GenesisLoader;
 import org.ethereum.db.BlockStore;
 import org.ethereum.net.eth.EthVersion;
@@ -52,6 +53,7 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import static org.ethereum.net.eth.EthVersion.V62;
@@ -69,6 +71,9 @@ public class RskWireProtocol extends EthHandler {
 
     protected static final int MAX_HASHES_TO_SEND = 65536;
 
+    // genesis hashes by genesis file and initial nonce, loaded once and shared by all the handshakes
+    private static final Map<String, byte[]> genesisHashes = new ConcurrentHashMap<>();
+
     private final static Logger logger = LoggerFactory.getLogger("sync");
     private final static Logger loggerNet = LoggerFactory.getLogger("net");
     /**
@@ -176,8 +181,7 @@ public class RskWireProtocol extends EthHandler {
     protected void processStatus(org.ethereum.net.eth.message.StatusMessage msg, ChannelHandlerContext ctx) throws InterruptedException {
 
         try {
-            Genesis genesis = GenesisLoader.loadGenesis(config.genesisInfo(), config.getBlockchainConfig().getCommonConstants().getInitialNonce(), true);
-            if (!Arrays.equals(msg.getGenesisHash(), genesis.getHash())
+            if (!Arrays.equals(msg.getGenesisHash(), getGenesisHash(config))
                     || msg.getProtocolVersion() != version.getCode()) {
                 loggerNet.info("Removing EthHandler for {} due to protocol incompatibility", ctx.channel().remoteAddress());
                 ethState = EthState.STATUS_FAILED;
@@ -209,6 +213,21 @@ public class RskWireProtocol extends EthHandler {
     }
 
 
+    /**
+     * getGenesisHash returns the hash of the configured genesis block. The genesis is loaded
+     * and hashed only at the first handshake, instead of at every status message.
+     *
+     * @param config the node configuration
+     * @return the genesis block hash
+     */
+    static byte[] getGenesisHash(SystemProperties config) {
+        String genesisInfo = config.genesisInfo();
+        BigInteger initialNonce = config.getBlockchainConfig().getCommonConstants().getInitialNonce();
+
+        return genesisHashes.computeIfAbsent(genesisInfo + ":" + initialNonce,
+                k -> GenesisLoader.loadGenesis(genesisInfo, initialNonce, true).getHash());
+    }
+
     /*************************
      *    Message Sending    *
      *************************/
@@ -220,9 +239,8 @@ public class RskWireProtocol extends EthHandler {
 
         BigInteger totalDifficulty = blockchain.getTotalDifficulty();
         byte[] bestHash = blockchain.getBestBlockHash();
-        Genesis genesis = GenesisLoader.loadGenesis(config.genesisInfo(), config.getBlockchainConfig().getCommonConstants().getInitialNonce(), true);
         org.ethereum.net.eth.message.StatusMessage msg = new org.ethereum.net.eth.message.StatusMessage(protocolVersion, networkId,
-                ByteUtil.bigIntegerToBytes(totalDifficulty), bestHash, genesis.getHash());
+                ByteUtil.bigIntegerToBytes(totalDifficulty), bestHash, getGenesisHash(config));
         sendMessage(msg);
 
         // RSK new protocol send status
@@ -262,7 +280,9 @@ public class RskWireProtocol extends EthHandler {
 
     @Override
     public void onShutdown() {
-
+        // the channel is closed, its blocks in flight are requested to other peers
+        if (this.rsk != null && this.messageSender != null && this.messageSender.getNodeID() != null)
+            this.rsk.getNodeBlockProcessor().removePeer(this.messageSender.getNodeID());
     }
 
     /*************************
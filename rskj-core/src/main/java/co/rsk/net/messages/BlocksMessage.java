@@ -0,0 +1,55 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package co.rsk.net.messages;
+
+import org.ethereum.core.Block;
+import org.ethereum.util.RLP;
+
+import java.util.List;
+
+/**
+ * BlocksMessage sends a batch of blocks, the response to a GetBlocksMessage
+ */
+public class BlocksMessage extends Message {
+    private List<Block> blocks;
+
+    public BlocksMessage(List<Block> blocks) {
+        this.blocks = blocks;
+    }
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.BLOCKS_MESSAGE;
+    }
+
+    @Override
+    public byte[] getEncodedMessage() {
+        byte[][] encodedBlocks = new byte[this.blocks.size()][];
+
+        for (int k = 0; k < encodedBlocks.length; k++)
+            encodedBlocks[k] = RLP.encodeElement(this.blocks.get(k).getEncoded());
+
+        return RLP.encodeList(encodedBlocks);
+    }
+
+    public List<Block> getBlocks() {
+        return this.blocks;
+    }
+}
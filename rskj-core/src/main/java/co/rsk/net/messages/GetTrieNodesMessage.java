@@ -0,0 +1,53 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import org.ethereum.util.RLP;
+
+import java.util.List;
+
+/**
+ * GetTrieNodesMessage requests the serialized trie nodes with the given hashes, used by the state sync
+ */
+public class GetTrieNodesMessage extends Message {
+    private List<byte[]> hashes;
+
+    public GetTrieNodesMessage(List<byte[]> hashes) {
+        this.hashes = hashes;
+    }
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.GET_TRIE_NODES_MESSAGE;
+    }
+
+    @Override
+    public byte[] getEncodedMessage() {
+        byte[][] encodedHashes = new byte[this.hashes.size()][];
+
+        for (int k = 0; k < encodedHashes.length; k++)
+            encodedHashes[k] = RLP.encodeElement(this.hashes.get(k));
+
+        return RLP.encodeList(encodedHashes);
+    }
+
+    public List<byte[]> getHashes() {
+        return this.hashes;
+    }
+}
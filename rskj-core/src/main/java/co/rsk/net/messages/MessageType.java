@@ -82,6 +82,50 @@ public enum MessageType {
                 .forEach(element -> txs.add(new Transaction(element.getRLPData())));
             return new TransactionsMessage(txs);
         }
+    },
+    GET_TRIE_NODES_MESSAGE(8) {
+        @Override
+        public Message createMessage(RLPList list) {
+            List<byte[]> hashes = new ArrayList<>();
+
+            for (int k = 0; k < list.size(); k++)
+                hashes.add(list.get(k).getRLPData());
+
+            return new GetTrieNodesMessage(hashes);
+        }
+    },
+    TRIE_NODES_MESSAGE(9) {
+        @Override
+        public Message createMessage(RLPList list) {
+            List<byte[]> nodes = new ArrayList<>();
+
+            for (int k = 0; k < list.size(); k++)
+                nodes.add(list.get(k).getRLPData());
+
+            return new TrieNodesMessage(nodes);
+        }
+    },
+    GET_BLOCKS_MESSAGE(10) {
+        @Override
+        public Message createMessage(RLPList list) {
+            List<byte[]> hashes = new ArrayList<>();
+
+            for (int k = 0; k < list.size(); k++)
+                hashes.add(list.get(k).getRLPData());
+
+            return new GetBlocksMessage(hashes);
+        }
+    },
+    BLOCKS_MESSAGE(11) {
+        @Override
+        public Message createMessage(RLPList list) {
+            List<Block> blocks = new ArrayList<>();
+
+            for (int k = 0; k < list.size(); k++)
+                blocks.add(new Block(list.get(k).getRLPData()));
+
+            return new BlocksMessage(blocks);
+        }
     };
 
     private int type;
@@ -0,0 +1,56 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import org.ethereum.util.RLP;
+
+import java.util.List;
+
+/**
+ * TrieNodesMessage contains serialized trie nodes, in answer to a GetTrieNodesMessage
+ *
+ * The nodes are identified by the hash of their serialized form, and the
+ * requested nodes that the peer does not have are not included
+ */
+public class TrieNodesMessage extends Message {
+    private List<byte[]> nodes;
+
+    public TrieNodesMessage(List<byte[]> nodes) {
+        this.nodes = nodes;
+    }
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.TRIE_NODES_MESSAGE;
+    }
+
+    @Override
+    public byte[] getEncodedMessage() {
+        byte[][] encodedNodes = new byte[this.nodes.size()][];
+
+        for (int k = 0; k < encodedNodes.length; k++)
+            encodedNodes[k] = RLP.encodeElement(this.nodes.get(k));
+
+        return RLP.encodeList(encodedNodes);
+    }
+
+    public List<byte[]> getNodes() {
+        return this.nodes;
+    }
+}
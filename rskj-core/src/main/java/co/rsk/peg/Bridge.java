@@ -81,9 +81,37 @@ public class Bridge extends PrecompiledContracts.PrecompiledContract {
     // Returns the minimum amount of satoshis a user should send to the federation.
     public static final CallTransaction.Function GET_MINIMUM_LOCK_TX_VALUE = CallTransaction.Function.fromSignature("getMinimumLockTxValue", new String[]{}, new String[]{"int"});
 
-    private static Map<CallTransaction.Function, Long> functionCostMap = new HashMap<>();
+    private static final Map<CallTransaction.Function, Long> functionCostMap = new HashMap<>();
+
+    private static final Map<ByteArrayWrapper, CallTransaction.Function> functions = new HashMap<>();
+
+    static {
+        functions.put(new ByteArrayWrapper(UPDATE_COLLECTIONS.encodeSignature()),  UPDATE_COLLECTIONS);
+        functions.put(new ByteArrayWrapper(RECEIVE_HEADERS.encodeSignature()),     RECEIVE_HEADERS);
+        functions.put(new ByteArrayWrapper(REGISTER_BTC_TRANSACTION.encodeSignature()), REGISTER_BTC_TRANSACTION);
+        functions.put(new ByteArrayWrapper(RELEASE_BTC.encodeSignature()),     RELEASE_BTC);
+        functions.put(new ByteArrayWrapper(ADD_SIGNATURE.encodeSignature()),   ADD_SIGNATURE);
+        functions.put(new ByteArrayWrapper(GET_STATE_FOR_BTC_RELEASE_CLIENT.encodeSignature()), GET_STATE_FOR_BTC_RELEASE_CLIENT);
+        functions.put(new ByteArrayWrapper(GET_STATE_FOR_DEBUGGING.encodeSignature()), GET_STATE_FOR_DEBUGGING);
+        functions.put(new ByteArrayWrapper(GET_BTC_BLOCKCHAIN_BEST_CHAIN_HEIGHT.encodeSignature()), GET_BTC_BLOCKCHAIN_BEST_CHAIN_HEIGHT);
+        functions.put(new ByteArrayWrapper(GET_BTC_BLOCKCHAIN_BLOCK_LOCATOR.encodeSignature()),     GET_BTC_BLOCKCHAIN_BLOCK_LOCATOR);
+        functions.put(new ByteArrayWrapper(GET_BTC_TX_HASHES_ALREADY_PROCESSED.encodeSignature()),  GET_BTC_TX_HASHES_ALREADY_PROCESSED);
+        functions.put(new ByteArrayWrapper(GET_FEDERATION_ADDRESS.encodeSignature()),      GET_FEDERATION_ADDRESS);
+        functions.put(new ByteArrayWrapper(GET_MINIMUM_LOCK_TX_VALUE.encodeSignature()),   GET_MINIMUM_LOCK_TX_VALUE);
 
-    private Map<ByteArrayWrapper, CallTransaction.Function> functions;
+        functionCostMap.put(UPDATE_COLLECTIONS,                    50001L);
+        functionCostMap.put(RECEIVE_HEADERS,                       50002L);
+        functionCostMap.put(REGISTER_BTC_TRANSACTION,              50003L);
+        functionCostMap.put(RELEASE_BTC,                           50004L);
+        functionCostMap.put(ADD_SIGNATURE,                         50005L);
+        functionCostMap.put(GET_STATE_FOR_BTC_RELEASE_CLIENT,      50006L);
+        functionCostMap.put(GET_STATE_FOR_DEBUGGING,               50007L);
+        functionCostMap.put(GET_BTC_BLOCKCHAIN_BEST_CHAIN_HEIGHT,  50008L);
+        functionCostMap.put(GET_BTC_BLOCKCHAIN_BLOCK_LOCATOR,      50009L);
+        functionCostMap.put(GET_BTC_TX_HASHES_ALREADY_PROCESSED,   50010L);
+        functionCostMap.put(GET_FEDERATION_ADDRESS,                50011L);
+        functionCostMap.put(GET_MINIMUM_LOCK_TX_VALUE,             50012L);
+    }
 
     private BridgeConstants bridgeConstants;
 
@@ -96,37 +124,13 @@ public class Bridge extends PrecompiledContracts.PrecompiledContract {
 
     private BridgeSupport bridgeSupport;
 
+    /**
+     * The function tables are shared by all the instances, so a new Bridge only
+     * holds the state of one invocation, set by init
+     */
     public Bridge(String contractAddress) {
         this.contractAddress = contractAddress;
-
-        this.functions = new HashMap<>();
-        this.functions.put(new ByteArrayWrapper(UPDATE_COLLECTIONS.encodeSignature()),  UPDATE_COLLECTIONS);
-        this.functions.put(new ByteArrayWrapper(RECEIVE_HEADERS.encodeSignature()),     RECEIVE_HEADERS);
-        this.functions.put(new ByteArrayWrapper(REGISTER_BTC_TRANSACTION.encodeSignature()), REGISTER_BTC_TRANSACTION);
-        this.functions.put(new ByteArrayWrapper(RELEASE_BTC.encodeSignature()),     RELEASE_BTC);
-        this.functions.put(new ByteArrayWrapper(ADD_SIGNATURE.encodeSignature()),   ADD_SIGNATURE);
-        this.functions.put(new ByteArrayWrapper(GET_STATE_FOR_BTC_RELEASE_CLIENT.encodeSignature()), GET_STATE_FOR_BTC_RELEASE_CLIENT);
-        this.functions.put(new ByteArrayWrapper(GET_STATE_FOR_DEBUGGING.encodeSignature()), GET_STATE_FOR_DEBUGGING);
-        this.functions.put(new ByteArrayWrapper(GET_BTC_BLOCKCHAIN_BEST_CHAIN_HEIGHT.encodeSignature()), GET_BTC_BLOCKCHAIN_BEST_CHAIN_HEIGHT);
-        this.functions.put(new ByteArrayWrapper(GET_BTC_BLOCKCHAIN_BLOCK_LOCATOR.encodeSignature()),     GET_BTC_BLOCKCHAIN_BLOCK_LOCATOR);
-        this.functions.put(new ByteArrayWrapper(GET_BTC_TX_HASHES_ALREADY_PROCESSED.encodeSignature()),  GET_BTC_TX_HASHES_ALREADY_PROCESSED);
-        this.functions.put(new ByteArrayWrapper(GET_FEDERATION_ADDRESS.encodeSignature()),      GET_FEDERATION_ADDRESS);
-        this.functions.put(new ByteArrayWrapper(GET_MINIMUM_LOCK_TX_VALUE.encodeSignature()),   GET_MINIMUM_LOCK_TX_VALUE);
-
-        bridgeConstants = SystemProperties.CONFIG.getBlockchainConfig().getCommonConstants().getBridgeConstants();
-
-        functionCostMap.put(UPDATE_COLLECTIONS,                    50001L);
-        functionCostMap.put(RECEIVE_HEADERS,                       50002L);
-        functionCostMap.put(REGISTER_BTC_TRANSACTION,              50003L);
-        functionCostMap.put(RELEASE_BTC,                           50004L);
-        functionCostMap.put(ADD_SIGNATURE,                         50005L);
-        functionCostMap.put(GET_STATE_FOR_BTC_RELEASE_CLIENT,      50006L);
-        functionCostMap.put(GET_STATE_FOR_DEBUGGING,               50007L);
-        functionCostMap.put(GET_BTC_BLOCKCHAIN_BEST_CHAIN_HEIGHT,  50008L);
-        functionCostMap.put(GET_BTC_BLOCKCHAIN_BLOCK_LOCATOR,      50009L);
-        functionCostMap.put(GET_BTC_TX_HASHES_ALREADY_PROCESSED,   50010L);
-        functionCostMap.put(GET_FEDERATION_ADDRESS,                50011L);
-        functionCostMap.put(GET_MINIMUM_LOCK_TX_VALUE,             50012L);
+        this.bridgeConstants = SystemProperties.CONFIG.getBlockchainConfig().getCommonConstants().getBridgeConstants();
     }
 
     @Override
@@ -51,7 +51,12 @@ public class RemascContract extends PrecompiledContracts.PrecompiledContract {
     private static final CallTransaction.Function PROCESS_MINERS_FEES = CallTransaction.Function.fromSignature("processMinersFees", new String[]{}, new String[]{});
     public static final CallTransaction.Function GET_STATE_FOR_DEBUGGING = CallTransaction.Function.fromSignature("getStateForDebugging", new String[]{}, new String[]{"bytes"});
 
-    private Map<ByteArrayWrapper, CallTransaction.Function> functions;
+    private static final Map<ByteArrayWrapper, CallTransaction.Function> functions = new HashMap<>();
+
+    static {
+        functions.put(new ByteArrayWrapper(PROCESS_MINERS_FEES.encodeSignature()), PROCESS_MINERS_FEES);
+        functions.put(new ByteArrayWrapper(GET_STATE_FOR_DEBUGGING.encodeSignature()), GET_STATE_FOR_DEBUGGING);
+    }
 
     private RemascConfig config;
 
@@ -61,9 +66,6 @@ public class RemascContract extends PrecompiledContracts.PrecompiledContract {
 
     public RemascContract(String contractAddress, RemascConfig remascConfig) {
         this.contractAddress = contractAddress;
-        this.functions = new HashMap<>();
-        this.functions.put(new ByteArrayWrapper(PROCESS_MINERS_FEES.encodeSignature()), PROCESS_MINERS_FEES);
-        this.functions.put(new ByteArrayWrapper(GET_STATE_FOR_DEBUGGING.encodeSignature()), GET_STATE_FOR_DEBUGGING);
         this.config = remascConfig;
     }
 
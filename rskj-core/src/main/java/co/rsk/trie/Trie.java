@@ -18,6 +18,8 @@
 
 package co.rsk.trie;
 
+import java.util.List;
+
 /**
  * Created by ajlopez on 29/03/2017.
  */
@@ -46,6 +48,12 @@ public interface Trie {
 
     int trieSize();
 
+    void copyTo(TrieStore store);
+
+    List<byte[]> getValues();
+
+    TrieIterator iterator(byte[] from, byte[] to);
+
     Trie cloneTrie();
 
     Trie cloneTrie(byte[] newValue);
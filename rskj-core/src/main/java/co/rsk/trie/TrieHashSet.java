@@ -0,0 +1,147 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package co.rsk.trie;
+
+/**
+ * TrieHashSet is a set of trie node hashes, kept in a compact open addressing table
+ *
+ * Each hash takes four longs in the table, instead of the wrapper, array and map entry
+ * objects of a HashSet, so the nodes of a big state can be marked in memory
+ * Only 32 bytes hashes are supported, the hashes are already uniformly distributed
+ * so their first bytes are used as the table index
+ */
+class TrieHashSet {
+    static final int HASH_LENGTH = 32;
+
+    private static final int LONGS_BY_HASH = HASH_LENGTH / Long.BYTES;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private long[] table;
+    private boolean[] used;
+    private int size;
+
+    TrieHashSet() {
+        this.table = new long[INITIAL_CAPACITY * LONGS_BY_HASH];
+        this.used = new boolean[INITIAL_CAPACITY];
+    }
+
+    /**
+     * add adds a hash to the set
+     *
+     * @param hash  the hash to add
+     *
+     * @return  true if the hash was not in the set
+     */
+    boolean add(byte[] hash) {
+        checkHashLength(hash);
+
+        int slot = this.findSlot(hash);
+
+        if (this.used[slot])
+            return false;
+
+        this.store(slot, hash);
+        this.size++;
+
+        if (this.size * 4L >= this.used.length * 3L)
+            this.grow();
+
+        return true;
+    }
+
+    boolean contains(byte[] hash) {
+        if (hash == null || hash.length != HASH_LENGTH)
+            return false;
+
+        return this.used[this.findSlot(hash)];
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private int findSlot(byte[] hash) {
+        int mask = this.used.length - 1;
+        int slot = (int) getLong(hash, 0) & mask;
+
+        while (this.used[slot] && !this.equalsAt(slot, hash))
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    private boolean equalsAt(int slot, byte[] hash) {
+        int offset = slot * LONGS_BY_HASH;
+
+        for (int k = 0; k < LONGS_BY_HASH; k++)
+            if (this.table[offset + k] != getLong(hash, k * Long.BYTES))
+                return false;
+
+        return true;
+    }
+
+    private void store(int slot, byte[] hash) {
+        int offset = slot * LONGS_BY_HASH;
+
+        for (int k = 0; k < LONGS_BY_HASH; k++)
+            this.table[offset + k] = getLong(hash, k * Long.BYTES);
+
+        this.used[slot] = true;
+    }
+
+    private void grow() {
+        long[] oldTable = this.table;
+        boolean[] oldUsed = this.used;
+        int capacity = oldUsed.length * 2;
+
+        this.table = new long[capacity * LONGS_BY_HASH];
+        this.used = new boolean[capacity];
+
+        int mask = capacity - 1;
+
+        for (int k = 0; k < oldUsed.length; k++) {
+            if (!oldUsed[k])
+                continue;
+
+            int offset = k * LONGS_BY_HASH;
+            int slot = (int) oldTable[offset] & mask;
+
+            while (this.used[slot])
+                slot = (slot + 1) & mask;
+
+            System.arraycopy(oldTable, offset, this.table, slot * LONGS_BY_HASH, LONGS_BY_HASH);
+            this.used[slot] = true;
+        }
+    }
+
+    private static void checkHashLength(byte[] hash) {
+        if (hash.length != HASH_LENGTH)
+            throw new IllegalArgumentException("Invalid trie node hash length " + hash.length);
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long result = 0;
+
+        for (int k = 0; k < Long.BYTES; k++)
+            result = (result << 8) | (bytes[offset + k] & 0xff);
+
+        return result;
+    }
+}
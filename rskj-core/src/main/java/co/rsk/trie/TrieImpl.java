@@ -35,6 +35,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static org.ethereum.crypto.SHA3Helper.sha3;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
@@ -74,14 +76,20 @@ public class TrieImpl implements Trie {
     // all zeroed, default hash for empty nodes
     private static byte[] emptyHash = makeEmptyHash();
 
+    // minimum number of unhashed nodes to calculate the subnode hashes in parallel, 0 to disable
+    private static int parallelHashThreshold = 0;
+
     // this node associated value, if any
     private byte[] value;
 
-    // the list of subnodes
-    private TrieImpl[] nodes;
+    // the list of subnodes, volatile and copied on retrieve, as saved nodes are shared by the readers
+    private volatile TrieImpl[] nodes;
+
+    // the subnode hashes, packed in one array of arity hashes, null if there are no hashes
+    private byte[] hashes;
 
-    // the list of subnode hashes
-    private byte[][] hashes;
+    // a bit by subnode, set if its hash is in the hashes array
+    private short hashBits;
 
     // this node hash value
     private byte[] hash;
@@ -104,44 +112,45 @@ public class TrieImpl implements Trie {
 
     // default constructor, arity == 2 (binary tree), no secure
     public TrieImpl() {
-        this(2, null, 0, null, null, null, null);
+        this(2, null, 0, null, null, null, 0, null);
         this.isSecure = false;
     }
 
     public TrieImpl(boolean isSecure) {
-        this(2, null, 0, null, null, null, null);
+        this(2, null, 0, null, null, null, 0, null);
         this.isSecure = isSecure;
     }
 
     public TrieImpl(int arity, boolean isSecure) {
-        this(arity, null, 0, null, null, null, null);
+        this(arity, null, 0, null, null, null, 0, null);
         this.isSecure = isSecure;
     }
 
     public TrieImpl(TrieStore store, boolean isSecure) {
-        this(2, null, 0, null, null, null, store);
+        this(2, null, 0, null, null, null, 0, store);
         this.isSecure = isSecure;
     }
 
     public TrieImpl(int arity, TrieStore store, boolean isSecure) {
-        this(arity, null, 0, null, null, null, store);
+        this(arity, null, 0, null, null, null, 0, store);
         this.isSecure = isSecure;
     }
 
     private TrieImpl(int arity, TrieStore store, byte[] encodedSharedPath, int sharedPathLength, byte[] value, boolean isSecure) {
-        this(arity, encodedSharedPath, sharedPathLength, value, null, null, store);
+        this(arity, encodedSharedPath, sharedPathLength, value, null, null, 0, store);
         this.isSecure = isSecure;
     }
 
     // full constructor
-    private TrieImpl(int arity, byte[] encodedSharedPath, int sharedPathLength, byte[] value, TrieImpl[] nodes, byte[][] hashes, TrieStore store) {
+    private TrieImpl(int arity, byte[] encodedSharedPath, int sharedPathLength, byte[] value, TrieImpl[] nodes, byte[] hashes, int hashBits, TrieStore store) {
         if (arity != 2 && arity != 4 && arity != 16)
             throw new IllegalArgumentException(INVALID_ARITY);
 
         this.arity = arity;
         this.value = value;
         this.nodes = nodes;
-        this.hashes = hashes;
+        this.hashes = hashBits == 0 ? null : hashes;
+        this.hashBits = (short) hashBits;
         this.store = store;
         this.encodedSharedPath = encodedSharedPath;
         this.sharedPathLength = sharedPathLength;
@@ -154,12 +163,12 @@ public class TrieImpl implements Trie {
 
     @Override
     public Trie cloneTrie() {
-        return new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, this.value, cloneNodes(true), cloneHashes(), this.store).withSecure(this.isSecure);
+        return new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, this.value, cloneNodes(true), cloneHashes(), this.hashBits, this.store).withSecure(this.isSecure);
     }
 
     @Override
     public Trie cloneTrie(byte[] newValue) {
-        TrieImpl trie = new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, this.value, cloneNodes(true), cloneHashes(), this.store).withSecure(this.isSecure);
+        TrieImpl trie = new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, this.value, cloneNodes(true), cloneHashes(), this.hashBits, this.store).withSecure(this.isSecure);
         trie.setValue(newValue);
         return trie;
     }
@@ -168,8 +177,8 @@ public class TrieImpl implements Trie {
     public void removeNode(int position) {
         if (this.nodes != null)
             this.nodes[position] = null;
-        if (this.hashes != null)
-            this.hashes[position] = null;
+
+        this.hashBits &= ~(1 << position);
     }
 
     @Override
@@ -220,14 +229,13 @@ public class TrieImpl implements Trie {
                     throw new EOFException();
             }
 
-            byte[][] hashes = new byte[arity][];
+            byte[] hashes = bhashes == 0 ? null : new byte[arity * SHA3Helper.DEFAULT_SIZE_BYTES];
 
             for (int k = 0; k < arity; k++) {
                 if ((bhashes & (1 << k)) == 0)
                     continue;
-                hashes[k] = new byte[SHA3Helper.DEFAULT_SIZE_BYTES];
 
-                if (istream.read(hashes[k]) != SHA3Helper.DEFAULT_SIZE_BYTES)
+                if (istream.read(hashes, k * SHA3Helper.DEFAULT_SIZE_BYTES, SHA3Helper.DEFAULT_SIZE_BYTES) != SHA3Helper.DEFAULT_SIZE_BYTES)
                     throw new EOFException();
 
                 nhashes++;
@@ -243,7 +251,7 @@ public class TrieImpl implements Trie {
                     throw new EOFException();
             }
 
-            TrieImpl trie = new TrieImpl(arity, encodedSharedPath, lshared, value, null, hashes, store).withSecure(isSecure);
+            TrieImpl trie = new TrieImpl(arity, encodedSharedPath, lshared, value, null, hashes, bhashes, store).withSecure(isSecure);
 
             if (store != null)
                 trie.saved = true;
@@ -256,6 +264,29 @@ public class TrieImpl implements Trie {
         }
     }
 
+    /**
+     * cloneSavedNode creates a copy of this saved node, without its loaded subnodes
+     *
+     * Used by the node cache, to keep and share nodes retrieved from the store
+     *
+     * @param hash  the node hash, the key used in the store
+     * @param store the store of the new node, used to retrieve its subnodes and to save its changes
+     *
+     * @return the new node, marked as saved
+     */
+    TrieImpl cloneSavedNode(byte[] hash, TrieStore store) {
+        TrieImpl trie = new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, this.value, null, cloneHashes(), this.hashBits, store).withSecure(this.isSecure);
+
+        // the hashes of the loaded subnodes are kept in the subnodes
+        for (int k = 0; k < this.arity; k++)
+            if (!this.hasHash(k) && this.hasSubnode(k))
+                trie.setHash(k, this.nodes[k].calculateHash());
+
+        trie.hash = hash;
+        trie.saved = true;
+        return trie;
+    }
+
     /**
      * getArity returns the number of subnodes
      *
@@ -271,6 +302,9 @@ public class TrieImpl implements Trie {
      *
      * the internal variable hash could contains the cached hash
      *
+     * if the number of unhashed nodes reaches the parallel hash threshold, the subnode hashes
+     * are calculated in parallel, using the common fork join pool
+     *
      * @return  a byte array with the node serialized to bytes
      */
     @Override
@@ -278,14 +312,61 @@ public class TrieImpl implements Trie {
         if (this.hash != null)
             return ByteUtils.clone(this.hash);
 
-        if (isEmptyTrie(this.value, this.nodes, this.hashes))
-            return ByteUtils.clone(emptyHash);
+        if (parallelHashThreshold > 0 && this.countUnhashedNodes(parallelHashThreshold) >= parallelHashThreshold)
+            ForkJoinPool.commonPool().invoke(new HashTask(this, parallelHashThreshold));
+
+        return ByteUtils.clone(this.calculateHash());
+    }
+
+    /**
+     * calculateHash calculates the hash of this node, and the hashes of its unhashed subnodes,
+     * in the current thread
+     *
+     * @return  the node hash, not cloned
+     */
+    private byte[] calculateHash() {
+        if (this.hash != null)
+            return this.hash;
+
+        if (isEmptyTrie(this.value, this.nodes, this.hashBits))
+            return emptyHash;
 
         byte[] message = this.toMessage();
 
         this.hash = SHA3Helper.sha3(message);
 
-        return ByteUtils.clone(this.hash);
+        return this.hash;
+    }
+
+    /**
+     * countUnhashedNodes counts this node and its loaded subnodes that have no calculated hash
+     *
+     * @param limit the count stops when this limit is reached
+     *
+     * @return  the number of unhashed nodes, up to the limit
+     */
+    private int countUnhashedNodes(int limit) {
+        if (this.hash != null)
+            return 0;
+
+        int count = 1;
+
+        if (this.nodes == null)
+            return count;
+
+        for (int k = 0; k < this.arity && count < limit; k++)
+            if (this.nodes[k] != null && !this.hasHash(k))
+                count += this.nodes[k].countUnhashedNodes(limit - count);
+
+        return count;
+    }
+
+    public static void setParallelHashThreshold(int threshold) {
+        parallelHashThreshold = threshold;
+    }
+
+    public static int getParallelHashThreshold() {
+        return parallelHashThreshold;
     }
 
     /**
@@ -439,14 +520,9 @@ public class TrieImpl implements Trie {
 
         int bits = 0;
 
-        for (int k = 0; k < this.arity; k++) {
-            byte[] nodeHash = this.getHash(k);
-
-            if (nodeHash == null)
-                continue;
-
-            bits |= 1 << k;
-        }
+        for (int k = 0; k < this.arity; k++)
+            if (this.hasSubnode(k))
+                bits |= 1 << k;
 
         ByteBuffer buffer = ByteBuffer.allocate(MESSAGE_HEADER_LENGTH + lencoded + nnodes * SHA3Helper.DEFAULT_SIZE_BYTES + lvalue);
 
@@ -460,12 +536,10 @@ public class TrieImpl implements Trie {
 
 
         for (int k = 0; k < this.arity; k++) {
-            byte[] nodeHash = this.getHash(k);
-
-            if (nodeHash == null)
-                continue;
-
-            buffer.put(nodeHash);
+            if (this.hasHash(k))
+                buffer.put(this.hashes, k * SHA3Helper.DEFAULT_SIZE_BYTES, SHA3Helper.DEFAULT_SIZE_BYTES);
+            else if ((bits & (1 << k)) != 0)
+                buffer.put(this.nodes[k].calculateHash());
         }
 
         if (lvalue > 0)
@@ -477,19 +551,44 @@ public class TrieImpl implements Trie {
     /**
      * save saves the unsaved current trie and subnodes to their associated store
      *
+     * All the unsaved nodes are collected first, and written to the store
+     * in only one batch
+     *
      */
     @Override
     public void save() {
         if (this.saved)
             return;
 
+        // calculate the hashes of the new nodes, in parallel if the trie is big enough
+        this.getHash();
+
+        List<TrieImpl> unsaved = new ArrayList<>();
+
+        this.collectUnsavedNodes(unsaved);
+
+        this.store.saveAll(unsaved);
+
+        for (TrieImpl node : unsaved)
+            node.saved = true;
+    }
+
+    /**
+     * collectUnsavedNodes adds the unsaved subnodes and this node to the list,
+     * subnodes before their parent. Saved nodes and their subnodes are skipped
+     *
+     * @param unsaved   the list of collected nodes
+     */
+    private void collectUnsavedNodes(List<TrieImpl> unsaved) {
+        if (this.saved)
+            return;
+
         if (this.nodes != null)
             for (TrieImpl node : this.nodes)
                 if (node != null)
-                    node.save();
+                    node.collectUnsavedNodes(unsaved);
 
-        this.store.save(this);
-        this.saved = true;
+        unsaved.add(this);
     }
 
     /**
@@ -511,6 +610,109 @@ public class TrieImpl implements Trie {
         return size;
     }
 
+    /**
+     * copyTo saves this trie and all its subnodes to another store, in only one batch
+     *
+     * @param target    the store to save the nodes
+     */
+    @Override
+    public void copyTo(TrieStore target) {
+        if (isEmptyTrie(this.value, this.nodes, this.hashBits))
+            return;
+
+        List<TrieImpl> allNodes = new ArrayList<>();
+
+        this.collectNodes(allNodes);
+
+        target.saveAll(allNodes);
+    }
+
+    private void collectNodes(List<TrieImpl> allNodes) {
+        for (int k = 0; k < this.arity; k++) {
+            TrieImpl node = (TrieImpl) this.retrieveNode(k);
+
+            if (node != null)
+                node.collectNodes(allNodes);
+        }
+
+        allNodes.add(this);
+    }
+
+    /**
+     * getValues returns the values of all the trie nodes, in no particular order
+     *
+     * @return the list of values
+     */
+    @Override
+    public List<byte[]> getValues() {
+        List<byte[]> values = new ArrayList<>();
+
+        this.collectValues(values);
+
+        return values;
+    }
+
+    private void collectValues(List<byte[]> values) {
+        if (this.value != null)
+            values.add(ByteUtils.clone(this.value));
+
+        for (int k = 0; k < this.arity; k++) {
+            TrieImpl node = (TrieImpl) this.retrieveNode(k);
+
+            if (node != null)
+                node.collectValues(values);
+        }
+    }
+
+    byte[] getValue() {
+        return this.value;
+    }
+
+    /**
+     * iterator returns an iterator of the key values in this trie, in ascending key order
+     *
+     * @param from  the first key to return, null to start with the first key
+     * @param to    the key to stop before, null to return until the last key
+     *
+     * @return  the iterator
+     */
+    @Override
+    public TrieIterator iterator(byte[] from, byte[] to) {
+        return new TrieIterator(this, from, to);
+    }
+
+    /**
+     * getSharedPath returns the shared path of this node, one key symbol per byte
+     *
+     * @return  the shared path, an empty array if there is no shared path
+     */
+    byte[] getSharedPath() {
+        if (this.encodedSharedPath == null)
+            return EMPTY_BYTE_ARRAY;
+
+        return PathEncoder.decode(this.encodedSharedPath, this.arity, this.sharedPathLength);
+    }
+
+    /**
+     * getSubnode returns the subnode at a position, retrieving it from the store
+     * if it is not loaded, without keeping the retrieved node in this node
+     *
+     * @param n the subnode position
+     *
+     * @return  the subnode, null if there is no subnode at the position
+     */
+    TrieImpl getSubnode(int n) {
+        TrieImpl node = this.getNode(n);
+
+        if (node != null)
+            return node;
+
+        if (!this.hasHash(n))
+            return null;
+
+        return (TrieImpl) this.store.retrieve(this.copyHash(n));
+    }
+
     /**
      * get retrieves the associated value given the key
      *
@@ -561,13 +763,9 @@ public class TrieImpl implements Trie {
     private int getNumberOfChildren() {
         int count = 0;
 
-        for (int k = 0; k < this.arity; k++) {
-            TrieImpl node = this.getNode(k);
-            byte[] localHash = this.getHash(k);
-
-            if (node != null && !isEmptyTrie(node.value, node.nodes, node.hashes) || localHash != null)
+        for (int k = 0; k < this.arity; k++)
+            if (this.hasSubnode(k))
                 count++;
-        }
 
         return count;
     }
@@ -586,23 +784,19 @@ public class TrieImpl implements Trie {
         if (node != null)
             return node;
 
-        if (this.hashes == null)
-            return null;
-
-        byte[] localHash = this.hashes[n];
-
-        if (localHash == null)
+        if (!this.hasHash(n))
             return null;
 
-        node = this.store.retrieve(localHash);
+        node = this.store.retrieve(this.copyHash(n));
 
         if (node == null)
             return null;
 
-        if (this.nodes == null)
-            this.nodes = new TrieImpl[this.arity];
-
-        this.nodes[n] = (TrieImpl)node;
+        // the loaded node is published in a new array, so a concurrent reader sees the array
+        // fully built, or the previous one and retrieves the node again
+        TrieImpl[] newNodes = this.cloneNodes(true);
+        newNodes[n] = (TrieImpl)node;
+        this.nodes = newNodes;
 
         return node;
     }
@@ -615,23 +809,42 @@ public class TrieImpl implements Trie {
      *
      * @return  node hash or null if no node is present
      */
-    private byte[] getHash(int n) {
-        if (this.hashes != null && this.hashes[n] != null)
-            return this.hashes[n];
+    byte[] getHash(int n) {
+        if (this.hasHash(n))
+            return this.copyHash(n);
 
-        if (this.nodes == null || this.nodes[n] == null)
+        if (!this.hasSubnode(n))
             return null;
 
-        TrieImpl node = this.nodes[n];
+        return ByteUtils.clone(this.nodes[n].calculateHash());
+    }
 
-        if (isEmptyTrie(node.value, node.nodes, node.hashes))
-            return null;
+    /**
+     * hasSubnode checks if there is a subnode at position n, by its hash, or a loaded non empty node.
+     * The hash of a loaded node is kept in the node, not in this node
+     *
+     * @param n     subnode position
+     *
+     * @return  true if there is a subnode
+     */
+    private boolean hasSubnode(int n) {
+        if (this.hasHash(n))
+            return true;
+
+        TrieImpl node = this.getNode(n);
+
+        if (node == null)
+            return false;
 
-        byte[] localHash = node.getHash();
+        return !isEmptyTrie(node.value, node.nodes, node.hashBits);
+    }
 
-        this.setHash(n, localHash);
+    private boolean hasHash(int n) {
+        return (this.hashBits & (1 << n)) != 0;
+    }
 
-        return localHash;
+    private byte[] copyHash(int n) {
+        return Arrays.copyOfRange(this.hashes, n * SHA3Helper.DEFAULT_SIZE_BYTES, (n + 1) * SHA3Helper.DEFAULT_SIZE_BYTES);
     }
 
     /**
@@ -643,9 +856,10 @@ public class TrieImpl implements Trie {
     @Override
     public void setHash(int n, byte[] hash) {
         if (this.hashes == null)
-            this.hashes = new byte[this.arity][];
+            this.hashes = new byte[this.arity * SHA3Helper.DEFAULT_SIZE_BYTES];
 
-        this.hashes[n] = hash;
+        System.arraycopy(hash, 0, this.hashes, n * SHA3Helper.DEFAULT_SIZE_BYTES, SHA3Helper.DEFAULT_SIZE_BYTES);
+        this.hashBits |= 1 << n;
     }
 
     /**
@@ -772,7 +986,7 @@ public class TrieImpl implements Trie {
             trie.nodes = new TrieImpl[trie.arity];
 
         for (int k = 0; k < trie.arity; k++) {
-            if (trie.hashes[k] == null)
+            if (!trie.hasHash(k))
                 continue;
 
             int subnodeLength = getSerializedNodeLength(bytes, subnodeOffset);
@@ -808,10 +1022,12 @@ public class TrieImpl implements Trie {
      * @return
      */
     private TrieImpl getNode(int n) {
-        if (this.nodes == null)
+        TrieImpl[] currentNodes = this.nodes;
+
+        if (currentNodes == null)
             return null;
 
-        return this.nodes[n];
+        return currentNodes[n];
     }
 
     /**
@@ -841,18 +1057,18 @@ public class TrieImpl implements Trie {
         }
 
         if (position >= length) {
-            TrieImpl[] newNodes = cloneNodes(false);
-            byte[][] newHashes = cloneHashes();
-
             boolean isDeleteOperation = value == null;
             if (isDeleteOperation)
                 return new TriePutResult(ResultAction.KEY_TO_DELETE_FOUND, this.getNumberOfChildren());
 
-            TrieImpl trieToReturn = new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, value, newNodes, newHashes, this.store).withSecure(this.isSecure);
+            TrieImpl[] newNodes = cloneNodes(false);
+            byte[] newHashes = cloneHashes();
+
+            TrieImpl trieToReturn = new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, value, newNodes, newHashes, this.hashBits, this.store).withSecure(this.isSecure);
             return new TriePutResult(ResultAction.PUT, trieToReturn);
         }
 
-        if (isEmptyTrie(this.value, this.nodes, this.hashes)) {
+        if (isEmptyTrie(this.value, this.nodes, this.hashBits)) {
             int lshared = length - position;
             byte[] shared = new byte[lshared];
             System.arraycopy(key, position, shared, 0, lshared);
@@ -861,9 +1077,6 @@ public class TrieImpl implements Trie {
             return new TriePutResult(ResultAction.PUT, trieToReturn);
         }
 
-        TrieImpl[] newNodes = cloneNodes(true);
-        byte[][] newHashes = cloneHashes();
-
         int pos = key[position];
 
         TrieImpl node = (TrieImpl)retrieveNode(pos);
@@ -879,12 +1092,13 @@ public class TrieImpl implements Trie {
             return new TriePutResult(ResultAction.DELETE, pos, putResult.sonToDeleteNumberOfSons());
         }
 
+        TrieImpl[] newNodes = cloneNodes(true);
         newNodes[pos] = this.buildNewSonTrie(this, pos, putResult, newNodes[pos]);
 
-        if (newHashes != null)
-            newHashes[pos] = null;
+        // the other subnode hashes are kept, the new subnode hash is calculated when needed
+        int newHashBits = this.hashBits & ~(1 << pos);
 
-        TrieImpl trieToReturn = new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, this.value, newNodes, newHashes, this.store).withSecure(this.isSecure);
+        TrieImpl trieToReturn = new TrieImpl(this.arity, this.encodedSharedPath, this.sharedPathLength, this.value, newNodes, cloneHashes(), newHashBits, this.store).withSecure(this.isSecure);
 
         return new TriePutResult(ResultAction.PUT, trieToReturn);
     }
@@ -923,7 +1137,7 @@ public class TrieImpl implements Trie {
                 newTrie = grandParent.deleteSonAndCompressOnlyOneSon(parent, putResult.getSonToDelete());
             } else {
                 // node to be deleted has more than one son, value must be set to null.
-                newTrie = new TrieImpl(grandParent.arity, grandParent.encodedSharedPath, grandParent.sharedPathLength, null, grandParent.nodes, null, grandParent.store).withSecure(grandParent.isSecure);
+                newTrie = new TrieImpl(grandParent.arity, grandParent.encodedSharedPath, grandParent.sharedPathLength, null, grandParent.nodes, null, 0, grandParent.store).withSecure(grandParent.isSecure);
             }
         }
 
@@ -950,8 +1164,8 @@ public class TrieImpl implements Trie {
     private TrieImpl split(int sharedBitsBetweenKeys) {
         // create a new child trie to store 'this' current value
         TrieImpl[] newChildNodes = this.cloneNodes(false);
-        byte[][] newChildHashes = this.cloneHashes();
-        TrieImpl newChildTrie = new TrieImpl(this.arity, null, 0, this.value, newChildNodes, newChildHashes, this.store).withSecure(this.isSecure);
+        byte[] newChildHashes = this.cloneHashes();
+        TrieImpl newChildTrie = new TrieImpl(this.arity, null, 0, this.value, newChildNodes, newChildHashes, this.hashBits, this.store).withSecure(this.isSecure);
 
         // set shared path for child
         byte[] sharedPath = PathEncoder.decode(this.encodedSharedPath, this.arity, this.sharedPathLength);
@@ -1009,12 +1223,12 @@ public class TrieImpl implements Trie {
         byte[] newEncode = PathEncoder.encode(newDecode, sonToDelete.arity);
 
         TrieImpl[] newNodes = this.cloneNodes(grandSonToKeep, false);
-        byte[][] newHashes = this.cloneHashes(grandSonToKeep);
-        TrieImpl newSon = new TrieImpl(grandSonToKeep.arity, newEncode, decodedPrefix.length + 1 + decodedSuffix.length, grandSonToKeep.value, newNodes, newHashes, grandSonToKeep.store).withSecure(grandSonToKeep.isSecure);
+        byte[] newHashes = this.cloneHashes(grandSonToKeep);
+        TrieImpl newSon = new TrieImpl(grandSonToKeep.arity, newEncode, decodedPrefix.length + 1 + decodedSuffix.length, grandSonToKeep.value, newNodes, newHashes, grandSonToKeep.hashBits, grandSonToKeep.store).withSecure(grandSonToKeep.isSecure);
         TrieImpl[] newParentSons = this.cloneNodesNullSafe(parent);
         newParentSons[sonToDeletePos] = newSon;
 
-        return new TrieImpl(parent.arity, parent.encodedSharedPath, parent.sharedPathLength, parent.value, newParentSons, null, parent.store).withSecure(parent.isSecure);
+        return new TrieImpl(parent.arity, parent.encodedSharedPath, parent.sharedPathLength, parent.value, newParentSons, null, 0, parent.store).withSecure(parent.isSecure);
     }
 
     private TrieImpl deleteSonAndCompress(TrieImpl parentToReplace, int sonToDelete) {
@@ -1039,7 +1253,7 @@ public class TrieImpl implements Trie {
         System.arraycopy(decodedSuffix, 0, newDecode, decodedPrefix.length + 1, decodedSuffix.length);
         byte[] newEncode = PathEncoder.encode(newDecode, sonToKeep.arity);
 
-        return new TrieImpl(sonToKeep.arity, newEncode, decodedPrefix.length + 1 + decodedSuffix.length, sonToKeep.value, sonToKeep.nodes, sonToKeep.hashes, sonToKeep.store).withSecure(sonToKeep.isSecure);
+        return new TrieImpl(sonToKeep.arity, newEncode, decodedPrefix.length + 1 + decodedSuffix.length, sonToKeep.value, sonToKeep.nodes, this.cloneHashes(sonToKeep), sonToKeep.hashBits, sonToKeep.store).withSecure(sonToKeep.isSecure);
     }
 
     /**
@@ -1047,20 +1261,15 @@ public class TrieImpl implements Trie {
      *
      * @return a copy of the original hashes
      */
-    private byte[][] cloneHashes() {
+    private byte[] cloneHashes() {
         return this.cloneHashes(this);
     }
 
-    private byte[][] cloneHashes(TrieImpl nodeToClone) {
-        if (nodeToClone.hashes == null)
+    private byte[] cloneHashes(TrieImpl nodeToClone) {
+        if (nodeToClone.hashes == null || nodeToClone.hashBits == 0)
             return null;
 
-        int nhashes = nodeToClone.hashes.length;
-        byte[][] newHashes = new byte[nhashes][];
-
-        System.arraycopy(nodeToClone.hashes, 0, newHashes, 0, nhashes);
-
-        return newHashes;
+        return nodeToClone.hashes.clone();
     }
 
     /**
@@ -1083,9 +1292,10 @@ public class TrieImpl implements Trie {
 
     private TrieImpl[] cloneNodesNullSafe(TrieImpl nodeToClone) {
         TrieImpl[] newNodes = new TrieImpl[nodeToClone.arity];
+        TrieImpl[] currentNodes = nodeToClone.nodes;
 
-        if (nodeToClone.nodes != null) {
-            System.arraycopy(nodeToClone.nodes, 0, newNodes, 0, nodeToClone.arity);
+        if (currentNodes != null) {
+            System.arraycopy(currentNodes, 0, newNodes, 0, nodeToClone.arity);
         }
 
         return newNodes;
@@ -1101,11 +1311,11 @@ public class TrieImpl implements Trie {
      *
      * @param value     current value
      * @param nodes     list of subnodes
-     * @param hashes    list of subnodes hashes
+     * @param hashBits  bits of the subnodes with hash
      *
      * @return true if no data
      */
-    private static boolean isEmptyTrie(byte[] value, TrieImpl[] nodes, byte[][]hashes) {
+    private static boolean isEmptyTrie(byte[] value, TrieImpl[] nodes, short hashBits) {
         if (value != null && value.length != 0)
             return false;
 
@@ -1115,13 +1325,7 @@ public class TrieImpl implements Trie {
                     return false;
         }
 
-        if (hashes != null) {
-            for (int k = 0; k < hashes.length; k++)
-                if (hashes[k] != null)
-                    return false;
-        }
-
-        return true;
+        return hashBits == 0;
     }
 
     /**
@@ -1166,6 +1370,42 @@ public class TrieImpl implements Trie {
         return keyBytes;
     }
 
+    /**
+     * keyToBytes converts an expanded key, as returned by bytesToKey, to the original bytes
+     *
+     * @param key   expanded key, its length should be a multiple of the symbols per byte
+     * @param arity number of subnodes in each node trie
+     *
+     * @return original key
+     */
+    public static byte[] keyToBytes(byte[] key, int arity) {
+        int factor = 8;
+        int nbits = 1;
+
+        if (arity == 4) {
+            factor = 4;
+            nbits = 2;
+        }
+        else if (arity == 16) {
+            factor = 2;
+            nbits = 4;
+        }
+
+        byte[] bytes = new byte[key.length / factor];
+        int j = 0;
+
+        for (int k = 0; k < bytes.length; k++) {
+            int b = 0;
+
+            for (int i = 0; i < factor; i++)
+                b = (b << nbits) | key[j++];
+
+            bytes[k] = (byte) b;
+        }
+
+        return bytes;
+    }
+
     @Override
     public Trie getSnapshotTo(byte[] hash) {
         this.save();
@@ -1190,6 +1430,39 @@ public class TrieImpl implements Trie {
         return 0;
     }
 
+    /**
+     * HashTask calculates the hash of a node. When the node has enough unhashed nodes,
+     * the hashes of its unhashed subnodes are calculated in parallel first.
+     * The node hash is calculated as in the sequential case, so the result is the same
+     */
+    private static class HashTask extends RecursiveAction {
+        private final TrieImpl node;
+        private final int threshold;
+
+        HashTask(TrieImpl node, int threshold) {
+            this.node = node;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.nodes != null && node.countUnhashedNodes(threshold) >= threshold) {
+                List<HashTask> tasks = new ArrayList<>();
+
+                for (int k = 0; k < node.arity; k++) {
+                    TrieImpl subnode = node.nodes[k];
+
+                    if (subnode != null && subnode.hash == null && !node.hasHash(k))
+                        tasks.add(new HashTask(subnode, threshold));
+                }
+
+                invokeAll(tasks);
+            }
+
+            node.calculateHash();
+        }
+    }
+
     /**
      * makeEmpyHash creates the hash associated to empty nodes
      *
@@ -0,0 +1,152 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.spongycastle.util.Arrays;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * TrieIterator iterates the key values of a trie, in ascending key order, optionally in a key range
+ *
+ * The nodes are retrieved from the store while they are visited, and they are not kept in
+ * the trie, so the memory used depends on the trie depth, not on the trie size.
+ * In a secure trie, the keys are the hashes of the original keys
+ */
+public class TrieIterator implements Iterator<TrieIterator.Entry> {
+    private final int arity;
+    private final byte[] from;
+    private final byte[] to;
+
+    // nodes to visit, with the path to them
+    private final Deque<Frame> pending = new ArrayDeque<>();
+
+    private Entry next;
+
+    TrieIterator(TrieImpl trie, byte[] from, byte[] to) {
+        this.arity = trie.getArity();
+        this.from = from == null ? null : TrieImpl.bytesToKey(from, this.arity);
+        this.to = to == null ? null : TrieImpl.bytesToKey(to, this.arity);
+        this.pending.push(new Frame(trie, new byte[0]));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null)
+            this.next = this.computeNext();
+
+        return this.next != null;
+    }
+
+    @Override
+    public Entry next() {
+        if (!this.hasNext())
+            throw new NoSuchElementException();
+
+        Entry result = this.next;
+        this.next = null;
+
+        return result;
+    }
+
+    private Entry computeNext() {
+        while (!this.pending.isEmpty()) {
+            Frame frame = this.pending.pop();
+            TrieImpl node = frame.node;
+            byte[] path = Arrays.concatenate(frame.path, node.getSharedPath());
+
+            int fromComparison = this.from == null ? 1 : comparePrefix(path, this.from);
+
+            // all the keys in this node are lower than the range
+            if (fromComparison < 0)
+                continue;
+
+            // all the keys in this node, and in the pending nodes, are not lower than the range end
+            if (this.to != null && !isLowerThan(path, this.to)) {
+                this.pending.clear();
+                return null;
+            }
+
+            for (int k = this.arity - 1; k >= 0; k--) {
+                TrieImpl subnode = node.getSubnode(k);
+
+                if (subnode != null)
+                    this.pending.push(new Frame(subnode, Arrays.append(path, (byte) k)));
+            }
+
+            byte[] value = node.getValue();
+
+            if (value != null && (fromComparison > 0 || path.length >= this.from.length))
+                return new Entry(TrieImpl.keyToBytes(path, this.arity), Arrays.clone(value));
+        }
+
+        return null;
+    }
+
+    // a path is lower than a key if the keys starting with the path could be lower than the key
+    private static boolean isLowerThan(byte[] path, byte[] key) {
+        int comparison = comparePrefix(path, key);
+
+        return comparison < 0 || (comparison == 0 && path.length < key.length);
+    }
+
+    private static int comparePrefix(byte[] path, byte[] key) {
+        int length = Math.min(path.length, key.length);
+
+        for (int k = 0; k < length; k++)
+            if (path[k] != key[k])
+                return path[k] < key[k] ? -1 : 1;
+
+        return 0;
+    }
+
+    private static class Frame {
+        private final TrieImpl node;
+        private final byte[] path;
+
+        Frame(TrieImpl node, byte[] path) {
+            this.node = node;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Entry is a key value pair returned by the iterator
+     */
+    public static class Entry {
+        private final byte[] key;
+        private final byte[] value;
+
+        Entry(byte[] key, byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public byte[] getKey() {
+            return this.key;
+        }
+
+        public byte[] getValue() {
+            return this.value;
+        }
+    }
+}
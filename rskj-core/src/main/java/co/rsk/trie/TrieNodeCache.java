@@ -0,0 +1,124 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.db.ByteArrayWrapper;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TrieNodeCache keeps decoded Trie nodes by hash, in least recently used order
+ *
+ * The cache is bounded by the estimated size in bytes of its nodes,
+ * the least recently used nodes are evicted when the limit is exceeded
+ *
+ * Copies of the saved nodes, without their loaded subnodes and their store, are kept,
+ * so a cached node never retains the rest of its trie. Each get returns a new copy,
+ * bound to the store that retrieves it, that can be expanded by its owner without
+ * affecting the cache
+ */
+public class TrieNodeCache {
+    // estimated memory used by a node besides its serialized form
+    private static final int NODE_OVERHEAD = 128;
+
+    private final long maxSize;
+    private final Map<ByteArrayWrapper, CachedNode> nodes = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size = 0;
+
+    // internal variables, cache statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public TrieNodeCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public synchronized TrieImpl get(byte[] hash, TrieStore store) {
+        CachedNode cached = this.nodes.get(new ByteArrayWrapper(hash));
+
+        if (cached == null) {
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+
+        return cached.node.cloneSavedNode(cached.hash, store);
+    }
+
+    public synchronized void put(byte[] hash, TrieImpl node, int messageLength) {
+        long nodeSize = (long)messageLength + hash.length + NODE_OVERHEAD;
+
+        if (nodeSize > this.maxSize)
+            return;
+
+        byte[] key = Arrays.copyOf(hash, hash.length);
+
+        CachedNode previous = this.nodes.put(new ByteArrayWrapper(key), new CachedNode(key, node.cloneSavedNode(key, null), nodeSize));
+
+        if (previous != null)
+            this.size -= previous.size;
+
+        this.size += nodeSize;
+
+        Iterator<CachedNode> iterator = this.nodes.values().iterator();
+
+        while (this.size > this.maxSize && iterator.hasNext()) {
+            this.size -= iterator.next().size;
+            iterator.remove();
+            this.evictions++;
+        }
+    }
+
+    public synchronized void remove(byte[] hash) {
+        CachedNode removed = this.nodes.remove(new ByteArrayWrapper(hash));
+
+        if (removed != null)
+            this.size -= removed.size;
+    }
+
+    public synchronized int getNodeCount() { return this.nodes.size(); }
+
+    public synchronized long getSize() { return this.size; }
+
+    public long getMaxSize() { return this.maxSize; }
+
+    public synchronized long getHits() { return this.hits; }
+
+    public synchronized long getMisses() { return this.misses; }
+
+    public synchronized long getEvictions() { return this.evictions; }
+
+    private static class CachedNode {
+        private final byte[] hash;
+        private final TrieImpl node;
+        private final long size;
+
+        CachedNode(byte[] hash, TrieImpl node, long size) {
+            this.hash = hash;
+            this.node = node;
+            this.size = size;
+        }
+    }
+}
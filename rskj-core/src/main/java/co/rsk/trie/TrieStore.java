@@ -18,12 +18,16 @@
 
 package co.rsk.trie;
 
+import java.util.List;
+
 /**
  * Created by ajlopez on 29/03/2017.
  */
 public interface TrieStore {
     void save(Trie trie);
 
+    void saveAll(List<? extends Trie> tries);
+
     int getSaveCount();
 
     Trie retrieve(byte[] hash);
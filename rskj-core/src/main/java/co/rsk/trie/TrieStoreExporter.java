@@ -0,0 +1,182 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.crypto.SHA3Helper;
+import org.ethereum.datasource.KeyValueDataSource;
+import org.spongycastle.util.encoders.Hex;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.ethereum.crypto.HashUtil.EMPTY_TRIE_HASH;
+
+/**
+ * TrieStoreExporter writes the nodes of tries to a stream, and reads them back to a data source
+ *
+ * The nodes are written in chunks while the tries are walked from their roots, and they are
+ * read and saved chunk by chunk, so the memory used depends on the chunk size and the trie depth,
+ * not on the trie sizes. The node values can reference the roots of other tries in the same store,
+ * like the storage roots in the account states, and these tries are exported when they are found,
+ * before going on with the referencing trie. A trie referenced by several values is exported
+ * each time, its nodes are saved once on import.
+ *
+ * The stream has a version (short), and chunks with the number of nodes (int) and the
+ * node messages (int length and bytes). A chunk without nodes ends the stream
+ */
+public class TrieStoreExporter {
+    private static final short VERSION = 1;
+    private static final int CHUNK_SIZE = 1000;
+
+    private final TrieStoreImpl store;
+
+    public TrieStoreExporter(TrieStoreImpl store) {
+        this.store = store;
+    }
+
+    /**
+     * exportTries writes the nodes of the tries to the output stream
+     *
+     * @param roots             the hashes of the roots to export
+     * @param valueReference    returns the root referenced by a node value, or null
+     * @param output            the stream to write
+     *
+     * @return  the number of exported nodes
+     */
+    public long exportTries(List<byte[]> roots, Function<byte[], byte[]> valueReference, OutputStream output) throws IOException {
+        DataOutputStream dstream = new DataOutputStream(output);
+        List<byte[]> chunk = new ArrayList<>();
+
+        dstream.writeShort(VERSION);
+
+        long count = this.exportTries(roots, valueReference, chunk, dstream);
+
+        if (!chunk.isEmpty())
+            writeChunk(chunk, dstream);
+
+        // the end of the stream
+        writeChunk(chunk, dstream);
+        dstream.flush();
+
+        return count;
+    }
+
+    /**
+     * importTries reads the nodes written by exportTries, and saves them to the data source,
+     * in one batch write by chunk
+     *
+     * @param input the stream to read
+     * @param ds    the data source to save the nodes
+     *
+     * @return  the number of imported nodes
+     */
+    public static long importTries(InputStream input, KeyValueDataSource ds) throws IOException {
+        DataInputStream dstream = new DataInputStream(input);
+
+        short version = dstream.readShort();
+
+        if (version != VERSION)
+            throw new TrieSerializationException("Unknown trie export version " + version, null);
+
+        long count = 0;
+
+        for (int nnodes = dstream.readInt(); nnodes > 0; nnodes = dstream.readInt()) {
+            Map<byte[], byte[]> batch = new HashMap<>();
+
+            for (int k = 0; k < nnodes; k++) {
+                byte[] message = new byte[dstream.readInt()];
+                dstream.readFully(message);
+                batch.put(SHA3Helper.sha3(message), message);
+            }
+
+            ds.updateBatch(batch);
+            count += nnodes;
+        }
+
+        return count;
+    }
+
+    private long exportTries(List<byte[]> roots, Function<byte[], byte[]> valueReference, List<byte[]> chunk, DataOutputStream dstream) throws IOException {
+        Deque<byte[]> pending = new ArrayDeque<>();
+        // the nodes of the referenced trie being exported, walked before the pending nodes
+        Deque<byte[]> pendingReferenced = new ArrayDeque<>();
+        long count = 0;
+
+        for (byte[] root : roots)
+            if (root != null && !Arrays.equals(root, EMPTY_TRIE_HASH))
+                pending.push(root);
+
+        while (!pending.isEmpty() || !pendingReferenced.isEmpty()) {
+            boolean inReferenced = !pendingReferenced.isEmpty();
+            Deque<byte[]> current = inReferenced ? pendingReferenced : pending;
+            byte[] hash = current.pop();
+            byte[] message = this.store.retrieveMessage(hash);
+
+            if (message == null)
+                throw new TrieSerializationException("Trie node not found " + Hex.toHexString(hash), null);
+
+            chunk.add(message);
+            count++;
+
+            if (chunk.size() >= CHUNK_SIZE)
+                writeChunk(chunk, dstream);
+
+            TrieImpl node = TrieImpl.fromMessage(message, this.store);
+
+            for (int k = 0; k < node.getArity(); k++) {
+                byte[] subnodeHash = node.getHash(k);
+
+                if (subnodeHash != null)
+                    current.push(subnodeHash);
+            }
+
+            if (inReferenced || valueReference == null || node.getValue() == null)
+                continue;
+
+            byte[] reference = valueReference.apply(node.getValue());
+
+            if (reference != null && !Arrays.equals(reference, EMPTY_TRIE_HASH))
+                pendingReferenced.push(reference);
+        }
+
+        return count;
+    }
+
+    private static void writeChunk(List<byte[]> chunk, DataOutputStream dstream) throws IOException {
+        dstream.writeInt(chunk.size());
+
+        for (byte[] message : chunk) {
+            dstream.writeInt(message.length);
+            dstream.write(message);
+        }
+
+        chunk.clear();
+    }
+}
@@ -21,6 +21,7 @@ package co.rsk.trie;
 import co.rsk.panic.PanicProcessor;
 import org.ethereum.datasource.HashMapDB;
 import org.ethereum.datasource.KeyValueDataSource;
+import org.ethereum.db.ByteArrayWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,7 +31,15 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
 
 /**
  * TrieStoreImpl store and retrieve Trie node by hash
@@ -50,12 +59,28 @@ public class TrieStoreImpl implements TrieStore {
     // a key value data source to use
     private KeyValueDataSource store;
 
+    // an optional cache of decoded nodes, shared by all the tries using this store
+    private TrieNodeCache cache;
+
     // internal variables, count of saves and retrieves
     private int saveCount = 0;
     private int retrieveCount = 0;
 
+    // internal variables, batched writes statistics
+    private long batchCount = 0;
+    private long batchBytes = 0;
+    private long batchTime = 0;
+
+    // keys saved while a pruning is in progress, null if there is no pruning in progress
+    private Set<ByteArrayWrapper> savedWhilePruning;
+
     public TrieStoreImpl(KeyValueDataSource store) {
+        this(store, null);
+    }
+
+    public TrieStoreImpl(KeyValueDataSource store, TrieNodeCache cache) {
         this.store = store;
+        this.cache = cache;
     }
 
     /**
@@ -63,14 +88,68 @@ public class TrieStoreImpl implements TrieStore {
      * @param trie
      */
     @Override
-    public void save(Trie trie) {
+    public synchronized void save(Trie trie) {
         this.saveCount++;
-        this.store.put(trie.getHash(), trie.toMessage());
+
+        byte[] hash = trie.getHash();
+
+        this.store.put(hash, trie.toMessage());
+
+        if (this.savedWhilePruning != null)
+            this.savedWhilePruning.add(new ByteArrayWrapper(hash));
+    }
+
+    /**
+     * saveAll saves a list of Trie nodes to the store, in only one batch write
+     *
+     * The nodes are expected to be the dirty nodes collected by a Trie save,
+     * children before parents
+     *
+     * @param tries the nodes to save
+     */
+    @Override
+    public synchronized void saveAll(List<? extends Trie> tries) {
+        if (tries.isEmpty())
+            return;
+
+        Map<byte[], byte[]> batch = new HashMap<>();
+        long size = 0;
+
+        for (Trie trie : tries) {
+            byte[] hash = trie.getHash();
+            byte[] message = trie.toMessage();
+            batch.put(hash, message);
+            size += message.length;
+
+            if (this.savedWhilePruning != null)
+                this.savedWhilePruning.add(new ByteArrayWrapper(hash));
+
+            if (this.cache != null && trie instanceof TrieImpl)
+                this.cache.put(hash, (TrieImpl)trie, message.length);
+        }
+
+        long start = System.nanoTime();
+        this.store.updateBatch(batch);
+        long finish = System.nanoTime();
+
+        this.saveCount += tries.size();
+        this.batchCount++;
+        this.batchBytes += size;
+        this.batchTime += finish - start;
+
+        if (logger.isTraceEnabled())
+            logger.trace(format("Trie store batch saved in: %02.2f ms, %d nodes, %d bytes", (float) (finish - start) / 1_000_000, tries.size(), size));
     }
 
     @Override
     public int getSaveCount() { return this.saveCount; }
 
+    public long getBatchCount() { return this.batchCount; }
+
+    public long getBatchBytes() { return this.batchBytes; }
+
+    public long getBatchTime() { return this.batchTime; }
+
     /**
      * retrieve retrieves a Trie instance from store, using hash a key
      *
@@ -82,14 +161,83 @@ public class TrieStoreImpl implements TrieStore {
     public Trie retrieve(byte[] hash) {
         this.retrieveCount++;
 
+        if (this.cache != null) {
+            Trie cached = this.cache.get(hash, this);
+
+            if (cached != null)
+                return cached;
+        }
+
         byte[] message = this.store.get(hash);
 
-        return TrieImpl.fromMessage(message, this);
+        TrieImpl trie = TrieImpl.fromMessage(message, this);
+
+        if (trie != null && this.cache != null)
+            this.cache.put(hash, trie, message.length);
+
+        return trie;
     }
 
     @Override
     public int getRetrieveCount() { return this.retrieveCount; }
 
+    /**
+     * retrieveMessage retrieves the serialized node from the key value data source,
+     * without using the cache
+     *
+     * @param hash  the hash to retrieve
+     *
+     * @return  the node message, null if key does not exist
+     */
+    public byte[] retrieveMessage(byte[] hash) {
+        return this.store.get(hash);
+    }
+
+    void forEachKey(Consumer<byte[]> consumer) {
+        this.store.forEachKey(consumer);
+    }
+
+    /**
+     * startPruning starts to keep the keys of the saved nodes, so they are not deleted
+     * by the current pruning, even if they were not reachable from its roots
+     */
+    synchronized void startPruning() {
+        this.savedWhilePruning = new HashSet<>();
+    }
+
+    synchronized void stopPruning() {
+        this.savedWhilePruning = null;
+    }
+
+    /**
+     * deleteUnsaved deletes the keys in only one batch write, skipping the keys
+     * saved since the pruning started. The deleted nodes are removed from the cache too
+     *
+     * @param keys  the keys to delete
+     *
+     * @return  the number of deleted keys
+     */
+    synchronized int deleteUnsaved(Collection<ByteArrayWrapper> keys) {
+        Map<byte[], byte[]> batch = new HashMap<>();
+
+        for (ByteArrayWrapper key : keys) {
+            if (this.savedWhilePruning != null && this.savedWhilePruning.contains(key))
+                continue;
+
+            batch.put(key.getData(), null);
+
+            if (this.cache != null)
+                this.cache.remove(key.getData());
+        }
+
+        if (!batch.isEmpty())
+            this.store.updateBatch(batch);
+
+        return batch.size();
+    }
+
+    public TrieNodeCache getCache() { return this.cache; }
+
     @Override
     public byte[] serialize() {
         List<byte[]> keys = new ArrayList<>();
@@ -132,11 +280,24 @@ public class TrieStoreImpl implements TrieStore {
         return buffer.array();
     }
 
-    public void copyFrom(TrieStoreImpl originalTrieStore) {
+    /**
+     * copyFrom copies all the nodes of another store, in only one batch write
+     *
+     * @param originalTrieStore the store to copy the nodes from
+     */
+    public synchronized void copyFrom(TrieStoreImpl originalTrieStore) {
         KeyValueDataSource ds = originalTrieStore.store;
+        Map<byte[], byte[]> batch = new HashMap<>();
+
+        for (byte[] key : ds.keys()) {
+            batch.put(key, ds.get(key));
+
+            if (this.savedWhilePruning != null)
+                this.savedWhilePruning.add(new ByteArrayWrapper(key));
+        }
 
-        for (byte[] key : ds.keys())
-            this.store.put(key, ds.get(key));
+        if (!batch.isEmpty())
+            this.store.updateBatch(batch);
     }
 
     public static TrieStoreImpl deserialize(byte[] bytes) {
@@ -0,0 +1,191 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.db.ByteArrayWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * TrieStorePruner deletes the nodes of a trie store that are not reachable from a list of roots
+ *
+ * It is a mark and sweep: the nodes reachable from the roots are marked, walking the
+ * serialized nodes in the store, and the other keys are deleted in batches.
+ * The values of the nodes can reference the roots of other tries in the same store,
+ * like the storage roots in the account states, and these tries are marked too.
+ *
+ * startPruning should be called before the roots are selected: the nodes saved after it
+ * are never deleted by the pruning, so the new states can be saved while the pruning is running
+ *
+ * The marked hashes are kept in memory, in a compact set (45 to 90 bytes by reachable node),
+ * and the keys of the store are visited without loading all of them in memory
+ */
+public class TrieStorePruner {
+    private static final Logger logger = LoggerFactory.getLogger("prune");
+
+    private static final int DELETE_BATCH_SIZE = 10000;
+
+    private final TrieStoreImpl store;
+
+    private TrieHashSet marked;
+    private List<ByteArrayWrapper> toDelete;
+    private int deleted;
+    private long start;
+
+    public TrieStorePruner(TrieStoreImpl store) {
+        this.store = store;
+    }
+
+    public synchronized void startPruning() {
+        this.store.startPruning();
+        this.marked = new TrieHashSet();
+        this.start = System.nanoTime();
+    }
+
+    public synchronized void stopPruning() {
+        this.store.stopPruning();
+        this.marked = null;
+    }
+
+    /**
+     * prune deletes the nodes not reachable from the roots, and stops the pruning
+     *
+     * @param roots the hashes of the roots to keep
+     *
+     * @return  the number of deleted nodes
+     */
+    public synchronized int prune(List<byte[]> roots) {
+        this.mark(roots);
+        return this.sweep();
+    }
+
+    /**
+     * mark marks the nodes reachable from the roots
+     *
+     * @param roots the hashes of the roots to keep
+     */
+    public synchronized void mark(List<byte[]> roots) {
+        this.mark(roots, null);
+    }
+
+    /**
+     * mark marks the nodes reachable from the roots, and the tries referenced by their values
+     *
+     * @param roots             the hashes of the roots to keep
+     * @param valueReference    returns the root referenced by a node value, or null
+     */
+    public synchronized void mark(List<byte[]> roots, Function<byte[], byte[]> valueReference) {
+        List<byte[]> referenced = this.markTries(roots, valueReference);
+
+        if (!referenced.isEmpty())
+            this.markTries(referenced, null);
+    }
+
+    /**
+     * sweep deletes the nodes not marked, and stops the pruning
+     *
+     * @return  the number of deleted nodes
+     */
+    public synchronized int sweep() {
+        try {
+            long marking = System.nanoTime();
+
+            int deleted = this.sweepUnmarked();
+
+            long finish = System.nanoTime();
+
+            logger.info(format("Trie store pruned in: %02.2f ms, marking %02.2f ms, %d nodes kept, %d nodes deleted",
+                    (float) (finish - this.start) / 1_000_000, (float) (marking - this.start) / 1_000_000, this.marked.size(), deleted));
+
+            return deleted;
+        }
+        finally {
+            this.stopPruning();
+        }
+    }
+
+    private List<byte[]> markTries(List<byte[]> roots, Function<byte[], byte[]> valueReference) {
+        List<byte[]> referenced = new ArrayList<>();
+        Deque<byte[]> pending = new ArrayDeque<>();
+
+        for (byte[] root : roots)
+            if (root != null && this.marked.add(root))
+                pending.push(root);
+
+        while (!pending.isEmpty()) {
+            byte[] message = this.store.retrieveMessage(pending.pop());
+
+            if (message == null)
+                continue;
+
+            TrieImpl node = TrieImpl.fromMessage(message, this.store);
+
+            for (int k = 0; k < node.getArity(); k++) {
+                byte[] hash = node.getHash(k);
+
+                if (hash != null && this.marked.add(hash))
+                    pending.push(hash);
+            }
+
+            if (valueReference == null || node.getValue() == null)
+                continue;
+
+            byte[] reference = valueReference.apply(node.getValue());
+
+            if (reference != null)
+                referenced.add(reference);
+        }
+
+        return referenced;
+    }
+
+    private int sweepUnmarked() {
+        this.toDelete = new ArrayList<>();
+        this.deleted = 0;
+
+        this.store.forEachKey(this::sweepKey);
+
+        if (!this.toDelete.isEmpty())
+            this.deleted += this.store.deleteUnsaved(this.toDelete);
+
+        this.toDelete = null;
+
+        return this.deleted;
+    }
+
+    private void sweepKey(byte[] key) {
+        if (this.marked.contains(key))
+            return;
+
+        this.toDelete.add(new ByteArrayWrapper(key));
+
+        if (this.toDelete.size() >= DELETE_BATCH_SIZE) {
+            this.deleted += this.store.deleteUnsaved(this.toDelete);
+            this.toDelete.clear();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.vm;
+
+/**
+ * CodeAnalysis keeps the result of the analysis of a contract code:
+ * the header versions, the start address and the valid jump destinations
+ *
+ * It is immutable once created, so it can be shared by the programs
+ * running the same code. The static blocks are decoded on demand
+ */
+public class CodeAnalysis {
+    private final int codeLength;
+    private final byte exeVersion;
+    private final byte scriptVersion;
+    private final int startAddr;
+    private final BitSet jumpdest;
+    private volatile StaticBlocks staticBlocks;
+
+    public CodeAnalysis(int codeLength, byte exeVersion, byte scriptVersion, int startAddr, BitSet jumpdest) {
+        this.codeLength = codeLength;
+        this.exeVersion = exeVersion;
+        this.scriptVersion = scriptVersion;
+        this.startAddr = startAddr;
+        this.jumpdest = jumpdest;
+    }
+
+    public int getCodeLength() {
+        return this.codeLength;
+    }
+
+    public byte getExeVersion() {
+        return this.exeVersion;
+    }
+
+    public byte getScriptVersion() {
+        return this.scriptVersion;
+    }
+
+    public int getStartAddr() {
+        return this.startAddr;
+    }
+
+    public BitSet getJumpdest() {
+        return this.jumpdest;
+    }
+
+    /**
+     * getStaticBlocks returns the static blocks of the code, decoding them the first time
+     *
+     * @param ops   the analyzed code
+     *
+     * @return the static blocks
+     */
+    public StaticBlocks getStaticBlocks(byte[] ops) {
+        StaticBlocks blocks = this.staticBlocks;
+
+        // concurrent callers could decode the same blocks, the last one is kept
+        if (blocks == null) {
+            blocks = StaticBlocks.decode(ops, this.startAddr);
+            this.staticBlocks = blocks;
+        }
+
+        return blocks;
+    }
+}
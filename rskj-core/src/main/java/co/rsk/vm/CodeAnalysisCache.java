@@ -0,0 +1,83 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.vm;
+
+import org.ethereum.db.ByteArrayWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CodeAnalysisCache keeps the analysis of contract codes by code hash, in least recently used order
+ *
+ * The code hash should be the sha3 of the code, as in the account state,
+ * so the programs calling the same contract skip the analysis of its code
+ */
+public class CodeAnalysisCache {
+    private final Map<ByteArrayWrapper, CodeAnalysis> analyses;
+
+    private long hits;
+    private long misses;
+
+    public CodeAnalysisCache(int maxEntries) {
+        this.analyses = new LinkedHashMap<ByteArrayWrapper, CodeAnalysis>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, CodeAnalysis> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * get returns the analysis of the code with the given hash
+     *
+     * @param codeHash      the hash of the code
+     * @param codeLength    the length of the code, checked against the analysis
+     *
+     * @return the code analysis, or null if it is not in the cache
+     */
+    public synchronized CodeAnalysis get(byte[] codeHash, int codeLength) {
+        CodeAnalysis analysis = this.analyses.get(new ByteArrayWrapper(codeHash));
+
+        if (analysis == null || analysis.getCodeLength() != codeLength) {
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+
+        return analysis;
+    }
+
+    public synchronized void put(byte[] codeHash, CodeAnalysis analysis) {
+        this.analyses.put(new ByteArrayWrapper(codeHash), analysis);
+    }
+
+    public synchronized int size() {
+        return this.analyses.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+}
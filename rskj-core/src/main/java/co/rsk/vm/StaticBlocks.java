@@ -0,0 +1,210 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.vm;
+
+import org.ethereum.vm.OpCode;
+
+/**
+ * StaticBlocks keeps the runs of instructions of a code that only have a static gas cost,
+ * and no other effect than on the stack and the program counter
+ *
+ * A run starts at the start address, at a jump destination, or after an instruction
+ * with dynamic gas cost or other effects, and it ends before the next of these instructions.
+ * For each run, it keeps the number of instructions, the total gas cost, the stack size needed
+ * to execute all the instructions, and the maximum stack growth. So the VM can check
+ * the gas and the stack once, and execute the run without checks
+ */
+public class StaticBlocks {
+    private static final boolean[] STATIC_OPCODES = new boolean[256];
+
+    static {
+        for (OpCode op : OpCode.values())
+            STATIC_OPCODES[op.val() & 0xff] = isStatic(op);
+    }
+
+    private final int[] runs;
+    private final int[] lengths;
+    private final long[] gas;
+    private final int[] stackNeeded;
+    private final int[] stackGrowth;
+
+    private StaticBlocks(int[] runs, int[] lengths, long[] gas, int[] stackNeeded, int[] stackGrowth) {
+        this.runs = runs;
+        this.lengths = lengths;
+        this.gas = gas;
+        this.stackNeeded = stackNeeded;
+        this.stackGrowth = stackGrowth;
+    }
+
+    /**
+     * getRun returns the run starting at the program counter
+     *
+     * @param pc    the program counter
+     *
+     * @return  the run index, or -1 if no run starts at pc
+     */
+    public int getRun(int pc) {
+        if (pc < 0 || pc >= this.runs.length)
+            return -1;
+
+        return this.runs[pc] - 1;
+    }
+
+    public int getLength(int run) {
+        return this.lengths[run];
+    }
+
+    public long getGas(int run) {
+        return this.gas[run];
+    }
+
+    public int getStackNeeded(int run) {
+        return this.stackNeeded[run];
+    }
+
+    public int getStackGrowth(int run) {
+        return this.stackGrowth[run];
+    }
+
+    public int getNumberOfRuns() {
+        return this.lengths.length;
+    }
+
+    /**
+     * decode finds the runs of static instructions in the code
+     *
+     * @param ops       the code
+     * @param startAddr the address of the first instruction, after the header
+     *
+     * @return the static blocks of the code
+     */
+    public static StaticBlocks decode(byte[] ops, int startAddr) {
+        int[] instructions = new int[ops.length];
+        int ninstructions = 0;
+
+        for (int pc = startAddr; pc < ops.length; pc = nextPc(ops, pc))
+            instructions[ninstructions++] = pc;
+
+        // values of the run from each instruction to the end of its run
+        int[] suffixLength = new int[ninstructions + 1];
+        long[] suffixGas = new long[ninstructions + 1];
+        int[] suffixNeeded = new int[ninstructions + 1];
+        int[] suffixGrowth = new int[ninstructions + 1];
+        int nruns = 0;
+
+        for (int k = ninstructions - 1; k >= 0; k--) {
+            OpCode op = OpCode.code(ops[instructions[k]]);
+
+            if (op == null || !STATIC_OPCODES[op.val() & 0xff])
+                continue;
+
+            int delta = op.ret() - op.require();
+            boolean last = suffixLength[k + 1] == 0;
+
+            suffixLength[k] = suffixLength[k + 1] + 1;
+            suffixGas[k] = suffixGas[k + 1] + op.getTier().asInt();
+            suffixNeeded[k] = Math.max(op.require(), suffixNeeded[k + 1] - delta);
+            suffixGrowth[k] = last ? delta : Math.max(delta, delta + suffixGrowth[k + 1]);
+
+            if (isEntry(ops, instructions, k, startAddr) && suffixLength[k] > 1)
+                nruns++;
+        }
+
+        int[] runs = new int[ops.length];
+        int[] lengths = new int[nruns];
+        long[] gas = new long[nruns];
+        int[] stackNeeded = new int[nruns];
+        int[] stackGrowth = new int[nruns];
+        int nrun = 0;
+
+        for (int k = 0; k < ninstructions; k++) {
+            if (suffixLength[k] <= 1 || !isEntry(ops, instructions, k, startAddr))
+                continue;
+
+            runs[instructions[k]] = nrun + 1;
+            lengths[nrun] = suffixLength[k];
+            gas[nrun] = suffixGas[k];
+            stackNeeded[nrun] = suffixNeeded[k];
+            stackGrowth[nrun] = suffixGrowth[k];
+            nrun++;
+        }
+
+        return new StaticBlocks(runs, lengths, gas, stackNeeded, stackGrowth);
+    }
+
+    private static boolean isEntry(byte[] ops, int[] instructions, int k, int startAddr) {
+        int pc = instructions[k];
+
+        if (pc == startAddr || ops[pc] == OpCode.JUMPDEST.val())
+            return true;
+
+        OpCode previous = OpCode.code(ops[instructions[k - 1]]);
+
+        return previous == null || !STATIC_OPCODES[previous.val() & 0xff];
+    }
+
+    private static int nextPc(byte[] ops, int pc) {
+        int op = ops[pc] & 0xff;
+
+        if (op >= (OpCode.PUSH1.val() & 0xff) && op <= (OpCode.PUSH32.val() & 0xff))
+            return pc + op - (OpCode.PUSH1.val() & 0xff) + 2;
+
+        return pc + 1;
+    }
+
+    private static boolean isStatic(OpCode op) {
+        if (op.scriptVersion() != 0)
+            return false;
+
+        int code = op.val() & 0xff;
+
+        if (code >= (OpCode.PUSH1.val() & 0xff) && code <= (OpCode.SWAP16.val() & 0xff))
+            return true;
+
+        switch (op) {
+            case ADD:
+            case MUL:
+            case SUB:
+            case DIV:
+            case SDIV:
+            case MOD:
+            case SMOD:
+            case ADDMOD:
+            case MULMOD:
+            case SIGNEXTEND:
+            case LT:
+            case GT:
+            case SLT:
+            case SGT:
+            case EQ:
+            case ISZERO:
+            case AND:
+            case OR:
+            case XOR:
+            case NOT:
+            case BYTE:
+            case POP:
+            case PC:
+            case JUMPDEST:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -21,6 +21,8 @@ package org.ethereum.config;
 
 import co.rsk.config.RskSystemProperties;
 import co.rsk.db.RepositoryImpl;
+import co.rsk.trie.TrieImpl;
+import co.rsk.trie.TrieNodeCache;
 import co.rsk.trie.TrieStoreImpl;
 import org.ethereum.core.PendingTransaction;
 import org.ethereum.core.Repository;
@@ -54,10 +56,21 @@ public class CommonConfig {
 
     @Bean
     public Repository repository() {
-        KeyValueDataSource ds = makeDataSource("state");
         KeyValueDataSource detailsDS = makeDataSource("details");
 
-        return new RepositoryImpl(new TrieStoreImpl(ds), detailsDS);
+        TrieImpl.setParallelHashThreshold(RskSystemProperties.RSKCONFIG.trieParallelHashThreshold());
+
+        return new RepositoryImpl(trieStore(), detailsDS);
+    }
+
+    @Bean
+    public TrieStoreImpl trieStore() {
+        KeyValueDataSource ds = makeDataSource("state");
+
+        long cacheSize = RskSystemProperties.RSKCONFIG.trieCacheSize();
+        TrieNodeCache cache = cacheSize > 0 ? new TrieNodeCache(cacheSize) : null;
+
+        return new TrieStoreImpl(ds, cache);
     }
 
     private KeyValueDataSource makeDataSource(String name) {
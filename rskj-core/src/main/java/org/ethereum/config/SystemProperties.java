@@ -475,6 +475,22 @@ public class SystemProperties {
         return config.getBoolean("vm.structured.compressed");
     }
 
+    public boolean vmTracePerBlock() {
+        return config.hasPath("vm.structured.perBlock") && config.getBoolean("vm.structured.perBlock");
+    }
+
+    public int vmTraceQueueSize() {
+        return config.hasPath("vm.structured.queueSize") ? config.getInt("vm.structured.queueSize") : 1000;
+    }
+
+    public List<String> vmTraceAddresses() {
+        return config.hasPath("vm.structured.addresses") ? config.getStringList("vm.structured.addresses") : new ArrayList<>();
+    }
+
+    public boolean vmStaticBlocks() {
+        return config.hasPath("vm.staticBlocks") && config.getBoolean("vm.staticBlocks");
+    }
+
     @ValidateMe
     public int vmTraceInitStorageLimit() {
         return config.getInt("vm.structured.initStorageLimit");
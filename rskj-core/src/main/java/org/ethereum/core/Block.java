@@ -602,6 +602,18 @@ public class Block {
         rlpEncoded = null;
     }
 
+    /**
+     * parseHeader decodes only the header of an encoded block,
+     * without decoding its transactions and uncles
+     *
+     * @param rawData   the encoded block
+     *
+     * @return  the block header
+     */
+    public static BlockHeader parseHeader(byte[] rawData) {
+        return new BlockHeader((RLPList) RLP.decode2OneItem(rawData, RLP.getFirstListElement(rawData, 0)));
+    }
+
     public static Trie getTxTrie(List<Transaction> transactions){
         Trie txsState = new TrieImpl();
         int itran = 0;
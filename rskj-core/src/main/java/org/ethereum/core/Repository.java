@@ -223,6 +223,14 @@ public interface Repository {
 
     byte[] getRoot();
 
+    /**
+     * Calculate the state root hash, without saving the state to the store.
+     * The state is saved by the next getRoot or flush
+     *
+     * @return the state root hash
+     */
+    byte[] calculateRoot();
+
     void loadAccount(byte[] addr, Map<ByteArrayWrapper, AccountState> cacheAccounts,
                      Map<ByteArrayWrapper, ContractDetails> cacheDetails);
 
@@ -28,6 +28,7 @@ import org.ethereum.crypto.ECKey;
 import org.ethereum.crypto.ECKey.ECDSASignature;
 import org.ethereum.crypto.ECKey.MissingPrivateKeyException;
 import org.ethereum.crypto.HashUtil;
+import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.rpc.Web3;
 import org.ethereum.rpc.converters.CallArgumentsToByteArray;
 import org.ethereum.util.ByteUtil;
@@ -343,6 +344,10 @@ public class Transaction implements SerializableObject {
      * Crypto
      */
 
+    public synchronized boolean hasSender() {
+        return sendAddress != null;
+    }
+
     public ECKey getKey() {
         byte[] rawHash = getRawHash();
         //We clear the 4th bit, the compress bit, in case a signature is using compress in true
@@ -352,8 +357,14 @@ public class Transaction implements SerializableObject {
     public synchronized byte[] getSender() {
         try {
             if (sendAddress == null) {
-                ECKey key = ECKey.signatureToKey(getRawHash(), getSignature().toBase64());
-                sendAddress = key.getAddress();
+                ByteArrayWrapper hash = new ByteArrayWrapper(getHash());
+                sendAddress = TransactionSenders.getSender(hash);
+
+                if (sendAddress == null) {
+                    ECKey key = ECKey.signatureToKey(getRawHash(), getSignature().toBase64());
+                    sendAddress = key.getAddress();
+                    TransactionSenders.addSender(hash, sendAddress);
+                }
             }
             return sendAddress;
         } catch (SignatureException e) {
@@ -31,6 +31,8 @@ import org.ethereum.vm.program.Program;
 import org.ethereum.vm.program.ProgramResult;
 import org.ethereum.vm.program.invoke.ProgramInvoke;
 import org.ethereum.vm.program.invoke.ProgramInvokeFactory;
+import org.ethereum.vm.trace.ProgramTrace;
+import org.ethereum.vm.trace.ProgramTraceWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
@@ -46,8 +48,6 @@ import static org.ethereum.config.SystemProperties.CONFIG;
 import static org.ethereum.util.BIUtil.*;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.ethereum.util.ByteUtil.toHexString;
-import static org.ethereum.vm.VMUtils.saveProgramTraceFile;
-import static org.ethereum.vm.VMUtils.zipAndEncode;
 
 /**
  * @author Roman Mandeleil
@@ -270,7 +270,8 @@ public class TransactionExecutor {
                         programInvokeFactory.createProgramInvoke(tx, executionBlock, cacheTrack, blockStore);
 
                 this.vm = new VM();
-                this.program = new Program(code, programInvoke, tx);
+                byte[] codeHash = track.getAccountState(targetAddress).getCodeHash();
+                this.program = new Program(code, codeHash, programInvoke, tx);
             }
         }
 
@@ -409,13 +410,8 @@ public class TransactionExecutor {
         // Transfer fees to miner
         BigInteger summaryFee = summary.getFee();
 
-        //TODO: REMOVE THIS WHEN THE LocalBLockTests starts working with REMASC
-        if(RskSystemProperties.RSKCONFIG.isRemascEnabled()) {
-            logger.info("Adding fee to remasc contract account");
-            track.addBalance(Hex.decode(PrecompiledContracts.REMASC_ADDR), summaryFee);
-        } else {
-            track.addBalance(coinbase, summaryFee);
-        }
+        logger.info("Adding fee to account: [{}]", Hex.toHexString(getFeesRecipient()));
+        track.addBalance(getFeesRecipient(), summaryFee);
 
         this.paidFees = summaryFee.longValue();
 
@@ -438,21 +434,16 @@ public class TransactionExecutor {
         logger.info("tx listener done");
 
         if (CONFIG.vmTrace() && program != null && result != null) {
-            String trace = program.getTrace()
-                    .result(result.getHReturn())
-                    .error(result.getException())
-                    .toString();
+            ProgramTraceWriter traceWriter = ProgramTraceWriter.getInstance();
+            byte[] address = tx.isContractCreation() ? tx.getContractAddress() : tx.getReceiveAddress();
 
+            if (traceWriter.isTraced(address)) {
+                ProgramTrace trace = program.getTrace()
+                        .result(result.getHReturn())
+                        .error(result.getException());
 
-            if (CONFIG.vmTraceCompressed()) {
-                trace = zipAndEncode(trace);
+                traceWriter.submit(executionBlock.getNumber(), toHexString(executionBlock.getHash()), toHexString(tx.getHash()), trace, listener);
             }
-
-            String txHash = toHexString(tx.getHash());
-            saveProgramTraceFile(txHash, trace);
-
-            if (listener != null)
-                listener.onVMTraceCreated(txHash, trace);
         }
 
         logger.info("tx finalization done");
@@ -481,4 +472,16 @@ public class TransactionExecutor {
     }
 
     public long getPaidFees() { return paidFees; }
+
+    /**
+     * getFeesRecipient returns the account that receives the transaction fees,
+     * the remasc contract, or the block coinbase when remasc is disabled
+     */
+    public byte[] getFeesRecipient() {
+        //TODO: REMOVE THIS WHEN THE LocalBLockTests starts working with REMASC
+        if (RskSystemProperties.RSKCONFIG.isRemascEnabled())
+            return Hex.decode(PrecompiledContracts.REMASC_ADDR);
+
+        return coinbase;
+    }
 }
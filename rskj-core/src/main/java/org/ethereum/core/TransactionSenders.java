@@ -0,0 +1,109 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ethereum.core;
+
+import org.ethereum.db.ByteArrayWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TransactionSenders keeps the recently recovered transaction senders, by transaction hash,
+ * so a transaction received in a TransactionsMessage is not recovered again when it arrives in a block,
+ * and recovers the senders of a list of transactions in parallel, before they are processed.
+ *
+ * The hash includes the signature, so a cached sender is the sender of any transaction with that hash
+ */
+public final class TransactionSenders {
+    private static final Logger logger = LoggerFactory.getLogger("transaction");
+
+    private static final int MAX_SENDERS = 20000;
+
+    // Senders are evicted in Least-recently-accessed order.
+    private static final Map<ByteArrayWrapper, byte[]> senders = new LinkedHashMap<ByteArrayWrapper, byte[]>(MAX_SENDERS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, byte[]> eldest) {
+            return size() > MAX_SENDERS;
+        }
+    };
+
+    private static ExecutorService executorService;
+
+    private TransactionSenders() {
+    }
+
+    public static byte[] getSender(ByteArrayWrapper hash) {
+        synchronized (senders) {
+            return senders.get(hash);
+        }
+    }
+
+    public static void addSender(ByteArrayWrapper hash, byte[] sender) {
+        synchronized (senders) {
+            senders.put(hash, sender);
+        }
+    }
+
+    /**
+     * recoverSenders recovers the senders of the transactions using all the processors,
+     * the senders are kept in each transaction and in the cache
+     *
+     * @param transactions  the transactions to process
+     */
+    public static void recoverSenders(List<Transaction> transactions) {
+        List<Callable<byte[]>> tasks = new ArrayList<>();
+
+        for (Transaction transaction : transactions)
+            if (!transaction.hasSender())
+                tasks.add(transaction::getSender);
+
+        if (tasks.size() < 2) {
+            for (Transaction transaction : transactions)
+                transaction.getSender();
+
+            return;
+        }
+
+        try {
+            getExecutorService().invokeAll(tasks);
+        } catch (InterruptedException e) {
+            logger.warn("Sender recovery interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static synchronized ExecutorService getExecutorService() {
+        if (executorService == null)
+            executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "TransactionSenders");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        return executorService;
+    }
+}
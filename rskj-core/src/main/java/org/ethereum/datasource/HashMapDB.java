@@ -89,7 +89,13 @@ public class HashMapDB implements KeyValueDataSource {
     @Override
     public synchronized void updateBatch(Map<byte[], byte[]> rows) {
         for (byte[] key :  rows.keySet()){
-            storage.put(wrap(key), rows.get(key));
+            byte[] value = rows.get(key);
+
+            if (value == null) {
+                storage.remove(wrap(key));
+            } else {
+                storage.put(wrap(key), value);
+            }
         }
     }
 
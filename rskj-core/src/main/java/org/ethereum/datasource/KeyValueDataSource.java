@@ -21,6 +21,7 @@ package org.ethereum.datasource;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * @author Roman Mandeleil
@@ -36,5 +37,11 @@ public interface KeyValueDataSource extends DataSource {
 
     Set<byte[]> keys();
 
+    // visits the keys, without loading all of them in memory if the data source supports it
+    default void forEachKey(Consumer<byte[]> consumer) {
+        keys().forEach(consumer);
+    }
+
+    // rows with a null value are deleted
     void updateBatch(Map<byte[], byte[]> rows);
 }
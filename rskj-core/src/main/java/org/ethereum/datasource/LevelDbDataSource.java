@@ -39,6 +39,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 import static java.lang.System.getProperty;
 import static org.fusesource.leveldbjni.JniDBFactory.factory;
@@ -226,10 +227,34 @@ public class LevelDbDataSource implements KeyValueDataSource {
         }
     }
 
+    @Override
+    public void forEachKey(Consumer<byte[]> consumer) {
+        resetDbLock.readLock().lock();
+        try {
+            if (logger.isTraceEnabled()) logger.trace("~> LevelDbDataSource.forEachKey(): " + name);
+            try (DBIterator iterator = db.iterator()) {
+                for (iterator.seekToFirst(); iterator.hasNext(); iterator.next()) {
+                    consumer.accept(iterator.peekNext().getKey());
+                }
+                if (logger.isTraceEnabled()) logger.trace("<~ LevelDbDataSource.forEachKey(): " + name);
+            } catch (IOException e) {
+                logger.error("Unexpected", e);
+                panicProcessor.panic("leveldb", String.format("Unexpected %s", e.getMessage()));
+                throw new RuntimeException(e);
+            }
+        } finally {
+            resetDbLock.readLock().unlock();
+        }
+    }
+
     private void updateBatchInternal(Map<byte[], byte[]> rows) throws IOException {
         try (WriteBatch batch = db.createWriteBatch()) {
             for (Map.Entry<byte[], byte[]> entry : rows.entrySet()) {
-                batch.put(entry.getKey(), entry.getValue());
+                if (entry.getValue() == null) {
+                    batch.delete(entry.getKey());
+                } else {
+                    batch.put(entry.getKey(), entry.getValue());
+                }
             }
             db.write(batch);
         }
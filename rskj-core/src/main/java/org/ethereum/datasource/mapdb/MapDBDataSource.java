@@ -116,6 +116,12 @@ public class MapDBDataSource implements KeyValueDataSource {
         try {
             for (byte[] key : rows.keySet()) {
                 byte[] value = rows.get(key);
+
+                if (value == null) {
+                    map.remove(key);
+                    continue;
+                }
+
                 savedSize += value.length;
 
                 map.put(key, value);
@@ -20,6 +20,10 @@
 package org.ethereum.db;
 
 import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Anton Nashatyrev on 29.10.2015.
@@ -38,6 +42,34 @@ public abstract class AbstractBlockstore implements BlockStore {
         return branchBlock.getHash();
     }
 
+    @Override
+    public BlockHeader getBlockHeaderByHash(byte[] hash) {
+        Block block = getBlockByHash(hash);
+
+        return block == null ? null : block.getHeader();
+    }
+
+    @Override
+    public List<BlockHeader> getHeaders(byte[] hash, int qty, int skip, boolean reverse) {
+        List<BlockHeader> headers = new ArrayList<>();
+        BlockHeader header = getBlockHeaderByHash(hash);
+
+        while (header != null && headers.size() < qty) {
+            headers.add(header);
+
+            if (reverse) {
+                byte[] childHash = getBlockHashByNumber(header.getNumber() + skip + 1);
+                header = childHash == null ? null : getBlockHeaderByHash(childHash);
+            }
+            else {
+                for (int k = 0; header != null && k <= skip; k++)
+                    header = getBlockHeaderByHash(header.getParentHash());
+            }
+        }
+
+        return headers;
+    }
+
     @Override
     public Block getBlockByHashAndDepth(byte[] hash, long depth) {
         Block block = this.getBlockByHash(hash);
@@ -48,6 +48,8 @@ public interface BlockStore {
 
     Block getBlockByHash(byte[] hash);
 
+    BlockHeader getBlockHeaderByHash(byte[] hash);
+
     Block getBlockByHashAndDepth(byte[] hash, long depth);
 
     boolean isBlockExist(byte[] hash);
@@ -58,6 +60,13 @@ public interface BlockStore {
 
     List<Block> getListBlocksEndWith(byte[] hash, long qty);
 
+    /**
+     * Gets up to qty headers starting with the block with the specified hash,
+     * skipping skip blocks between them. The headers go to the parents, or to the
+     * children in the main chain when reverse is true
+     */
+    List<BlockHeader> getHeaders(byte[] hash, int qty, int skip, boolean reverse);
+
     void saveBlock(Block block, BigInteger cummDifficulty, boolean mainChain);
 
     BigInteger getTotalDifficultyForHash(byte[] hash);
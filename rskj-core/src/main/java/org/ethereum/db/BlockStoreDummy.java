@@ -26,6 +26,7 @@ import org.ethereum.crypto.HashUtil;
 import java.math.BigInteger;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -56,6 +57,11 @@ public class BlockStoreDummy implements BlockStore {
         return null;
     }
 
+    @Override
+    public BlockHeader getBlockHeaderByHash(byte[] hash) {
+        return null;
+    }
+
     @Override
     public Block getBlockByHashAndDepth(byte[] hash, long depth) {
         return null;
@@ -81,6 +87,11 @@ public class BlockStoreDummy implements BlockStore {
         return null;
     }
 
+    @Override
+    public List<BlockHeader> getHeaders(byte[] hash, int qty, int skip, boolean reverse) {
+        return Collections.emptyList();
+    }
+
     @Override
     public void saveBlock(Block block, BigInteger cummDifficulty, boolean mainChain) {
 
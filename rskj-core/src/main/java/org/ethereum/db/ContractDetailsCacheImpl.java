@@ -249,6 +249,10 @@ public class ContractDetailsCacheImpl implements ContractDetails {
         return unmodifiableMap(storage);
     }
 
+    Map<DataWord, byte[]> getBytesStorage() {
+        return unmodifiableMap(bytesStorage);
+    }
+
     @Override
     public Map<DataWord, DataWord> getStorage(Collection<DataWord> keys) {
         if (keys == null) return getStorage();
@@ -20,6 +20,7 @@
 package org.ethereum.db;
 
 import co.rsk.db.ContractDetailsImpl;
+import co.rsk.trie.TrieStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
@@ -29,10 +30,17 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import static java.lang.String.format;
 import static org.ethereum.util.ByteUtil.wrap;
 
+/**
+ * DetailsDataStore keeps the contract details by address
+ *
+ * With a trie store, the contract storage tries are saved in that store, and the
+ * details data source is only an index of their roots, with the contracts code
+ */
 public class DetailsDataStore {
 
     private static final Logger gLogger = LoggerFactory.getLogger("general");
@@ -40,12 +48,27 @@ public class DetailsDataStore {
     private DatabaseImpl db = null;
     private Map<ByteArrayWrapper, ContractDetails> cache = new ConcurrentHashMap<>();
     private Set<ByteArrayWrapper> removes = new HashSet<>();
+    private TrieStore trieStore;
 
     public synchronized void setDB(DatabaseImpl db) {
         this.db = db;
     }
 
-    public synchronized ContractDetails get(byte[] key) {
+    public synchronized void setTrieStore(TrieStore trieStore) {
+        this.trieStore = trieStore;
+    }
+
+    public ContractDetails get(byte[] key) {
+        // the cached details are read without locking, so the readers don't wait for a flush
+        ContractDetails details = cache.get(wrap(key));
+
+        if (details != null)
+            return details;
+
+        return load(key);
+    }
+
+    private synchronized ContractDetails load(byte[] key) {
         ByteArrayWrapper wrappedKey = wrap(key);
         ContractDetails details = cache.get(wrappedKey);
 
@@ -69,12 +92,15 @@ public class DetailsDataStore {
     }
 
     protected ContractDetails createContractDetails(byte[] data) {
-        return new ContractDetailsImpl(data);
+        return new ContractDetailsImpl(data, this.trieStore);
     }
 
     public synchronized void update(byte[] key, ContractDetails contractDetails) {
         contractDetails.setAddress(key);
 
+        if (this.trieStore != null && contractDetails instanceof ContractDetailsImpl)
+            ((ContractDetailsImpl) contractDetails).setTrieStore(this.trieStore);
+
         ByteArrayWrapper wrappedKey = wrap(key);
         cache.put(wrappedKey, contractDetails);
         removes.remove(wrappedKey);
@@ -126,6 +152,39 @@ public class DetailsDataStore {
     }
 
 
+    /**
+     * forEachStorageKeysRoot visits the roots of the storage keys tries, in the saved details,
+     * without loading all the stored keys or roots in memory
+     *
+     * @param consumer  the root consumer
+     */
+    public void forEachStorageKeysRoot(Consumer<byte[]> consumer) {
+        db.getDb().forEachKey(key -> {
+            byte[] data = db.get(key);
+
+            if (data == null)
+                return;
+
+            byte[] root = ContractDetailsImpl.getKeysRoot(data);
+
+            if (root != null)
+                consumer.accept(root);
+        });
+    }
+
+    /**
+     * forEachKey visits the addresses of the cached and stored details, without loading
+     * all the stored keys in memory. An address can be visited more than once
+     *
+     * @param consumer  the address consumer
+     */
+    public void forEachKey(Consumer<byte[]> consumer) {
+        for (ByteArrayWrapper key : cache.keySet())
+            consumer.accept(key.getData());
+
+        db.getDb().forEachKey(consumer);
+    }
+
     public synchronized Set<ByteArrayWrapper> keys() {
         Set<ByteArrayWrapper> keys = new HashSet<>();
         keys.addAll(cache.keySet());
@@ -100,7 +100,24 @@ public class IndexedBlockStore extends AbstractBlockstore{
     }
 
     public byte[] getBlockHashByNumber(long blockNumber){
-        return getChainBlockByNumber(blockNumber).getHash(); // FIXME: can be improved by accessing the hash directly in the index
+
+        if (cache != null) {
+            byte[] hash = cache.getBlockHashByNumber(blockNumber);
+            if (hash != null) return hash;
+        }
+
+        List<BlockInfo> blockInfos = index.get(blockNumber);
+        if (blockInfos == null){
+            return null;
+        }
+
+        for (BlockInfo blockInfo : blockInfos){
+            if (blockInfo.isMainChain()){
+                return blockInfo.getHash();
+            }
+        }
+
+        return null;
     }
 
 
@@ -228,6 +245,21 @@ public class IndexedBlockStore extends AbstractBlockstore{
         return new Block(blockRlp);
     }
 
+    @Override
+    public BlockHeader getBlockHeaderByHash(byte[] hash) {
+
+        if (cache != null) {
+            BlockHeader cachedHeader = cache.getBlockHeaderByHash(hash);
+            if (cachedHeader != null) return cachedHeader;
+        }
+
+        byte[] blockRlp = blocks.get(hash);
+        if (blockRlp == null)
+            return null;
+
+        return Block.parseHeader(blockRlp);
+    }
+
     @Override
     public boolean isBlockExist(byte[] hash) {
 
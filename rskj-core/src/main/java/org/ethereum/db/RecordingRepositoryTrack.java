@@ -0,0 +1,218 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.db;
+
+import org.ethereum.core.AccountState;
+import org.ethereum.core.Repository;
+import org.ethereum.vm.DataWord;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.ethereum.util.ByteUtil.wrap;
+
+/**
+ * RecordingRepositoryTrack is a track that records the accounts and the storage cells
+ * read and written through it, to detect the conflicts between transactions executed
+ * in parallel
+ *
+ * The read accounts are the accounts loaded from the parent repository, or checked for
+ * existence, and the read cells are the storage keys loaded in their contract details.
+ * The written accounts and cells are the cached values that differ from the parent
+ * repository, so they must be taken before the commit.
+ *
+ * A storage cell is represented by the account address followed by the storage key.
+ * The address alone represents all the storage of an account without contract details
+ * in the parent repository, because their storage reads are not cached
+ */
+public class RecordingRepositoryTrack extends RepositoryTrack {
+    private final Set<ByteArrayWrapper> checkedAccounts = new HashSet<>();
+
+    public RecordingRepositoryTrack(Repository repository) {
+        super(repository);
+    }
+
+    @Override
+    public boolean isExist(byte[] addr) {
+        synchronized (repository) {
+            checkedAccounts.add(wrap(addr));
+            return super.isExist(addr);
+        }
+    }
+
+    @Override
+    public void commit() {
+        synchronized (repository) {
+            super.commit();
+            checkedAccounts.clear();
+        }
+    }
+
+    @Override
+    public void rollback() {
+        super.rollback();
+        checkedAccounts.clear();
+    }
+
+    /**
+     * commitTo moves the cached accounts to another repository, instead of the parent one.
+     * The target repository should have the same values for the read accounts and cells,
+     * but it can have other storage cells changed, so the cached cells are committed
+     * to the target contract details, like a nested track
+     *
+     * @param target            the repository to update
+     * @param excludedAddress   an account that is not moved, or null
+     */
+    public void commitTo(Repository target, byte[] excludedAddress) {
+        synchronized (repository) {
+            if (excludedAddress != null) {
+                cacheAccounts.remove(wrap(excludedAddress));
+                cacheDetails.remove(wrap(excludedAddress));
+            }
+
+            for (Map.Entry<ByteArrayWrapper, AccountState> entry : cacheAccounts.entrySet()) {
+                byte[] address = entry.getKey().getData();
+                ContractDetailsCacheImpl details = (ContractDetailsCacheImpl) cacheDetails.get(entry.getKey());
+
+                entry.getValue().setStateRoot(target.getAccountState(address).getStateRoot());
+                details.setOriginalContractDetails(target.getContractDetails(address));
+            }
+
+            applyCacheDetailsChanges();
+
+            target.updateBatch(cacheAccounts, cacheDetails);
+
+            cacheAccounts.clear();
+            cacheDetails.clear();
+            checkedAccounts.clear();
+        }
+    }
+
+    public Set<ByteArrayWrapper> getReadAccounts() {
+        synchronized (repository) {
+            Set<ByteArrayWrapper> accounts = new HashSet<>(checkedAccounts);
+            accounts.addAll(cacheAccounts.keySet());
+            return accounts;
+        }
+    }
+
+    public Set<ByteArrayWrapper> getWrittenAccounts() {
+        synchronized (repository) {
+            Set<ByteArrayWrapper> accounts = new HashSet<>();
+
+            for (Map.Entry<ByteArrayWrapper, AccountState> entry : cacheAccounts.entrySet()) {
+                AccountState accountState = entry.getValue();
+                ContractDetails details = cacheDetails.get(entry.getKey());
+
+                if (accountState.isDeleted() || details.isDeleted()) {
+                    accounts.add(entry.getKey());
+                    continue;
+                }
+
+                if (!details.isDirty())
+                    continue;
+
+                AccountState original = repository.getAccountState(entry.getKey().getData());
+
+                if (original == null || !hasSameValues(original, accountState))
+                    accounts.add(entry.getKey());
+            }
+
+            return accounts;
+        }
+    }
+
+    public Set<ByteArrayWrapper> getReadStorageCells() {
+        synchronized (repository) {
+            Set<ByteArrayWrapper> cells = new HashSet<>();
+
+            for (Map.Entry<ByteArrayWrapper, ContractDetails> entry : cacheDetails.entrySet()) {
+                ContractDetailsCacheImpl details = (ContractDetailsCacheImpl) entry.getValue();
+                byte[] address = entry.getKey().getData();
+
+                if (details.getOriginalContractDetails() == null) {
+                    cells.add(entry.getKey());
+                    continue;
+                }
+
+                for (DataWord key : details.getStorage().keySet())
+                    cells.add(getCell(address, key));
+
+                for (DataWord key : details.getBytesStorage().keySet())
+                    cells.add(getCell(address, key));
+            }
+
+            return cells;
+        }
+    }
+
+    public Set<ByteArrayWrapper> getWrittenStorageCells() {
+        synchronized (repository) {
+            Set<ByteArrayWrapper> cells = new HashSet<>();
+
+            for (Map.Entry<ByteArrayWrapper, ContractDetails> entry : cacheDetails.entrySet()) {
+                ContractDetailsCacheImpl details = (ContractDetailsCacheImpl) entry.getValue();
+
+                if (!details.isDirty())
+                    continue;
+
+                ContractDetails original = details.getOriginalContractDetails();
+                byte[] address = entry.getKey().getData();
+                int written = cells.size();
+
+                for (Map.Entry<DataWord, DataWord> value : details.getStorage().entrySet())
+                    if (!isSameValue(value.getValue(), original == null ? null : original.get(value.getKey())))
+                        cells.add(getCell(address, value.getKey()));
+
+                for (Map.Entry<DataWord, byte[]> value : details.getBytesStorage().entrySet())
+                    if (!Arrays.equals(value.getValue(), original == null ? null : original.getBytes(value.getKey())))
+                        cells.add(getCell(address, value.getKey()));
+
+                if (cells.size() > written)
+                    cells.add(entry.getKey());
+            }
+
+            return cells;
+        }
+    }
+
+    private static boolean hasSameValues(AccountState original, AccountState accountState) {
+        return Objects.equals(original.getNonce(), accountState.getNonce())
+                && Objects.equals(original.getBalance(), accountState.getBalance())
+                && Arrays.equals(original.getCodeHash(), accountState.getCodeHash())
+                && original.getStateFlags() == accountState.getStateFlags();
+    }
+
+    private static boolean isSameValue(DataWord value, DataWord original) {
+        if (value == null || value.isZero())
+            return original == null || original.isZero();
+
+        return value.equals(original);
+    }
+
+    private static ByteArrayWrapper getCell(byte[] address, DataWord key) {
+        byte[] data = key.getData();
+        byte[] cell = Arrays.copyOf(address, address.length + data.length);
+        System.arraycopy(data, 0, cell, address.length, data.length);
+        return new ByteArrayWrapper(cell);
+    }
+}
@@ -416,6 +416,11 @@ public class RepositoryTrack implements Repository {
         throw new UnsupportedOperationException();
     }
 
+    @Override // that's the idea track is here not for root calculations
+    public byte[] calculateRoot() {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean isClosed() {
         throw new UnsupportedOperationException();
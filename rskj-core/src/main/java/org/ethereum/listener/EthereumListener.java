@@ -62,6 +62,11 @@ public interface EthereumListener {
 
     void onNoConnections();
 
+    /**
+     * onVMTraceCreated is called with the serialized program trace of a transaction.
+     * The traces are serialized in the background, so it is called asynchronously
+     * from the ProgramTraceWriter thread, after the transaction was executed
+     */
     void onVMTraceCreated(String transactionHash, String trace);
 
     void onTransactionExecuted(TransactionExecutionSummary summary);
@@ -90,6 +90,12 @@ public class FrameCodec {
             this.payload = new ByteArrayInputStream(payload);
         }
 
+        public Frame(int type, byte[] payload, int offset, int length) {
+            this.type = type;
+            this.size = length;
+            this.payload = new ByteArrayInputStream(payload, offset, length);
+        }
+
         public int getSize() {
             return size;
         }
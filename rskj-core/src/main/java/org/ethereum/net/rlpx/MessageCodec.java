@@ -171,23 +171,23 @@ public class MessageCodec extends MessageToMessageCodec<Frame, Message> {
         if (loggerWire.isDebugEnabled())
             loggerWire.debug("Send: Encoded: {} [{}]", getCode(msg.getCommand()), Hex.toHexString(encoded));
 
-        List<Frame> frames = splitMessageToFrames(msg);
+        List<Frame> frames = splitMessageToFrames(getCode(msg.getCommand()), encoded);
 
         out.addAll(frames);
 
         channel.getNodeStatistics().rlpxOutMessages.add();
     }
 
-    private List<Frame> splitMessageToFrames(Message msg) {
-        byte code = getCode(msg.getCommand());
+    /**
+     * splitMessageToFrames splits the encoded message into frames that read from the same array,
+     * so a message broadcasted to many peers is not copied for each one
+     */
+    private List<Frame> splitMessageToFrames(byte code, byte[] bytes) {
         List<Frame> ret = new ArrayList<>();
-        byte[] bytes = msg.getEncoded();
         int curPos = 0;
         while(curPos < bytes.length) {
             int newPos = min(curPos + maxFramePayloadSize, bytes.length);
-            byte[] frameBytes = curPos == 0 && newPos == bytes.length ? bytes :
-                    Arrays.copyOfRange(bytes, curPos, newPos);
-            ret.add(new Frame(code, frameBytes));
+            ret.add(new Frame(code, bytes, curPos, newPos - curPos));
             curPos = newPos;
         }
 
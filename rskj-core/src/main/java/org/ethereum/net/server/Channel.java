@@ -235,6 +235,7 @@ public class Channel {
     }
 
     public void onDisconnect() {
+        eth.onShutdown();
     }
 
     public void onSyncDone(boolean done) {
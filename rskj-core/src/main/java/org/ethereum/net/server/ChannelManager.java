@@ -77,6 +77,17 @@ public interface ChannelManager {
     @Nonnull
     Set<NodeID> broadcastTransaction(@Nonnull final Transaction transaction, @Nullable final Set<NodeID> skip);
 
+    /**
+     * broadcastTransactions Propagates the transactions in one message across active peers with exclusion of
+     * the peers with an id belonging to the skip set.
+     *
+     * @param transactions new Transactions to be sent
+     * @param skip  the set of peers to avoid sending the message.
+     * @return a set containing the ids of the peers that received the transactions.
+     */
+    @Nonnull
+    Set<NodeID> broadcastTransactions(@Nonnull final List<Transaction> transactions, @Nullable final Set<NodeID> skip);
+
     int broadcastStatus(@Nonnull final Status status);
 
     /**
@@ -25,6 +25,7 @@ import co.rsk.net.NodeID;
 import co.rsk.net.Status;
 import co.rsk.net.eth.RskMessage;
 import co.rsk.net.messages.BlockMessage;
+import co.rsk.net.messages.Message;
 import co.rsk.net.messages.NewBlockHashesMessage;
 import co.rsk.net.messages.StatusMessage;
 import co.rsk.net.messages.TransactionsMessage;
@@ -157,8 +158,7 @@ public class ChannelManagerImpl implements ChannelManager {
         tx.stream().forEach(t -> Metrics.broadcastTransaction(t));
 
         synchronized (activePeers) {
-            TransactionsMessage txsmsg = new TransactionsMessage(tx);
-            EthMessage msg = new RskMessage(txsmsg);
+            EthMessage msg = encode(new TransactionsMessage(tx));
             for (Channel channel : activePeers.values()) {
                 if (channel != receivedFrom) {
                     channel.sendMessage(msg);
@@ -181,8 +181,8 @@ public class ChannelManagerImpl implements ChannelManager {
 
         final Set<NodeID> res = new HashSet<>();
         final BlockIdentifier bi = new BlockIdentifier(block.getHash(), block.getNumber());
-        final EthMessage newBlock = new RskMessage(new BlockMessage(block));
-        final EthMessage newBlockHashes = new RskMessage(new NewBlockHashesMessage(Arrays.asList(bi)));
+        final EthMessage newBlock = encode(new BlockMessage(block));
+        final EthMessage newBlockHashes = encode(new NewBlockHashesMessage(Arrays.asList(bi)));
         synchronized (activePeers) {
             // Get a randomized list with all the peers that don't have the block yet.
             activePeers.values().forEach(c -> logger.trace("RSK activePeers: {}", c));
@@ -218,12 +218,23 @@ public class ChannelManagerImpl implements ChannelManager {
      */
     @Nonnull
     public Set<NodeID> broadcastTransaction(@Nonnull final Transaction transaction, @Nullable final Set<NodeID> skip) {
-        Metrics.broadcastTransaction(transaction);
-        List<Transaction> transactions = new ArrayList<>();
-        transactions.add(transaction);
+        return broadcastTransactions(Collections.singletonList(transaction), skip);
+    }
+
+    /**
+     * broadcastTransactions Propagates the transactions in one message across active peers with exclusion of
+     * the peers with an id belonging to the skip set.
+     *
+     * @param transactions new Transactions to be sent
+     * @param skip  the set of peers to avoid sending the message.
+     * @return a set containing the ids of the peers that received the transactions.
+     */
+    @Nonnull
+    public Set<NodeID> broadcastTransactions(@Nonnull final List<Transaction> transactions, @Nullable final Set<NodeID> skip) {
+        transactions.forEach(Metrics::broadcastTransaction);
 
         final Set<NodeID> res = new HashSet<>();
-        final EthMessage newTransactions = new RskMessage(new TransactionsMessage(transactions));
+        final EthMessage newTransactions = encode(new TransactionsMessage(transactions));
 
         synchronized (activePeers) {
             final Vector<Channel> peers = activePeers.values().stream()
@@ -240,7 +251,7 @@ public class ChannelManagerImpl implements ChannelManager {
 
     @Override
     public int broadcastStatus(Status status) {
-        final EthMessage message = new RskMessage(new StatusMessage(status));
+        final EthMessage message = encode(new StatusMessage(status));
 
         int npeers = 0;
 
@@ -263,7 +274,7 @@ public class ChannelManagerImpl implements ChannelManager {
      */
     @Deprecated // Use broadcastBlock
     public void sendNewBlock(Block block, Channel receivedFrom) {
-        EthMessage message = new RskMessage(new BlockMessage(block));
+        EthMessage message = encode(new BlockMessage(block));
 
         synchronized (activePeers) {
             for (Channel channel : activePeers.values()) {
@@ -274,6 +285,15 @@ public class ChannelManagerImpl implements ChannelManager {
         }
     }
 
+    /**
+     * encode wraps a message to be sent to several peers, encoding it once:
+     * the codec of each peer frames the same encoded bytes.
+     */
+    private static EthMessage encode(Message message) {
+        EthMessage msg = new RskMessage(message);
+        msg.getEncoded();
+        return msg;
+    }
 
     public void add(Channel peer) {
         newPeers.add(peer);
@@ -47,6 +47,10 @@ public class DataWord implements Comparable<DataWord> {
     public static final DataWord ONE = new DataWord(1);
     public static final DataWord ZERO_EMPTY_ARRAY = new DataWord(new byte[0]);      // don't push it in to the stack
 
+    // The arithmetic is done on 32 bits limbs, in little endian order,
+    // so the product of two limbs, plus the carries, fits in a long
+    private static final long INT_MASK = 0xffffffffL;
+
     private byte[] data; // Optimization, do not initialize until needed
 
     public DataWord() {
@@ -351,15 +355,12 @@ public class DataWord implements Comparable<DataWord> {
         this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
     }
 
-    // TODO: mul can be done in more efficient way
-    // TODO:     with shift left shift right trick
-    // TODO      without BigInteger quick hack
     public void mul(DataWord word) {
-        BigInteger result = value().multiply(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        int[] result = new int[8];
+        mulInts(this.toInts(), word.toInts(), result);
+        this.assignInts(result);
     }
 
-    // TODO: improve with no BigInteger
     public void div(DataWord word) {
 
         if (word.isZero()) {
@@ -367,11 +368,11 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = value().divide(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        int[] quotient = new int[8];
+        divide(this.toInts(), word.toInts(), quotient, null);
+        this.assignInts(quotient);
     }
 
-    // TODO: improve with no BigInteger
     public void sDiv(DataWord word) {
 
         if (word.isZero()) {
@@ -379,24 +380,72 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = sValue().divide(word.sValue());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
-    }
+        boolean negative = this.isNegative() != word.isNegative();
+        int[] quotient = new int[8];
+        divide(this.absInts(), word.absInts(), quotient, null);
+
+        if (negative)
+            negate(quotient);
 
+        this.assignInts(quotient);
+    }
 
-    // TODO: improve with no BigInteger
     public void sub(DataWord word) {
-        BigInteger result = value().subtract(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        long borrow = 0;
+
+        for (int offset = 28; offset >= 0; offset -= 4) {
+            long value = (getInt(this.data, offset) & INT_MASK) - (getInt(word.data, offset) & INT_MASK) - borrow;
+            putInt(this.data, offset, (int) value);
+            borrow = value >>> 63;
+        }
     }
 
-    // TODO: improve with no BigInteger
     public void exp(DataWord word) {
-        BigInteger result = value().modPow(word.value(), _2_256);
-        this.data = ByteUtil.copyToArray(result);
+        int[] base = this.toInts();
+        int[] exponent = word.toInts();
+
+        int length = significantLength(exponent);
+        int bits = length == 0 ? 0 : length * 32 - Integer.numberOfLeadingZeros(exponent[length - 1]);
+
+        int baseLength = significantLength(base);
+
+        // a power of two base is a shift: 2^(k * e) is zero when k * e >= 256
+        if (baseLength > 0 && Integer.bitCount(base[baseLength - 1]) == 1 && significantLength(base, baseLength - 1) == 0) {
+            int k = (baseLength - 1) * 32 + Integer.numberOfTrailingZeros(base[baseLength - 1]);
+            long shift = k == 0 || bits <= 32 ? k * (exponent[0] & INT_MASK) : Long.MAX_VALUE;
+            int[] result = new int[8];
+
+            if (shift < 256)
+                result[(int) shift >>> 5] = 1 << (shift & 31);
+
+            this.assignInts(result);
+            return;
+        }
+
+        int[] result = new int[8];
+        int[] buffer = new int[8];
+        result[0] = 1;
+
+        for (int k = bits - 1; k >= 0; k--) {
+            mulInts(result, result, buffer);
+
+            if ((exponent[k >>> 5] & (1 << (k & 31))) != 0) {
+                mulInts(buffer, base, result);
+            }
+            else {
+                int[] swap = result;
+                result = buffer;
+                buffer = swap;
+            }
+
+            // an even base reaches zero, and keeps it
+            if (significantLength(result) == 0)
+                break;
+        }
+
+        this.assignInts(result);
     }
 
-    // TODO: improve with no BigInteger
     public void mod(DataWord word) {
 
         if (word.isZero()) {
@@ -404,8 +453,9 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = value().mod(word.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        int[] remainder = new int[8];
+        divide(this.toInts(), word.toInts(), null, remainder);
+        this.assignInts(remainder);
     }
 
     public void sMod(DataWord word) {
@@ -415,12 +465,18 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = sValue().abs().mod(word.sValue().abs());
-        result = (sValue().signum() == -1) ? result.negate() : result;
+        boolean negative = this.isNegative();
+        int[] remainder = new int[8];
+        divide(this.absInts(), word.absInts(), null, remainder);
 
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        if (negative)
+            negate(remainder);
+
+        this.assignInts(remainder);
     }
 
+    // the result is kept as it was calculated with BigInteger:
+    // the sum of the reduced operands is not extended to 257 bits
     public void addmod(DataWord word1, DataWord word2) {
         if (word1.data[0] != 0 || data[0] != 0) {
             // overflow possible: slower path
@@ -439,8 +495,249 @@ public class DataWord implements Comparable<DataWord> {
             return;
         }
 
-        BigInteger result = value().multiply(word1.value()).mod(word2.value());
-        this.data = ByteUtil.copyToArray(result.and(MAX_VALUE));
+        int[] a = this.toInts();
+        int[] b = word1.toInts();
+
+        // only the significant limbs are multiplied: with operands below 2^128
+        // the product has eight limbs, and the division is as fast as a mod
+        int la = significantLength(a);
+        int lb = significantLength(b);
+        int[] product = new int[Math.max(8, la + lb)];
+
+        for (int i = 0; i < la; i++) {
+            long ai = a[i] & INT_MASK;
+
+            if (ai == 0)
+                continue;
+
+            long carry = 0;
+
+            for (int j = 0; j < lb; j++) {
+                long t = ai * (b[j] & INT_MASK) + (product[i + j] & INT_MASK) + carry;
+                product[i + j] = (int) t;
+                carry = t >>> 32;
+            }
+
+            product[i + lb] = (int) carry;
+        }
+
+        int[] remainder = new int[8];
+        divide(product, word2.toInts(), null, remainder);
+        this.assignInts(remainder);
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16 | (data[offset + 2] & 0xff) << 8 | (data[offset + 3] & 0xff);
+    }
+
+    private static void putInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    private int[] toInts() {
+        int[] ints = new int[8];
+
+        for (int k = 0; k < 8; k++)
+            ints[k] = getInt(this.data, 28 - k * 4);
+
+        return ints;
+    }
+
+    private int[] absInts() {
+        int[] ints = this.toInts();
+
+        if (this.isNegative())
+            negate(ints);
+
+        return ints;
+    }
+
+    private void assignInts(int[] ints) {
+        for (int k = 0; k < 8; k++)
+            putInt(this.data, 28 - k * 4, ints[k]);
+    }
+
+    private static void negate(int[] ints) {
+        long carry = 1;
+
+        for (int k = 0; k < ints.length; k++) {
+            long value = (~ints[k] & INT_MASK) + carry;
+            ints[k] = (int) value;
+            carry = value >>> 32;
+        }
+    }
+
+    // the product is truncated to eight limbs, the leading zero limbs are skipped
+    private static void mulInts(int[] a, int[] b, int[] result) {
+        java.util.Arrays.fill(result, 0);
+
+        int la = significantLength(a);
+        int lb = significantLength(b);
+
+        for (int i = 0; i < la; i++) {
+            long ai = a[i] & INT_MASK;
+
+            if (ai == 0)
+                continue;
+
+            long carry = 0;
+            int lj = Math.min(lb, 8 - i);
+
+            for (int j = 0; j < lj; j++) {
+                long t = ai * (b[j] & INT_MASK) + (result[i + j] & INT_MASK) + carry;
+                result[i + j] = (int) t;
+                carry = t >>> 32;
+            }
+
+            if (i + lj < 8)
+                result[i + lj] = (int) carry;
+        }
+    }
+
+    private static int significantLength(int[] ints) {
+        return significantLength(ints, ints.length);
+    }
+
+    // significant length of the first limbs
+    private static int significantLength(int[] ints, int limbs) {
+        int length = limbs;
+
+        while (length > 0 && ints[length - 1] == 0)
+            length--;
+
+        return length;
+    }
+
+    // unsigned division of a long by a divisor lower than 2^32
+    private static long divideUnsigned(long dividend, long divisor) {
+        if (dividend >= 0)
+            return dividend / divisor;
+
+        long quotient = ((dividend >>> 1) / divisor) << 1;
+        long remainder = dividend - quotient * divisor;
+
+        return quotient + (Long.compareUnsigned(remainder, divisor) >= 0 ? 1 : 0);
+    }
+
+    /**
+     * divide calculates the quotient and the remainder of u / v, using the
+     * Knuth algorithm D, as in Hacker's Delight divmnu
+     *
+     * @param u         the dividend limbs
+     * @param v         the divisor limbs, not zero
+     * @param quotient  zeroed array with u length, or null
+     * @param remainder zeroed array with v length, or null
+     */
+    private static void divide(int[] u, int[] v, int[] quotient, int[] remainder) {
+        int m = significantLength(u);
+        int n = significantLength(v);
+
+        if (m < n) {
+            if (remainder != null)
+                System.arraycopy(u, 0, remainder, 0, m);
+
+            return;
+        }
+
+        if (n == 1) {
+            long divisor = v[0] & INT_MASK;
+            long rest = 0;
+
+            for (int j = m - 1; j >= 0; j--) {
+                long dividend = (rest << 32) | (u[j] & INT_MASK);
+                long q = divideUnsigned(dividend, divisor);
+
+                if (quotient != null)
+                    quotient[j] = (int) q;
+
+                rest = dividend - q * divisor;
+            }
+
+            if (remainder != null)
+                remainder[0] = (int) rest;
+
+            return;
+        }
+
+        // normalize, so the top limb of the divisor has its highest bit set
+        int shift = Integer.numberOfLeadingZeros(v[n - 1]);
+        int[] vn = new int[n];
+        int[] un = new int[m + 1];
+
+        for (int i = n - 1; i > 0; i--)
+            vn[i] = shiftLeft(v[i], v[i - 1], shift);
+
+        vn[0] = v[0] << shift;
+
+        un[m] = shiftLeft(0, u[m - 1], shift);
+
+        for (int i = m - 1; i > 0; i--)
+            un[i] = shiftLeft(u[i], u[i - 1], shift);
+
+        un[0] = u[0] << shift;
+
+        long vtop = vn[n - 1] & INT_MASK;
+        long vnext = vn[n - 2] & INT_MASK;
+
+        for (int j = m - n; j >= 0; j--) {
+            long dividend = ((un[j + n] & INT_MASK) << 32) | (un[j + n - 1] & INT_MASK);
+            long qhat = divideUnsigned(dividend, vtop);
+            long rhat = dividend - qhat * vtop;
+
+            while (qhat > INT_MASK || Long.compareUnsigned(qhat * vnext, (rhat << 32) | (un[j + n - 2] & INT_MASK)) > 0) {
+                qhat--;
+                rhat += vtop;
+
+                if (rhat > INT_MASK)
+                    break;
+            }
+
+            // multiply and subtract
+            long borrow = 0;
+            long t;
+
+            for (int i = 0; i < n; i++) {
+                long p = qhat * (vn[i] & INT_MASK);
+                t = (un[i + j] & INT_MASK) - borrow - (p & INT_MASK);
+                un[i + j] = (int) t;
+                borrow = (p >>> 32) - (t >> 32);
+            }
+
+            t = (un[j + n] & INT_MASK) - borrow;
+            un[j + n] = (int) t;
+
+            // subtracted too much, add back
+            if (t < 0) {
+                qhat--;
+                long carry = 0;
+
+                for (int i = 0; i < n; i++) {
+                    t = (un[i + j] & INT_MASK) + (vn[i] & INT_MASK) + carry;
+                    un[i + j] = (int) t;
+                    carry = t >>> 32;
+                }
+
+                un[j + n] += (int) carry;
+            }
+
+            if (quotient != null)
+                quotient[j] = (int) qhat;
+        }
+
+        if (remainder != null)
+            for (int i = 0; i < n; i++)
+                remainder[i] = shiftRight(un[i + 1], un[i], shift);
+    }
+
+    private static int shiftLeft(int high, int low, int shift) {
+        return shift == 0 ? high : (high << shift) | (low >>> (32 - shift));
+    }
+
+    private static int shiftRight(int high, int low, int shift) {
+        return shift == 0 ? low : (low >>> shift) | (high << (32 - shift));
     }
 
     @JsonValue
@@ -502,10 +799,25 @@ public class DataWord implements Comparable<DataWord> {
         else return 0;
     }
 
+    /**
+     * Compares this DataWord with other, both as signed two's complement numbers
+     *
+     * @return -1, 0 or 1 as this DataWord is less than, equal to, or greater than the other
+     */
+    public int compareToSigned(DataWord o) {
+        boolean negative = this.isNegative();
+
+        if (negative != o.isNegative())
+            return negative ? -1 : 1;
+
+        // with the same sign, the two's complement order is the unsigned order
+        return this.compareTo(o);
+    }
+
     public void signExtend(byte k) {
         if (0 > k || k > 31)
             throw new IndexOutOfBoundsException();
-        byte mask = this.sValue().testBit((k * 8) + 7) ? (byte) 0xff : 0;
+        byte mask = (this.data[31 - k] & 0x80) != 0 ? (byte) 0xff : 0;
         for (int i = 31; i > k; i--) {
             this.data[31 - i] = mask;
         }
@@ -19,6 +19,7 @@ package org.ethereum.vm;
  */
 
 
+import co.rsk.config.RemascConfig;
 import co.rsk.config.RemascConfigFactory;
 import co.rsk.config.RskSystemProperties;
 import co.rsk.peg.Bridge;
@@ -35,7 +36,10 @@ import org.ethereum.util.ByteUtil;
 import org.ethereum.vm.util.ModexpUtil;
 
 import java.math.BigInteger;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * @author Roman Mandeleil
@@ -52,7 +56,6 @@ public class PrecompiledContracts {
     public static final String MODEXP_ADDR = "0000000000000000000000000000000000000000000000000000000001000007";
     public static final String REMASC_ADDR = "0000000000000000000000000000000001000008";
 
-    private static final String RSK_NATIVECONTRACT_REQUIREDPREFIX = "000000000000000000000000";
     private static ECRecover ecRecover = new ECRecover();
     private static Sha256 sha256 = new Sha256();
     private static Ripempd160 ripempd160 = new Ripempd160();
@@ -60,22 +63,58 @@ public class PrecompiledContracts {
     private static SamplePrecompiledContract sample = new SamplePrecompiledContract(SAMPLE_ADDR);
     private static Modexp modexp = new Modexp();
 
-    public static PrecompiledContract getContractForAddress(DataWord address) {
+    private static final DataWord BRIDGE_ADDR_DW = new DataWord(BRIDGE_ADDR);
+    private static final DataWord REMASC_ADDR_DW = new DataWord(REMASC_ADDR);
+
+    private static final Map<DataWord, PrecompiledContract> contracts = new HashMap<>();
+
+    static {
+        contracts.put(new DataWord(ECRECOVER_ADDR), ecRecover);
+        contracts.put(new DataWord(SHA256_ADDR), sha256);
+        contracts.put(new DataWord(RIPEMPD160_ADDR), ripempd160);
+        contracts.put(new DataWord(IDENTITY_ADDR), identity);
+        contracts.put(new DataWord(SAMPLE_ADDR), sample);
+        contracts.put(new DataWord(MODEXP_ADDR), modexp);
+    }
 
+    private static String remascNetName;
+    private static RemascConfig remascConfig;
+
+    /**
+     * getContractForAddress returns the precompiled contract at an address, or null
+     *
+     * The stateless contracts are shared instances, found by address. The bridge and
+     * the remasc keep the state of an invocation, set by init, so a new instance is
+     * returned for each call, but their function tables and the remasc configuration
+     * are only built once
+     *
+     * @param address   the contract address
+     *
+     * @return  the precompiled contract, or null if there is no contract at that address
+     */
+    public static PrecompiledContract getContractForAddress(DataWord address) {
         if (address == null) return identity;
-        if (address.isHex(ECRECOVER_ADDR)) return ecRecover;
-        if (address.isHex(SHA256_ADDR)) return sha256;
-        if (address.isHex(RIPEMPD160_ADDR)) return ripempd160;
-        if (address.isHex(IDENTITY_ADDR)) return identity;
-        if (address.isHex(SAMPLE_ADDR)) return sample;
-        if (address.isHex(BRIDGE_ADDR) || address.isHex(RSK_NATIVECONTRACT_REQUIREDPREFIX + BRIDGE_ADDR)) return new Bridge(BRIDGE_ADDR);
-        if (address.isHex(MODEXP_ADDR)) return modexp;
-        if (address.isHex(REMASC_ADDR) || address.isHex(RSK_NATIVECONTRACT_REQUIREDPREFIX + REMASC_ADDR))
-            return new RemascContract(REMASC_ADDR, new RemascConfigFactory(RemascContract.REMASC_CONFIG).createRemascConfig(RskSystemProperties.RSKCONFIG.netName()));
+
+        PrecompiledContract contract = contracts.get(address);
+
+        if (contract != null) return contract;
+        if (address.equals(BRIDGE_ADDR_DW)) return new Bridge(BRIDGE_ADDR);
+        if (address.equals(REMASC_ADDR_DW)) return new RemascContract(REMASC_ADDR, getRemascConfig());
 
         return null;
     }
 
+    private static synchronized RemascConfig getRemascConfig() {
+        String netName = RskSystemProperties.RSKCONFIG.netName();
+
+        if (remascConfig == null || !Objects.equals(netName, remascNetName)) {
+            remascConfig = new RemascConfigFactory(RemascContract.REMASC_CONFIG).createRemascConfig(netName);
+            remascNetName = netName;
+        }
+
+        return remascConfig;
+    }
+
     public static abstract class PrecompiledContract {
         public String contractAddress;
 
@@ -20,6 +20,7 @@
 package org.ethereum.vm;
 
 import co.rsk.panic.PanicProcessor;
+import co.rsk.vm.StaticBlocks;
 import org.ethereum.db.ContractDetails;
 import org.ethereum.vm.MessageCall.MsgType;
 import org.ethereum.vm.program.Program;
@@ -92,6 +93,7 @@ public class VM {
     private final static boolean vmTrace = CONFIG.vmTrace();
     private final static long dumpBlock = CONFIG.dumpBlock();
     private boolean computeGas = true; // for performance comp
+    private static boolean useStaticBlocks = CONFIG.vmStaticBlocks();
 
     public VM() {
         isLogEnabled = logger.isInfoEnabled();
@@ -145,6 +147,14 @@ public class VM {
         steps(aprogram,1);
     }
 
+    public static void setUseStaticBlocks(boolean value) {
+        useStaticBlocks = value;
+    }
+
+    public static boolean getUseStaticBlocks() {
+        return useStaticBlocks;
+    }
+
     public int getVmCounter() { // for profiling only
         return vmCounter;
     }
@@ -389,7 +399,7 @@ public class VM {
         if (isLogEnabled)
             hint = word1.sValue() + " < " + word2.sValue();
 
-        if (word1.sValue().compareTo(word2.sValue()) == -1) {
+        if (word1.compareToSigned(word2) == -1) {
             word1.setTrue();
         } else {
             word1.zero();
@@ -409,7 +419,7 @@ public class VM {
         if (isLogEnabled)
             hint = word1.sValue() + " > " + word2.sValue();
 
-        if (word1.sValue().compareTo(word2.sValue()) == 1) {
+        if (word1.compareToSigned(word2) == 1) {
             word1.setTrue();
         } else {
             word1.zero();
@@ -1718,9 +1728,20 @@ public class VM {
 
         try {
 
+            boolean staticBlocks = useStaticBlocks && computeGas && !vmTrace && !isLogEnabled && vmHook == null && dumpBlock < 0;
+
             for(long s=0;s<steps;s++) {
                 if (program.isStopped()) break;
 
+                if (staticBlocks) {
+                    int executed = executeStaticRun(steps - s);
+
+                    if (executed > 0) {
+                        s += executed - 1;
+                        continue;
+                    }
+                }
+
                 if (vmTrace)
                     program.saveOpTrace();
 
@@ -1773,6 +1794,55 @@ public class VM {
         }
     }
 
+    /**
+     * executeStaticRun executes the run of static instructions starting at the current
+     * program counter, spending its gas at once, if the gas and the stack are enough
+     * for all its instructions. Otherwise, the instructions are executed one by one,
+     * so any failure is the same
+     *
+     * @param maxSteps  the maximum number of instructions to execute
+     *
+     * @return  the number of executed instructions, 0 if no run was executed
+     */
+    private int executeStaticRun(long maxSteps) {
+        StaticBlocks blocks = program.getStaticBlocks();
+        int run = blocks.getRun(program.getPC());
+
+        if (run < 0 || blocks.getLength(run) > maxSteps)
+            return 0;
+
+        int size = stack.size();
+
+        if (size < blocks.getStackNeeded(run) || size + blocks.getStackGrowth(run) > Stack.MAX_SIZE)
+            return 0;
+
+        if (program.getRemainingGas() < blocks.getGas(run))
+            return 0;
+
+        program.spendGas(blocks.getGas(run), "static run");
+
+        int length = blocks.getLength(run);
+        int executed = 0;
+
+        // the gas was already spent
+        computeGas = false;
+
+        try {
+            while (executed < length && !program.isStopped()) {
+                op = OpCode.code(program.getCurrentOp());
+                program.setLastOp(op.val());
+                executeOpcode();
+                program.setPreviouslyExecutedOp(op.val());
+                vmCounter++;
+                executed++;
+            }
+        } finally {
+            computeGas = true;
+        }
+
+        return executed;
+    }
+
     public void initDebugData() {
         gasBefore = 0;
         stepBefore = 0;
@@ -23,21 +23,29 @@ import org.ethereum.vm.DataWord;
 import org.ethereum.vm.program.listener.ProgramListener;
 import org.ethereum.vm.program.listener.ProgramListenerAware;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.Math.ceil;
-import static java.lang.Math.min;
 import static java.lang.String.format;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.ethereum.util.ByteUtil.oneByteToHexString;
 
+/**
+ * Memory is the program memory, kept in a contiguous byte array
+ *
+ * The memory is allocated in chunks, but the array capacity grows by doubling,
+ * so reads and writes are direct array copies at any address
+ */
 public class Memory implements ProgramListenerAware {
 
     private static final int CHUNK_SIZE = 1024;
     private static final int WORD_SIZE = 32;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
 
-    private List<byte[]> chunks = new LinkedList<>();
+    private byte[] memory = EMPTY_BYTE_ARRAY;
+    private int allocatedSize;
     private int softSize;
     private ProgramListener traceListener;
 
@@ -50,27 +58,8 @@ public class Memory implements ProgramListenerAware {
         if (size <= 0) return EMPTY_BYTE_ARRAY;
 
         extend(address, size);
-        byte[] data = new byte[size];
-
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
-
-        int toGrab = data.length;
-        int start = 0;
-
-        while (toGrab > 0) {
-            int copied = grabMax(chunkIndex, chunkOffset, toGrab, data, start);
-
-            // read next chunk from the start
-            ++chunkIndex;
-            chunkOffset = 0;
 
-            // mark remind
-            toGrab -= copied;
-            start += copied;
-        }
-
-        return data;
+        return Arrays.copyOfRange(memory, address, address + size);
     }
 
     public void write(int address, byte[] data, int dataSize, boolean limited) {
@@ -81,27 +70,14 @@ public class Memory implements ProgramListenerAware {
         if (!limited)
             extend(address, dataSize);
 
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
-
         int toCapture = 0;
         if (limited)
             toCapture = (address + dataSize > softSize) ? softSize - address : dataSize;
         else
             toCapture = dataSize;
 
-        int start = 0;
-        while (toCapture > 0) {
-            int captured = captureMax(chunkIndex, chunkOffset, toCapture, data, start);
-
-            // capture next chunk
-            ++chunkIndex;
-            chunkOffset = 0;
-
-            // mark remind
-            toCapture -= captured;
-            start += captured;
-        }
+        if (toCapture > 0)
+            System.arraycopy(data, 0, memory, address, toCapture);
 
         if (traceListener != null) traceListener.onMemoryWrite(address, data, dataSize);
     }
@@ -119,7 +95,7 @@ public class Memory implements ProgramListenerAware {
 
         int toAllocate = newSize - internalSize();
         if (toAllocate > 0) {
-            addChunks((int) ceil((double) toAllocate / CHUNK_SIZE));
+            allocate((int) ceil((double) toAllocate / CHUNK_SIZE) * CHUNK_SIZE);
         }
 
         toAllocate = newSize - softSize;
@@ -137,13 +113,7 @@ public class Memory implements ProgramListenerAware {
 
     // just access expecting all data valid
     public byte readByte(int address) {
-
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
-
-        byte[] chunk = chunks.get(chunkIndex);
-
-        return chunk[chunkOffset];
+        return memory[address];
     }
 
     @Override
@@ -181,35 +151,29 @@ public class Memory implements ProgramListenerAware {
     }
 
     public int internalSize() {
-        return chunks.size() * CHUNK_SIZE;
+        return allocatedSize;
     }
 
+    /**
+     * getChunks returns a copy of the allocated memory, split in chunks
+     *
+     * @return the list of chunks
+     */
     public List<byte[]> getChunks() {
-        return new LinkedList<>(chunks);
-    }
+        List<byte[]> chunks = new ArrayList<>();
 
-    private int captureMax(int chunkIndex, int chunkOffset, int size, byte[] src, int srcPos) {
+        for (int offset = 0; offset < allocatedSize; offset += CHUNK_SIZE)
+            chunks.add(Arrays.copyOfRange(memory, offset, offset + CHUNK_SIZE));
 
-        byte[] chunk = chunks.get(chunkIndex);
-        int toCapture = min(size, chunk.length - chunkOffset);
-
-        System.arraycopy(src, srcPos, chunk, chunkOffset, toCapture);
-        return toCapture;
+        return chunks;
     }
 
-    private int grabMax(int chunkIndex, int chunkOffset, int size, byte[] dest, int destPos) {
-
-        byte[] chunk = chunks.get(chunkIndex);
-        int toGrab = min(size, chunk.length - chunkOffset);
+    private void allocate(int size) {
+        int newSize = allocatedSize + size;
 
-        System.arraycopy(chunk, chunkOffset, dest, destPos, toGrab);
+        if (newSize > memory.length)
+            memory = Arrays.copyOf(memory, Math.max(newSize, (int) Math.min(2L * memory.length, MAX_CAPACITY)));
 
-        return toGrab;
-    }
-
-    private void addChunks(int num) {
-        for (int i = 0; i < num; ++i) {
-            chunks.add(new byte[CHUNK_SIZE]);
-        }
+        allocatedSize = newSize;
     }
 }
@@ -22,6 +22,9 @@ package org.ethereum.vm.program;
 import co.rsk.peg.Bridge;
 import co.rsk.remasc.RemascContract;
 import co.rsk.vm.BitSet;
+import co.rsk.vm.CodeAnalysis;
+import co.rsk.vm.CodeAnalysisCache;
+import co.rsk.vm.StaticBlocks;
 import org.ethereum.core.AccountState;
 import org.ethereum.core.Block;
 import org.ethereum.core.Repository;
@@ -78,7 +81,12 @@ public class Program {
     public static final long MAX_MEMORY = (1<<30);
 
     //Max size for stack checks
-    private static final int MAX_STACKSIZE = 1024;
+    private static final int MAX_STACKSIZE = Stack.MAX_SIZE;
+
+    // Max number of analyzed contract codes kept by code hash
+    private static final int MAX_CODE_ANALYSES = 1024;
+
+    private static final CodeAnalysisCache codeAnalysisCache = new CodeAnalysisCache(MAX_CODE_ANALYSES);
 
     private Transaction transaction;
 
@@ -93,10 +101,15 @@ public class Program {
     private Memory memory;
     private Storage storage;
 
+    // Values of the owner storage slots loaded or saved by this program, zero for empty slots.
+    // They are cleared before any call or create, because the callee can change the storage
+    private final Map<DataWord, DataWord> storageCache = new HashMap<>();
+
     private ProgramResult result = new ProgramResult();
     private ProgramTrace trace = new ProgramTrace();
 
     private byte[] ops;
+    private byte[] codeHash;
     private int pc;
     private byte lastOp;
     private byte previouslyExecutedOp;
@@ -106,6 +119,7 @@ public class Program {
     private int startAddr;
 
     private BitSet jumpdest;
+    private CodeAnalysis codeAnalysis;
     /**********************************************************************************************************
      * About DataWord Pool:
      *---------------------------------------------------------------------------------------------------------
@@ -176,16 +190,28 @@ public class Program {
     boolean isGasLogEnabled;
 
     public Program(byte[] ops, ProgramInvoke programInvoke) {
+        this(ops, null, programInvoke);
+    }
+
+    /**
+     * Creates a program running a contract code with a known hash,
+     * so the analysis of the code is shared with other programs running the same code
+     *
+     * @param ops           the contract code
+     * @param codeHash      the sha3 of the code, from the account state, or null if unknown
+     * @param programInvoke the invoke context
+     */
+    public Program(byte[] ops, byte[] codeHash, ProgramInvoke programInvoke) {
         isLogEnabled = logger.isInfoEnabled();
         isGasLogEnabled =gasLogger.isInfoEnabled();
 
         this.invoke = programInvoke;
 
         this.ops = nullToEmpty(ops);
+        this.codeHash = codeHash;
 
         this.memory = setupProgramListener(new Memory());
         this.stack = setupProgramListener(new Stack());
-        this.stack.ensureCapacity(1024); // faster?
         this.storage = setupProgramListener(new Storage(programInvoke));
         this.trace = new ProgramTrace(programInvoke);
 
@@ -202,7 +228,11 @@ public class Program {
     }
 
     public Program(byte[] ops, ProgramInvoke programInvoke, Transaction transaction) {
-        this(ops, programInvoke);
+        this(ops, null, programInvoke, transaction);
+    }
+
+    public Program(byte[] ops, byte[] codeHash, ProgramInvoke programInvoke, Transaction transaction) {
+        this(ops, codeHash, programInvoke);
         this.transaction = transaction;
     }
 
@@ -558,6 +588,7 @@ public class Program {
 
     @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
     public void createContract(DataWord value, DataWord memStart, DataWord memSize) {
+        storageCache.clear();
 
         if (getCallDeep() == MAX_DEPTH) {
             stackPushZero();
@@ -744,6 +775,7 @@ public class Program {
      * @param msg is the message call object
      */
     public void callToAddress(MessageCall msg) {
+        storageCache.clear();
 
         if (getCallDeep() == MAX_DEPTH) {
             stackPushZero();
@@ -818,7 +850,7 @@ public class Program {
 
         boolean callResult;
         if (isNotEmpty(programCode)) {
-            callResult = executeCode(msg,contextAddress, contextBalance,internalTx,track,programCode,senderAddress,data);
+            callResult = executeCode(msg,contextAddress, contextBalance,internalTx,track,programCode,dstState.getCodeHash(),senderAddress,data);
         }
         else {
             track.commit();
@@ -839,6 +871,7 @@ public class Program {
             InternalTransaction internalTx,
             Repository track,
             byte[] programCode,
+            byte[] codeHash,
             byte[] senderAddress,
             byte[] data ) {
 
@@ -850,7 +883,7 @@ public class Program {
                 limitToMaxLong(msg.getGas()), contextBalance, data, track, this.invoke.getBlockStore(), byTestingSuite());
 
         VM vm = new VM();
-        Program program = new Program(programCode, programInvoke, internalTx);
+        Program program = new Program(programCode, codeHash, programInvoke, internalTx);
         vm.play(program);
         childResult  = program.getResult();
 
@@ -967,6 +1000,7 @@ public class Program {
         }
 
         getStorage().addStorageRow(getOwnerAddressLast20Bytes(), keyWord, valWord);
+        storageCache.put(keyWord.clone(), valWord.clone());
     }
 
     public byte[] getCode() {
@@ -1040,7 +1074,15 @@ public class Program {
     }
 
     public DataWord storageLoad(DataWord key) {
-        return getStorage().getStorageValue(getOwnerAddressLast20Bytes(), key);
+        DataWord value = storageCache.get(key);
+
+        if (value != null)
+            return value.isZero() ? null : value.clone();
+
+        value = getStorage().getStorageValue(getOwnerAddressLast20Bytes(), key);
+        storageCache.put(key.clone(), value == null ? DataWord.ZERO : value.clone());
+
+        return value;
     }
 
     public DataWord getPrevHash() {
@@ -1226,6 +1268,18 @@ public class Program {
     }
 
     public void precompile() {
+        CodeAnalysis analysis = codeHash == null ? null : codeAnalysisCache.get(codeHash, ops.length);
+
+        if (analysis != null) {
+            exeVersion = analysis.getExeVersion();
+            scriptVersion = analysis.getScriptVersion();
+            startAddr = analysis.getStartAddr();
+            pc = startAddr;
+            jumpdest = analysis.getJumpdest();
+            codeAnalysis = analysis;
+            return;
+        }
+
         int i = 0;
         exeVersion = 0;
         scriptVersion = 0;
@@ -1233,6 +1287,19 @@ public class Program {
         pc = 0;
         i = processAndSkipCodeHeader(i);
         computeJumpDests(i);
+
+        codeAnalysis = new CodeAnalysis(ops.length, exeVersion, scriptVersion, startAddr, jumpdest);
+
+        if (codeHash != null)
+            codeAnalysisCache.put(codeHash, codeAnalysis);
+    }
+
+    public StaticBlocks getStaticBlocks() {
+        return codeAnalysis.getStaticBlocks(ops);
+    }
+
+    public static CodeAnalysisCache getCodeAnalysisCache() {
+        return codeAnalysisCache;
     }
 
     public void computeJumpDests(int i) {
@@ -1411,6 +1478,7 @@ public class Program {
     }
 
     public void callToPrecompiledAddress(MessageCall msg, PrecompiledContract contract) {
+        storageCache.clear();
 
         if (getCallDeep() == MAX_DEPTH) {
             stackPushZero();
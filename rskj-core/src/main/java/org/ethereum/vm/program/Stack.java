@@ -23,7 +23,20 @@ import org.ethereum.vm.DataWord;
 import org.ethereum.vm.program.listener.ProgramListener;
 import org.ethereum.vm.program.listener.ProgramListenerAware;
 
-public class Stack extends java.util.Stack<DataWord> implements ProgramListenerAware {
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Stack is the operand stack of a program, backed by a fixed capacity array
+ *
+ * It is not synchronized, and it does not check the bounds: the VM verifies
+ * the stack size once for each opcode, before executing it
+ */
+public class Stack implements ProgramListenerAware, Iterable<DataWord> {
+    public static final int MAX_SIZE = 1024;
+
+    private final DataWord[] elements = new DataWord[MAX_SIZE];
+    private int size;
 
     private ProgramListener traceListener;
 
@@ -32,27 +45,59 @@ public class Stack extends java.util.Stack<DataWord> implements ProgramListenerA
         this.traceListener = listener;
     }
 
-    @Override
-    public synchronized DataWord pop() {
+    public DataWord pop() {
         if (traceListener != null) traceListener.onStackPop();
-        return super.pop();
+        DataWord item = elements[--size];
+        elements[size] = null;
+        return item;
     }
 
-    @Override
     public DataWord push(DataWord item) {
         if (traceListener != null) traceListener.onStackPush(item);
-        return super.push(item);
+        elements[size++] = item;
+        return item;
+    }
+
+    public DataWord peek() {
+        return elements[size - 1];
+    }
+
+    public DataWord get(int index) {
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
     }
 
     public void swap(int from, int to) {
         if (isAccessible(from) && isAccessible(to) && (from != to)) {
             if (traceListener != null) traceListener.onStackSwap(from, to);
-            DataWord tmp = get(from);
-            set(from, set(to, tmp));
+            DataWord tmp = elements[from];
+            elements[from] = elements[to];
+            elements[to] = tmp;
         }
     }
 
+    public DataWord[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public Iterator<DataWord> iterator() {
+        return Arrays.asList(toArray()).iterator();
+    }
+
     private boolean isAccessible(int from) {
-        return from >= 0 && from < size();
+        return from >= 0 && from < size;
     }
 }
@@ -220,6 +220,11 @@ public class Storage implements Repository, ProgramListenerAware {
         return repository.getRoot();
     }
 
+    @Override
+    public byte[] calculateRoot() {
+        return repository.calculateRoot();
+    }
+
     @Override
     public void loadAccount(byte[] addr, Map<ByteArrayWrapper, AccountState> cacheAccounts, Map<ByteArrayWrapper, ContractDetails> cacheDetails) {
         repository.loadAccount(addr, cacheAccounts, cacheDetails);
@@ -0,0 +1,284 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ethereum.vm.trace;
+
+import org.ethereum.listener.EthereumListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+import static java.lang.System.getProperty;
+import static org.ethereum.config.SystemProperties.CONFIG;
+import static org.ethereum.vm.VMUtils.closeQuietly;
+import static org.ethereum.vm.VMUtils.zipAndEncode;
+import static org.springframework.util.StringUtils.isEmpty;
+
+/**
+ * ProgramTraceWriter serializes and saves the program traces in a background thread,
+ * so the transaction execution only enqueues the collected trace
+ *
+ * The queue is bounded: when it is full, the executing thread waits for the writer.
+ * The traces are saved one file per transaction (the original layout) or, in per block mode,
+ * appended as JSON lines to a gzip file per block. Without a directory, the traces are only
+ * serialized for the listener, that is notified from the writer thread
+ *
+ * A block file is truncated at its first write in this writer, or when one of its transactions
+ * is written again, so the file has only the traces of the last execution of the block
+ *
+ * The writer created by getInstance is closed by a shutdown hook, so the enqueued traces
+ * are saved before the node exits
+ */
+public class ProgramTraceWriter {
+    private static final Logger logger = LoggerFactory.getLogger("vmtrace");
+
+    private static ProgramTraceWriter instance;
+
+    private static final int MAX_BLOCK_FILES = 16;
+
+    private final File dir;
+    private final boolean perBlock;
+    private final boolean compressed;
+    private final Set<String> addresses = new HashSet<>();
+    private final BlockingQueue<Entry> queue;
+    private final Thread thread;
+
+    // transactions written to the last block files, only used by the writer thread
+    private final Map<File, Set<String>> blockTransactions = new LinkedHashMap<File, Set<String>>(MAX_BLOCK_FILES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, Set<String>> eldest) {
+            return size() > MAX_BLOCK_FILES;
+        }
+    };
+
+    private File currentFile;
+    private OutputStream currentStream;
+    private int pending;
+
+    public ProgramTraceWriter(File dir, boolean perBlock, boolean compressed, int queueSize) {
+        this(dir, perBlock, compressed, queueSize, Collections.emptyList());
+    }
+
+    public ProgramTraceWriter(File dir, boolean perBlock, boolean compressed, int queueSize, Collection<String> addresses) {
+        for (String address : addresses)
+            this.addresses.add(address.toLowerCase());
+
+        this.dir = dir;
+        this.perBlock = perBlock;
+        this.compressed = compressed;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.thread = new Thread(this::run, "ProgramTraceWriter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * getInstance returns the writer configured by vm.structured, creating it at first use
+     */
+    public static synchronized ProgramTraceWriter getInstance() {
+        if (instance == null) {
+            File dir = isEmpty(CONFIG.vmTraceDir()) ? null : new File(String.format("%s/%s/%s", getProperty("user.dir"), CONFIG.databaseDir(), CONFIG.vmTraceDir()));
+            instance = new ProgramTraceWriter(dir, CONFIG.vmTracePerBlock(), CONFIG.vmTraceCompressed(), CONFIG.vmTraceQueueSize(), CONFIG.vmTraceAddresses());
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::close, "ProgramTraceWriterShutdown"));
+        }
+
+        return instance;
+    }
+
+    /**
+     * isTraced checks the address filter
+     *
+     * @param address   the receiver or the created contract address of a transaction
+     *
+     * @return  true if there is no filter, or the address is in it
+     */
+    public boolean isTraced(byte[] address) {
+        return addresses.isEmpty() || (address != null && addresses.contains(Hex.toHexString(address)));
+    }
+
+    /**
+     * submit enqueues a transaction trace, waiting if the queue is full
+     *
+     * @param blockNumber   the number of the executing block
+     * @param blockHash     the hash of the executing block, in hexadecimal
+     * @param txHash        the transaction hash, in hexadecimal
+     * @param trace         the complete program trace
+     * @param listener      the listener to notify with the serialized trace, or null
+     */
+    public void submit(long blockNumber, String blockHash, String txHash, ProgramTrace trace, EthereumListener listener) {
+        synchronized (this) {
+            pending++;
+        }
+
+        try {
+            queue.put(new Entry(blockNumber, blockHash, txHash, trace, listener));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            completed();
+            logger.warn("Program trace of transaction {} discarded", txHash);
+        }
+    }
+
+    /**
+     * flush waits until the enqueued traces are saved
+     */
+    public synchronized void flush() throws InterruptedException {
+        while (pending > 0)
+            wait();
+    }
+
+    /**
+     * close saves the enqueued traces, closes the current block file and stops the writer thread
+     */
+    public void close() {
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Program traces not saved at close");
+        }
+
+        thread.interrupt();
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void completed() {
+        pending--;
+        notifyAll();
+    }
+
+    private void run() {
+        while (true) {
+            Entry entry;
+
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                closeCurrentStream();
+                return;
+            }
+
+            try {
+                write(entry);
+            } catch (Exception e) {
+                logger.error("Cannot save program trace of transaction {}", entry.txHash, e);
+                closeCurrentStream();
+            } finally {
+                if (queue.isEmpty())
+                    closeCurrentStream();
+
+                completed();
+            }
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        String content;
+
+        if (perBlock) {
+            content = String.format("{\"transactionHash\":\"%s\",\"trace\":%s}%n", entry.txHash, entry.trace.asJsonString(false));
+
+            if (dir != null)
+                getBlockStream(entry).write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        else {
+            content = entry.trace.toString();
+
+            if (compressed)
+                content = zipAndEncode(content);
+
+            if (dir != null)
+                writeFile(new File(dir, entry.txHash + ".json"), content);
+        }
+
+        if (entry.listener != null)
+            entry.listener.onVMTraceCreated(entry.txHash, content);
+    }
+
+    private OutputStream getBlockStream(Entry entry) throws IOException {
+        File file = new File(dir, String.format("%d-%s.json.gz", entry.blockNumber, entry.blockHash));
+
+        Set<String> transactions = blockTransactions.get(file);
+        boolean truncate = transactions == null || transactions.contains(entry.txHash);
+
+        if (truncate) {
+            transactions = new HashSet<>();
+            blockTransactions.put(file, transactions);
+        }
+
+        transactions.add(entry.txHash);
+
+        if (truncate || !file.equals(currentFile)) {
+            closeCurrentStream();
+            dir.mkdirs();
+            // every stream appends a new gzip member, a file with several members is a valid gzip file
+            currentStream = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file, !truncate)));
+            currentFile = file;
+        }
+
+        return currentStream;
+    }
+
+    private void closeCurrentStream() {
+        closeQuietly(currentStream);
+        currentStream = null;
+        currentFile = null;
+    }
+
+    private static void writeFile(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static class Entry {
+        private final long blockNumber;
+        private final String blockHash;
+        private final String txHash;
+        private final ProgramTrace trace;
+        private final EthereumListener listener;
+
+        Entry(long blockNumber, String blockHash, String txHash, ProgramTrace trace, EthereumListener listener) {
+            this.blockNumber = blockNumber;
+            this.blockHash = blockHash;
+            this.txHash = txHash;
+            this.trace = trace;
+            this.listener = listener;
+        }
+    }
+}
@@ -140,8 +140,34 @@ public class NetworkStateExporterTest {
     }
 
 
+    @Test
+    public void testAccountsInSeveralRanges() throws Exception {
+        Repository repository = new RepositoryImpl(new TrieStoreImpl(new HashMapDB()));
+
+        for (int k = 1; k <= 100; k++) {
+            byte[] address = new byte[20];
+            address[19] = (byte) k;
+            repository.createAccount(address);
+            repository.addBalance(address, BigInteger.valueOf(k));
+        }
+
+        Map result = writeAndReadJson(new NetworkStateExporter(repository, 10));
+
+        Assert.assertEquals(100, result.keySet().size());
+
+        for (int k = 1; k <= 100; k++) {
+            byte[] address = new byte[20];
+            address[19] = (byte) k;
+            Map value = (Map) result.get(Hex.toHexString(address));
+            Assert.assertEquals(String.valueOf(k), value.get("balance"));
+        }
+    }
+
     private Map writeAndReadJson(Repository repository) throws Exception {
-        NetworkStateExporter nse = new NetworkStateExporter(repository);
+        return writeAndReadJson(new NetworkStateExporter(repository));
+    }
+
+    private Map writeAndReadJson(NetworkStateExporter nse) throws Exception {
         Assert.assertTrue(nse.exportStatus(jsonFileName));
 
         InputStream inputStream = new FileInputStream(jsonFileName);
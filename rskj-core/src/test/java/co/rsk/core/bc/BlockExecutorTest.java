@@ -36,6 +36,7 @@ import org.ethereum.net.p2p.HelloMessage;
 import org.ethereum.net.rlpx.Node;
 import org.ethereum.net.server.Channel;
 import org.ethereum.util.RLP;
+import org.ethereum.vm.DataWord;
 import org.junit.Assert;
 import org.junit.Test;
 import org.spongycastle.util.BigIntegers;
@@ -205,6 +206,59 @@ public class BlockExecutorTest {
         Assert.assertEquals(BigInteger.valueOf(60000 - 42000 - 20), accountState.getBalance());
     }
 
+    @Test
+    public void executeBlockWithTwoTransactionsSavingStateOnlyOnce() {
+        TrieStoreImpl store = new TrieStoreImpl(new HashMapDB());
+        Repository repository = new RepositoryImpl(store);
+
+        Repository track = repository.startTracking();
+
+        Account account = createAccount("acctest1", track, BigInteger.valueOf(60000));
+        Account account2 = createAccount("acctest2", track, BigInteger.TEN);
+
+        track.commit();
+
+        byte[] initialRoot = repository.getRoot();
+
+        BlockExecutor executor = new BlockExecutor(repository, new BlockchainDummy(), null, null);
+
+        Transaction tx1 = createTransaction(account, account2, BigInteger.TEN, repository.getNonce(account.getAddress()));
+        Transaction tx2 = createTransaction(account, account2, BigInteger.TEN, repository.getNonce(account.getAddress()).add(BigInteger.ONE));
+        List<Transaction> txs = new ArrayList<>();
+        txs.add(tx1);
+
+        Block block1 = BlockGenerator.createChildBlock(BlockGenerator.getGenesisBlock(), txs, new ArrayList<>(), 1, null);
+
+        txs.add(tx2);
+
+        Block block2 = BlockGenerator.createChildBlock(BlockGenerator.getGenesisBlock(), txs, new ArrayList<>(), 1, null);
+
+        // the first execution saves the new contract details storage tries, in the same store
+        executor.execute(block1, initialRoot, false);
+
+        long batchCount = store.getBatchCount();
+
+        executor.execute(block1, initialRoot, false);
+
+        long batchesForOneTransaction = store.getBatchCount() - batchCount;
+        batchCount = store.getBatchCount();
+
+        BlockResult result = executor.execute(block2, initialRoot, false);
+
+        Assert.assertEquals(batchesForOneTransaction, store.getBatchCount() - batchCount);
+
+        byte[] postTxState = result.getTransactionReceipts().get(0).getPostTxState();
+
+        Assert.assertFalse(Arrays.equals(initialRoot, postTxState));
+        Assert.assertFalse(Arrays.equals(result.getStateRoot(), postTxState));
+        Assert.assertArrayEquals(result.getStateRoot(), result.getTransactionReceipts().get(1).getPostTxState());
+
+        Repository finalRepository = repository.getSnapshotTo(result.getStateRoot());
+
+        Assert.assertEquals(BigInteger.valueOf(60000 - 42000 - 20), finalRepository.getBalance(account.getAddress()));
+        Assert.assertEquals(BigInteger.valueOf(10 + 20), finalRepository.getBalance(account2.getAddress()));
+    }
+
     @Test
     public void executeAndFillBlockWithOneTransaction() {
         TestObjects objects = generateBlockWithOneTransaction();
@@ -368,6 +422,69 @@ public class BlockExecutorTest {
         Assert.assertFalse(executor.executeAndValidate(block, parent));
     }
 
+    @Test
+    public void executeBlockInParallel() {
+        Repository repository = new RepositoryImpl(new TrieStoreImpl(new HashMapDB()));
+
+        Repository track = repository.startTracking();
+
+        List<Account> accounts = new ArrayList<>();
+
+        for (int k = 0; k < 10; k++)
+            accounts.add(createAccount("acctest" + k, track, BigInteger.valueOf(1000000)));
+
+        // increments the storage cell 0, and sets the storage cell of the caller
+        byte[] code = Hex.decode("600054600101600055333355");
+        Account counter = createAccount("counter", track, BigInteger.ZERO);
+        track.saveCode(counter.getAddress(), code);
+
+        // sets the storage cell of the caller
+        Account registry = createAccount("registry", track, BigInteger.ZERO);
+        track.saveCode(registry.getAddress(), Hex.decode("333355"));
+
+        track.commit();
+
+        byte[] root = repository.getRoot();
+        List<Transaction> txs = new ArrayList<>();
+
+        // independent transfers
+        for (int k = 0; k < 4; k++)
+            txs.add(createTransaction(accounts.get(k), accounts.get(k + 4), BigInteger.TEN, BigInteger.ZERO, 21000));
+
+        // the same sender again, and a receiver of a previous transfer as sender
+        txs.add(createTransaction(accounts.get(0), accounts.get(1), BigInteger.ONE, BigInteger.ONE, 21000));
+        txs.add(createTransaction(accounts.get(5), accounts.get(6), BigInteger.ONE, BigInteger.ZERO, 21000));
+
+        // contract calls writing the same and different storage cells
+        txs.add(createTransaction(accounts.get(2), counter, BigInteger.ZERO, BigInteger.ONE, 100000));
+        txs.add(createTransaction(accounts.get(3), counter, BigInteger.ZERO, BigInteger.ONE, 100000));
+        txs.add(createTransaction(accounts.get(7), counter, BigInteger.ZERO, BigInteger.ZERO, 100000));
+        txs.add(createTransaction(accounts.get(8), registry, BigInteger.ZERO, BigInteger.ZERO, 100000));
+        txs.add(createTransaction(accounts.get(9), registry, BigInteger.ZERO, BigInteger.ZERO, 100000));
+
+        Block block = BlockGenerator.createChildBlock(BlockGenerator.getGenesisBlock(), txs, new ArrayList<>(), 1, null);
+
+        BlockResult expected = new BlockExecutor(repository, new BlockchainDummy(), null, null, 0).execute(block, root, false);
+        BlockResult result = new BlockExecutor(repository, new BlockchainDummy(), null, null, 4).execute(block, root, false);
+
+        Assert.assertEquals(txs.size(), result.getTransactionReceipts().size());
+        Assert.assertArrayEquals(expected.getStateRoot(), result.getStateRoot());
+        Assert.assertArrayEquals(expected.getReceiptsRoot(), result.getReceiptsRoot());
+        Assert.assertArrayEquals(expected.getLogsBloom(), result.getLogsBloom());
+        Assert.assertEquals(expected.getGasUsed(), result.getGasUsed());
+        Assert.assertEquals(expected.getPaidFees(), result.getPaidFees());
+
+        for (int k = 0; k < txs.size(); k++)
+            Assert.assertArrayEquals(expected.getTransactionReceipts().get(k).getPostTxState(), result.getTransactionReceipts().get(k).getPostTxState());
+
+        Repository finalRepository = repository.getSnapshotTo(result.getStateRoot());
+
+        Assert.assertEquals(new DataWord(3), finalRepository.getStorageValue(counter.getAddress(), DataWord.ZERO));
+        Assert.assertEquals(new DataWord(accounts.get(7).getAddress()), finalRepository.getStorageValue(counter.getAddress(), new DataWord(accounts.get(7).getAddress())));
+        Assert.assertEquals(new DataWord(accounts.get(8).getAddress()), finalRepository.getStorageValue(registry.getAddress(), new DataWord(accounts.get(8).getAddress())));
+        Assert.assertEquals(new DataWord(accounts.get(9).getAddress()), finalRepository.getStorageValue(registry.getAddress(), new DataWord(accounts.get(9).getAddress())));
+    }
+
     public static TestObjects generateBlockWithOneTransaction() {
         BlockChainImpl blockchain = new BlockChainBuilder().build();
         Repository repository = blockchain.getRepository();
@@ -399,9 +516,13 @@ public class BlockExecutorTest {
     }
 
     private static Transaction createTransaction(Account sender, Account receiver, BigInteger value, BigInteger nonce) {
+        return createTransaction(sender, receiver, value, nonce, 21000);
+    }
+
+    private static Transaction createTransaction(Account sender, Account receiver, BigInteger value, BigInteger nonce, long gasLimit) {
         String toAddress = Hex.toHexString(receiver.getAddress());
         byte[] privateKeyBytes = sender.getEcKey().getPrivKeyBytes();
-        Transaction tx = Transaction.create(toAddress, value, nonce, BigInteger.ONE, BigInteger.valueOf(21000));
+        Transaction tx = Transaction.create(toAddress, value, nonce, BigInteger.ONE, BigInteger.valueOf(gasLimit));
         tx.sign(privateKeyBytes);
         return tx;
     }
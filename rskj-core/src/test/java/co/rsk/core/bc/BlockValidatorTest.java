@@ -802,6 +802,16 @@ public class BlockValidatorTest {
             return null;
         }
 
+        @Override
+        public List<BlockHeader> getHeaders(byte[] hash, int qty, int skip, boolean reverse) {
+            return null;
+        }
+
+        @Override
+        public BlockHeader getBlockHeaderByHash(byte[] hash) {
+            return block.getHeader();
+        }
+
         @Override
         public void saveBlock(Block block, BigInteger cummDifficulty, boolean mainChain) {
 
@@ -860,6 +860,114 @@ public class ContractDetailsImplTest {
                 Hex.toHexString(contractDetails_.get(new DataWord(key_13)).getData()));
     }
 
+    @Test
+    public void getEncodedAndCreateCloneUsingTrieStore() {
+        TrieStore store = new TrieStoreImpl(new HashMapDB());
+        ContractDetailsImpl details = new ContractDetailsImpl();
+        details.setAddress(randomAddress());
+        details.setCode(new byte[] { 0x01, 0x02, 0x03 });
+        details.setTrieStore(store);
+
+        for (int k = 1; k <= IN_MEMORY_STORAGE_LIMIT + 1; k++)
+            details.put(new DataWord(k), new DataWord(k * 2));
+
+        details.put(new DataWord(1), DataWord.ZERO);
+
+        Assert.assertTrue(details.usesTrieStore());
+        Assert.assertFalse(details.hasExternalStorage());
+
+        ContractDetailsImpl result = new ContractDetailsImpl(details.getEncoded(), store);
+
+        Assert.assertTrue(result.usesTrieStore());
+        Assert.assertArrayEquals(details.getStorageHash(), result.getStorageHash());
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x02, 0x03 }, result.getCode());
+        Assert.assertEquals(IN_MEMORY_STORAGE_LIMIT, result.getStorageSize());
+        Assert.assertEquals(details.getStorageKeys(), result.getStorageKeys());
+        Assert.assertNull(result.get(new DataWord(1)));
+
+        for (int k = 2; k <= IN_MEMORY_STORAGE_LIMIT + 1; k++)
+            Assert.assertEquals(new DataWord(k * 2), result.get(new DataWord(k)));
+    }
+
+    @Test
+    public void encodedSizeDoesNotDependOnStorageUsingTrieStore() {
+        TrieStore store = new TrieStoreImpl(new HashMapDB());
+        ContractDetailsImpl details = new ContractDetailsImpl();
+        details.setAddress(randomAddress());
+        details.setTrieStore(store);
+
+        details.put(DataWord.ONE, DataWord.ONE);
+
+        int length = details.getEncoded().length;
+
+        for (int k = 2; k <= 100; k++)
+            details.put(new DataWord(k), new DataWord(k));
+
+        Assert.assertEquals(length, details.getEncoded().length);
+    }
+
+    @Test
+    public void moveEncodedStorageToTrieStore() {
+        ContractDetailsImpl details = new ContractDetailsImpl();
+        details.setAddress(randomAddress());
+
+        details.put(DataWord.ONE, new DataWord(42));
+        details.put(new DataWord(2), new DataWord(144));
+
+        byte[] root = details.getStorageHash();
+
+        TrieStore store = new TrieStoreImpl(new HashMapDB());
+        ContractDetailsImpl result = new ContractDetailsImpl(details.getEncoded(), store);
+
+        Assert.assertTrue(result.usesTrieStore());
+        Assert.assertArrayEquals(root, result.getStorageHash());
+        Assert.assertEquals(2, result.getStorageSize());
+        Assert.assertEquals(details.getStorageKeys(), result.getStorageKeys());
+        Assert.assertEquals(new DataWord(42), result.get(DataWord.ONE));
+        Assert.assertEquals(new DataWord(144), result.get(new DataWord(2)));
+        Assert.assertNotNull(store.retrieve(root));
+    }
+
+    @Test
+    public void getSnapshotToPreviousRootAfterMovingToTrieStore() {
+        ContractDetailsImpl details = new ContractDetailsImpl();
+        details.setAddress(randomAddress());
+
+        details.put(DataWord.ONE, new DataWord(42));
+        details.syncStorage();
+
+        byte[] previousRoot = details.getStorageHash();
+
+        details.put(DataWord.ONE, new DataWord(43));
+        details.put(new DataWord(2), new DataWord(144));
+
+        TrieStore store = new TrieStoreImpl(new HashMapDB(), new TrieNodeCache(1 << 20));
+        ContractDetailsImpl result = new ContractDetailsImpl(details.getEncoded(), store);
+
+        Assert.assertTrue(result.usesTrieStore());
+        Assert.assertEquals(new DataWord(43), result.get(DataWord.ONE));
+
+        ContractDetails snapshot = result.getSnapshotTo(previousRoot);
+
+        Assert.assertEquals(new DataWord(42), snapshot.get(DataWord.ONE));
+        Assert.assertNull(snapshot.get(new DataWord(2)));
+    }
+
+    @Test
+    public void getSnapshotUsingTrieStore() {
+        ContractDetailsImpl details = new ContractDetailsImpl();
+        details.setTrieStore(new TrieStoreImpl(new HashMapDB()));
+
+        details.put(DataWord.ONE, new DataWord(42));
+
+        byte[] root = details.getStorageHash();
+
+        details.put(DataWord.ONE, new DataWord(43));
+
+        Assert.assertEquals(new DataWord(42), details.getSnapshotTo(root).get(DataWord.ONE));
+        Assert.assertEquals(new DataWord(43), details.getSnapshotTo(details.getStorageHash()).get(DataWord.ONE));
+    }
+
     private static byte[] randomData() {
         byte[] bytes = new byte[32];
 
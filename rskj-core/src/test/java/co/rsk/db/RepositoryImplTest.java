@@ -19,6 +19,7 @@
 package co.rsk.db;
 
 import co.rsk.trie.TrieImplHashTest;
+import co.rsk.trie.TrieNodeCache;
 import co.rsk.trie.TrieStore;
 import co.rsk.trie.TrieStoreImpl;
 import org.ethereum.core.AccountState;
@@ -602,6 +603,84 @@ public class RepositoryImplTest {
         Assert.assertTrue(repository.isExist(accAddress));
     }
 
+    @Test
+    public void flushStorageAndReopenRepositoryUsingTrieNodeCache() {
+        HashMapDB ds = new HashMapDB();
+        HashMapDB detailsDs = new HashMapDB();
+        RepositoryImpl repository = new RepositoryImpl(new TrieStoreImpl(ds, new TrieNodeCache(1 << 20)), detailsDs);
+
+        byte[] accAddress = randomAccountAddress();
+
+        Repository track = repository.startTracking();
+        track.addStorageRow(accAddress, DataWord.ONE, new DataWord(42));
+        track.commit();
+        repository.flush();
+
+        track = repository.startTracking();
+        track.addStorageRow(accAddress, new DataWord(2), new DataWord(144));
+        track.commit();
+        repository.flush();
+
+        byte[] root = repository.getRoot();
+
+        RepositoryImpl reopened = new RepositoryImpl(new TrieStoreImpl(ds, new TrieNodeCache(1 << 20)), detailsDs);
+        reopened.syncToRoot(root);
+
+        Assert.assertEquals(new DataWord(42), reopened.getStorageValue(accAddress, DataWord.ONE));
+        Assert.assertEquals(new DataWord(144), reopened.getStorageValue(accAddress, new DataWord(2)));
+    }
+
+    @Test
+    public void readWhileRepositoryIsLocked() throws InterruptedException {
+        TrieStore store = new TrieStoreImpl(new HashMapDB());
+        RepositoryImpl repository = new RepositoryImpl(store);
+
+        byte[] accAddress = randomAccountAddress();
+
+        Repository track = repository.startTracking();
+        track.addBalance(accAddress, BigInteger.TEN);
+        track.addStorageRow(accAddress, DataWord.ONE, new DataWord(42));
+        track.commit();
+
+        byte[] root = repository.getRoot();
+        BigInteger[] balances = new BigInteger[2];
+        DataWord[] values = new DataWord[1];
+
+        Thread reader = new Thread(() -> {
+            balances[0] = repository.getBalance(accAddress);
+            values[0] = repository.getStorageValue(accAddress, DataWord.ONE);
+            balances[1] = repository.getSnapshotTo(root).getBalance(accAddress);
+        });
+
+        synchronized (repository) {
+            reader.start();
+            reader.join(10000);
+
+            Assert.assertFalse(reader.isAlive());
+        }
+
+        Assert.assertEquals(BigInteger.TEN, balances[0]);
+        Assert.assertEquals(new DataWord(42), values[0]);
+        Assert.assertEquals(BigInteger.TEN, balances[1]);
+    }
+
+    @Test
+    public void snapshotIsNotAffectedByUpdates() {
+        TrieStore store = new TrieStoreImpl(new HashMapDB());
+        RepositoryImpl repository = new RepositoryImpl(store);
+
+        byte[] accAddress = randomAccountAddress();
+
+        repository.addBalance(accAddress, BigInteger.TEN);
+
+        Repository snapshot = repository.getSnapshotTo(repository.getRoot());
+
+        repository.addBalance(accAddress, BigInteger.ONE);
+
+        Assert.assertEquals(BigInteger.TEN, snapshot.getBalance(accAddress));
+        Assert.assertEquals(BigInteger.valueOf(11), repository.getBalance(accAddress));
+    }
+
     private static byte[] randomAccountAddress() {
         byte[] bytes = new byte[20];
 
@@ -0,0 +1,149 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.db;
+
+import co.rsk.trie.TrieStoreImpl;
+import co.rsk.trie.TrieStorePruner;
+import org.ethereum.core.Block;
+import org.ethereum.core.Repository;
+import org.ethereum.datasource.HashMapDB;
+import org.ethereum.db.BlockStore;
+import org.ethereum.vm.DataWord;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.ethereum.TestUtils.randomAddress;
+
+public class StatePrunerTest {
+    @Test
+    public void pruneOnlyAtInterval() {
+        BlockStore blockStore = Mockito.mock(BlockStore.class);
+        Mockito.when(blockStore.getChainBlocksByNumber(Mockito.anyLong())).thenReturn(Collections.emptyList());
+
+        StatePruner pruner = new StatePruner(blockStore, null, new TrieStorePruner(new TrieStoreImpl(new HashMapDB())), 2, 10, Runnable::run);
+
+        Assert.assertFalse(pruner.onBestBlock(createBlock(1, null)));
+        Assert.assertFalse(pruner.onBestBlock(createBlock(15, null)));
+        Assert.assertTrue(pruner.onBestBlock(createBlock(20, null)));
+        Assert.assertFalse(pruner.isRunning());
+    }
+
+    @Test
+    public void keepStatesOfLastBlocks() {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+        RepositoryImpl repository = new RepositoryImpl(store);
+        BlockStore blockStore = Mockito.mock(BlockStore.class);
+
+        List<byte[]> roots = new ArrayList<>();
+
+        for (int k = 0; k < 4; k++) {
+            repository.addBalance(randomAddress(), BigInteger.TEN);
+            roots.add(repository.getRoot());
+        }
+
+        byte[] uncleAddress = randomAddress();
+        Repository uncle = repository.getSnapshotTo(roots.get(2));
+        uncle.addBalance(uncleAddress, BigInteger.ONE);
+        byte[] uncleRoot = uncle.getRoot();
+
+        for (int k = 0; k < 3; k++) {
+            List<Block> blocks = Collections.singletonList(createBlock(k + 1, roots.get(k)));
+            Mockito.when(blockStore.getChainBlocksByNumber(k + 1)).thenReturn(blocks);
+        }
+
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(createBlock(4, roots.get(3)));
+        blocks.add(createBlock(4, uncleRoot));
+        Mockito.when(blockStore.getChainBlocksByNumber(4)).thenReturn(blocks);
+
+        StatePruner pruner = new StatePruner(blockStore, repository.getDetailsDataStore(), new TrieStorePruner(store), 2, 4, Runnable::run);
+
+        Assert.assertTrue(pruner.onBestBlock(createBlock(4, roots.get(3))));
+
+        Assert.assertNull(map.get(roots.get(0)));
+        Assert.assertNull(map.get(roots.get(1)));
+        Assert.assertNotNull(map.get(roots.get(2)));
+        Assert.assertNotNull(map.get(roots.get(3)));
+        Assert.assertNotNull(map.get(uncleRoot));
+
+        Repository result = new RepositoryImpl(new TrieStoreImpl(map)).getSnapshotTo(uncleRoot);
+
+        Assert.assertEquals(BigInteger.ONE, result.getBalance(uncleAddress));
+    }
+
+    @Test
+    public void keepStoragesOfLastBlocks() {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+        RepositoryImpl repository = new RepositoryImpl(store);
+        BlockStore blockStore = Mockito.mock(BlockStore.class);
+        byte[] address = randomAddress();
+
+        Repository track = repository.startTracking();
+        track.addStorageRow(address, DataWord.ONE, new DataWord(42));
+        track.commit();
+
+        byte[] root1 = repository.getRoot();
+        byte[] storageRoot1 = repository.getAccountState(address).getStateRoot();
+        repository.flush();
+
+        track = repository.startTracking();
+        track.addStorageRow(address, DataWord.ONE, new DataWord(43));
+        track.addStorageRow(address, new DataWord(2), new DataWord(44));
+        track.commit();
+
+        byte[] root2 = repository.getRoot();
+        byte[] storageRoot2 = repository.getAccountState(address).getStateRoot();
+        repository.flush();
+
+        List<Block> blocks1 = Collections.singletonList(createBlock(1, root1));
+        List<Block> blocks2 = Collections.singletonList(createBlock(2, root2));
+        Mockito.when(blockStore.getChainBlocksByNumber(1)).thenReturn(blocks1);
+        Mockito.when(blockStore.getChainBlocksByNumber(2)).thenReturn(blocks2);
+
+        StatePruner pruner = new StatePruner(blockStore, repository.getDetailsDataStore(), new TrieStorePruner(store), 1, 2, Runnable::run);
+
+        Assert.assertTrue(pruner.onBestBlock(createBlock(2, root2)));
+
+        Assert.assertNull(map.get(root1));
+        Assert.assertNull(map.get(storageRoot1));
+        Assert.assertNotNull(map.get(storageRoot2));
+
+        Repository result = new RepositoryImpl(new TrieStoreImpl(map), repository.getDetailsDataStore()).getSnapshotTo(root2);
+
+        Assert.assertEquals(new DataWord(43), result.getStorageValue(address, DataWord.ONE));
+        Assert.assertEquals(new DataWord(44), result.getStorageValue(address, new DataWord(2)));
+        Assert.assertEquals(2, result.getContractDetails(address).getStorageSize());
+        Assert.assertEquals(2, result.getContractDetails(address).getStorageKeys().size());
+    }
+
+    private static Block createBlock(long number, byte[] stateRoot) {
+        Block block = Mockito.mock(Block.class);
+        Mockito.when(block.getNumber()).thenReturn(number);
+        Mockito.when(block.getStateRoot()).thenReturn(stateRoot);
+        return block;
+    }
+}
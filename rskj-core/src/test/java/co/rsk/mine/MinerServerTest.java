@@ -60,6 +60,7 @@ public class MinerServerTest {
         Repository repository = Mockito.mock(Repository.class);
         Mockito.when(repository.getSnapshotTo(Mockito.any())).thenReturn(repository);
         Mockito.when(repository.getRoot()).thenReturn(blockchain.getRepository().getRoot());
+        Mockito.when(repository.calculateRoot()).thenReturn(blockchain.getRepository().getRoot());
         Mockito.when(repository.startTracking()).thenReturn(repository);
         Mockito.when(ethereumImpl.getRepository()).thenReturn((org.ethereum.facade.Repository)
                 blockchain.getRepository());
@@ -0,0 +1,318 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package co.rsk.net;
+
+import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.net.messages.GetBlocksMessage;
+import co.rsk.net.messages.MessageType;
+import co.rsk.net.simples.SimpleMessageSender;
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BlockDownloaderTest {
+    @Test
+    public void addHeadersFollowingKnownBlock() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 10);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+
+        Assert.assertEquals(10, downloader.addHeaders(getHeaders(blocks), hash -> Arrays.equals(hash, genesis.getHash())));
+
+        Assert.assertEquals(10, downloader.getPendingSize());
+        Assert.assertEquals(10, downloader.getLastHeaderNumber());
+        Assert.assertArrayEquals(blocks.get(9).getHash(), downloader.getLastHeaderHash());
+        Assert.assertTrue(downloader.isRequested(blocks.get(0).getHash()));
+        Assert.assertTrue(downloader.isDownloading());
+
+        // the queued headers are not added again
+        Assert.assertEquals(0, downloader.addHeaders(getHeaders(blocks), hash -> false));
+        Assert.assertEquals(10, downloader.getPendingSize());
+    }
+
+    @Test
+    public void discardHeadersNotFollowingTheChain() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 10);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+
+        Assert.assertEquals(0, downloader.addHeaders(getHeaders(blocks.subList(1, 10)), hash -> Arrays.equals(hash, genesis.getHash())));
+
+        List<BlockHeader> headers = getHeaders(blocks.subList(0, 3));
+        headers.addAll(getHeaders(blocks.subList(4, 6)));
+
+        Assert.assertEquals(3, downloader.addHeaders(headers, hash -> Arrays.equals(hash, genesis.getHash())));
+        Assert.assertEquals(3, downloader.getLastHeaderNumber());
+        Assert.assertFalse(downloader.isRequested(blocks.get(4).getHash()));
+    }
+
+    @Test
+    public void assignBatchesToPeers() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 10);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+        SimpleMessageSender sender1 = createSender(1);
+        SimpleMessageSender sender2 = createSender(2);
+
+        downloader.addPeer(sender1);
+        downloader.addPeer(sender2);
+        downloader.addHeaders(getHeaders(blocks), hash -> Arrays.equals(hash, genesis.getHash()));
+
+        downloader.assign(0);
+
+        Assert.assertEquals(2, downloader.getPendingSize());
+        Assert.assertEquals(1, sender1.getMessages().size());
+        Assert.assertEquals(1, sender2.getMessages().size());
+        Assert.assertEquals(MessageType.GET_BLOCKS_MESSAGE, sender1.getMessages().get(0).getMessageType());
+
+        List<byte[]> hashes1 = ((GetBlocksMessage) sender1.getMessages().get(0)).getHashes();
+        List<byte[]> hashes2 = ((GetBlocksMessage) sender2.getMessages().get(0)).getHashes();
+
+        Assert.assertEquals(4, hashes1.size());
+        Assert.assertEquals(4, hashes2.size());
+
+        // busy peers don't get another batch
+        downloader.assign(0);
+
+        Assert.assertEquals(2, downloader.getPendingSize());
+        Assert.assertEquals(1, sender1.getMessages().size());
+        Assert.assertEquals(1, sender2.getMessages().size());
+    }
+
+    @Test
+    public void receiveBlocksAndRequeueMissing() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 4);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+        SimpleMessageSender sender = createSender(1);
+
+        downloader.addPeer(sender);
+        downloader.addHeaders(getHeaders(blocks), hash -> Arrays.equals(hash, genesis.getHash()));
+        downloader.assign(0);
+
+        Assert.assertEquals(0, downloader.getPendingSize());
+
+        List<Block> received = new ArrayList<>();
+        received.add(blocks.get(2));
+        received.add(blocks.get(0));
+        received.add(BlockGenerator.createChildBlock(genesis));
+
+        List<Block> result = downloader.onBlocks(sender.getNodeID(), received, 100);
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertSame(blocks.get(0), result.get(0));
+        Assert.assertSame(blocks.get(2), result.get(1));
+        Assert.assertFalse(downloader.isRequested(blocks.get(0).getHash()));
+        Assert.assertTrue(downloader.isRequested(blocks.get(1).getHash()));
+        Assert.assertEquals(2, downloader.getPendingSize());
+        Assert.assertTrue(downloader.getScore(sender.getNodeID()) > 0);
+
+        downloader.assign(100);
+
+        Assert.assertEquals(2, sender.getMessages().size());
+
+        List<byte[]> hashes = ((GetBlocksMessage) sender.getMessages().get(1)).getHashes();
+
+        Assert.assertEquals(2, hashes.size());
+        Assert.assertArrayEquals(blocks.get(1).getHash(), hashes.get(0));
+        Assert.assertArrayEquals(blocks.get(3).getHash(), hashes.get(1));
+    }
+
+    @Test
+    public void ignoreUnrequestedBlocks() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 4);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+        SimpleMessageSender sender = createSender(1);
+
+        downloader.addPeer(sender);
+
+        Assert.assertTrue(downloader.onBlocks(sender.getNodeID(), blocks, 0).isEmpty());
+        Assert.assertTrue(downloader.onBlocks(createSender(2).getNodeID(), blocks, 0).isEmpty());
+    }
+
+    @Test
+    public void reassignTimedOutRequestToFasterPeer() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 8);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+        SimpleMessageSender fast = createSender(1);
+        SimpleMessageSender slow = createSender(2);
+
+        downloader.addPeer(fast);
+        downloader.addPeer(slow);
+        downloader.addHeaders(getHeaders(blocks), hash -> Arrays.equals(hash, genesis.getHash()));
+        downloader.assign(0);
+
+        Assert.assertEquals(4, downloader.onBlocks(fast.getNodeID(), getBlocks(blocks, fast), 10).size());
+        Assert.assertEquals(0, downloader.getPendingSize());
+
+        downloader.checkTimeouts(500);
+        Assert.assertEquals(0, downloader.getPendingSize());
+
+        downloader.checkTimeouts(1010);
+        Assert.assertEquals(4, downloader.getPendingSize());
+        Assert.assertEquals(0, downloader.getScore(slow.getNodeID()), 0);
+
+        downloader.assign(1010);
+
+        Assert.assertEquals(0, downloader.getPendingSize());
+        Assert.assertEquals(2, fast.getMessages().size());
+        Assert.assertEquals(1, slow.getMessages().size());
+        Assert.assertArrayEquals(((GetBlocksMessage) slow.getMessages().get(0)).getHashes().get(0), ((GetBlocksMessage) fast.getMessages().get(1)).getHashes().get(0));
+    }
+
+    @Test
+    public void faultyPeerLosesPriority() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 8);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+        SimpleMessageSender sender1 = createSender(1);
+        SimpleMessageSender sender2 = createSender(2);
+
+        downloader.addPeer(sender1);
+        downloader.addPeer(sender2);
+        downloader.addHeaders(getHeaders(blocks), hash -> Arrays.equals(hash, genesis.getHash()));
+        downloader.assign(0);
+
+        downloader.onBlocks(sender1.getNodeID(), Collections.emptyList(), 10);
+        downloader.onBlocks(sender2.getNodeID(), getBlocks(blocks, sender2), 10);
+
+        Assert.assertEquals(0, downloader.getScore(sender1.getNodeID()), 0);
+        Assert.assertTrue(downloader.getScore(sender2.getNodeID()) > 0);
+        Assert.assertEquals(4, downloader.getPendingSize());
+
+        downloader.assign(10);
+
+        Assert.assertEquals(2, sender2.getMessages().size());
+        Assert.assertEquals(1, sender1.getMessages().size());
+    }
+
+    @Test
+    public void removePeerAndRequeueItsRequest() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 8);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+        SimpleMessageSender sender1 = createSender(1);
+        SimpleMessageSender sender2 = createSender(2);
+
+        downloader.addPeer(sender1);
+        downloader.addPeer(sender2);
+        downloader.addHeaders(getHeaders(blocks), hash -> Arrays.equals(hash, genesis.getHash()));
+        downloader.assign(0);
+
+        Assert.assertEquals(0, downloader.getPendingSize());
+
+        downloader.removePeer(sender1.getNodeID());
+
+        Assert.assertEquals(4, downloader.getPendingSize());
+        Assert.assertTrue(downloader.onBlocks(sender1.getNodeID(), getBlocks(blocks, sender1), 10).isEmpty());
+
+        Assert.assertEquals(4, downloader.onBlocks(sender2.getNodeID(), getBlocks(blocks, sender2), 10).size());
+
+        downloader.assign(10);
+
+        Assert.assertEquals(0, downloader.getPendingSize());
+        Assert.assertEquals(1, sender1.getMessages().size());
+        Assert.assertEquals(2, sender2.getMessages().size());
+    }
+
+    @Test
+    public void reassignTimedOutRequestOnTimer() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 4);
+        BlockDownloader downloader = new BlockDownloader(4, 1000);
+        SimpleMessageSender sender = createSender(1);
+
+        downloader.addPeer(sender);
+        downloader.addHeaders(getHeaders(blocks), hash -> Arrays.equals(hash, genesis.getHash()));
+        downloader.assign(0);
+
+        downloader.onTimer(500);
+        Assert.assertEquals(1, sender.getMessages().size());
+
+        downloader.onTimer(1010);
+        Assert.assertEquals(2, sender.getMessages().size());
+        Assert.assertEquals(0, downloader.getPendingSize());
+    }
+
+    @Test
+    public void dropHashesAfterMaxAttempts() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+        List<Block> blocks = BlockGenerator.getBlockChain(genesis, 4);
+        BlockDownloader downloader = new BlockDownloader(4, 1000, 2);
+        SimpleMessageSender sender = createSender(1);
+
+        downloader.addPeer(sender);
+        downloader.addHeaders(getHeaders(blocks), hash -> Arrays.equals(hash, genesis.getHash()));
+        downloader.assign(0);
+
+        Assert.assertTrue(downloader.onBlocks(sender.getNodeID(), Collections.emptyList(), 10).isEmpty());
+        Assert.assertEquals(4, downloader.getPendingSize());
+        Assert.assertTrue(downloader.takeFailed().isEmpty());
+
+        downloader.assign(10);
+
+        Assert.assertEquals(2, downloader.onBlocks(sender.getNodeID(), blocks.subList(0, 2), 20).size());
+        Assert.assertEquals(0, downloader.getPendingSize());
+        Assert.assertFalse(downloader.isDownloading());
+        Assert.assertFalse(downloader.isRequested(blocks.get(2).getHash()));
+
+        List<BlockHeader> failed = downloader.takeFailed();
+
+        Assert.assertEquals(2, failed.size());
+        Assert.assertSame(blocks.get(2).getHeader(), failed.get(0));
+        Assert.assertSame(blocks.get(3).getHeader(), failed.get(1));
+        Assert.assertTrue(downloader.takeFailed().isEmpty());
+    }
+
+    private static List<Block> getBlocks(List<Block> blocks, SimpleMessageSender sender) {
+        List<Block> result = new ArrayList<>();
+        List<byte[]> hashes = ((GetBlocksMessage) sender.getMessages().get(sender.getMessages().size() - 1)).getHashes();
+
+        for (Block block : blocks)
+            for (byte[] hash : hashes)
+                if (Arrays.equals(hash, block.getHash()))
+                    result.add(block);
+
+        return result;
+    }
+
+    private static List<BlockHeader> getHeaders(List<Block> blocks) {
+        List<BlockHeader> headers = new ArrayList<>();
+
+        for (Block block : blocks)
+            headers.add(block.getHeader());
+
+        return headers;
+    }
+
+    private static SimpleMessageSender createSender(int id) {
+        SimpleMessageSender sender = new SimpleMessageSender();
+        sender.setNodeID(new byte[] { (byte) id });
+        return sender;
+    }
+}
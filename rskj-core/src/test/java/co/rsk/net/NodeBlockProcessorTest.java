@@ -25,6 +25,7 @@ import co.rsk.net.simples.SimpleNodeSender;
 import co.rsk.test.builders.BlockChainBuilder;
 import co.rsk.net.simples.SimpleMessageSender;
 import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
 import org.ethereum.core.Blockchain;
 import org.ethereum.core.ImportResult;
 import org.ethereum.db.ByteArrayWrapper;
@@ -32,6 +33,9 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -602,6 +606,179 @@ public class NodeBlockProcessorTest {
         return createBlockchain(0);
     }
 
+    @Test
+    public void processGetBlocksMessageUsingBlocksInStoreAndBlockchain() {
+        final Blockchain blockchain = createBlockchain(10);
+        final Block block = blockchain.getBlockByNumber(5);
+        final Block child = BlockGenerator.createChildBlock(blockchain.getBestBlock());
+        final Block unknown = BlockGenerator.getBlock(3);
+        final BlockStore store = new BlockStore();
+
+        store.saveBlock(child);
+
+        final NodeBlockProcessor processor = new NodeBlockProcessor(store, blockchain);
+        final SimpleMessageSender sender = new SimpleMessageSender();
+
+        processor.processGetBlocks(sender, Arrays.asList(block.getHash(), unknown.getHash(), child.getHash()));
+
+        Assert.assertTrue(processor.getNodeInformation().getBlocksByNode(sender.getNodeID()).contains(new ByteArrayWrapper(block.getHash())));
+        Assert.assertTrue(processor.getNodeInformation().getBlocksByNode(sender.getNodeID()).contains(new ByteArrayWrapper(child.getHash())));
+
+        Assert.assertEquals(1, sender.getMessages().size());
+        Assert.assertEquals(MessageType.BLOCKS_MESSAGE, sender.getMessages().get(0).getMessageType());
+
+        final List<Block> blocks = ((BlocksMessage) sender.getMessages().get(0)).getBlocks();
+
+        Assert.assertEquals(2, blocks.size());
+        Assert.assertArrayEquals(block.getHash(), blocks.get(0).getHash());
+        Assert.assertArrayEquals(child.getHash(), blocks.get(1).getHash());
+    }
+
+    @Test
+    public void processGetBlocksMessageUsingEmptyStore() {
+        final Block block = BlockGenerator.getBlock(3);
+        final NodeBlockProcessor processor = new NodeBlockProcessor(new BlockStore(), createBlockchain(0));
+        final SimpleMessageSender sender = new SimpleMessageSender();
+
+        processor.processGetBlocks(sender, Collections.singletonList(block.getHash()));
+
+        Assert.assertTrue(processor.getNodeInformation().getBlocksByNode(sender.getNodeID()).isEmpty());
+        Assert.assertEquals(1, sender.getMessages().size());
+        Assert.assertTrue(((BlocksMessage) sender.getMessages().get(0)).getBlocks().isEmpty());
+    }
+
+    @Test
+    public void processStatusRequestingHeadersUsingDownloader() {
+        final Blockchain blockchain = createBlockchain(0);
+        final NodeBlockProcessor processor = new NodeBlockProcessor(new BlockStore(), blockchain);
+        final SimpleMessageSender sender = new SimpleMessageSender();
+
+        processor.setBlockDownloader(new BlockDownloader());
+
+        final Block block = BlockGenerator.getBlock(3);
+        processor.processStatus(sender, new Status(50, block.getHash()));
+
+        Assert.assertTrue(sender.getGetBlockMessages().isEmpty());
+        Assert.assertEquals(1, sender.getMessages().size());
+        Assert.assertEquals(MessageType.GET_BLOCK_HEADERS_MESSAGE, sender.getMessages().get(0).getMessageType());
+
+        final GetBlockHeadersMessage message = (GetBlockHeadersMessage) sender.getMessages().get(0);
+
+        Assert.assertEquals(1, message.getBlockNumber());
+        Assert.assertNull(message.getBlockHash());
+        Assert.assertEquals(50, message.getMaxHeaders());
+        Assert.assertEquals(0, message.getSkipBlocks());
+        Assert.assertTrue(message.isReverse());
+    }
+
+    @Test
+    public void requestBlocksOfRemovedPeerToOtherPeer() {
+        final Blockchain blockchain = createBlockchain(0);
+        final List<Block> blocks = BlockGenerator.getBlockChain(blockchain.getBestBlock(), 10);
+        final NodeBlockProcessor processor = new NodeBlockProcessor(new BlockStore(), blockchain);
+        final SimpleMessageSender sender1 = new SimpleMessageSender();
+        sender1.setNodeID(new byte[] { 1 });
+        final SimpleMessageSender sender2 = new SimpleMessageSender();
+        sender2.setNodeID(new byte[] { 2 });
+
+        processor.setBlockDownloader(new BlockDownloader());
+
+        final List<BlockHeader> headers = new ArrayList<>();
+
+        for (int k = blocks.size(); k-- > 0;)
+            headers.add(blocks.get(k).getHeader());
+
+        processor.processBlockHeaders(sender1, headers);
+        processor.processStatus(sender2, new Status(0, blockchain.getBestBlock().getHash()));
+
+        // the status could be answered with the genesis block, only the block requests are checked
+        Assert.assertEquals(1, sender1.getMessages().size());
+        Assert.assertTrue(getGetBlocksMessages(sender2).isEmpty());
+
+        processor.removePeer(sender1.getNodeID());
+
+        final List<GetBlocksMessage> requests = getGetBlocksMessages(sender2);
+
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals(10, requests.get(0).getHashes().size());
+    }
+
+    @Test
+    public void requestBlocksOneByOneAfterMaxAttempts() {
+        final Blockchain blockchain = createBlockchain(0);
+        final List<Block> blocks = BlockGenerator.getBlockChain(blockchain.getBestBlock(), 10);
+        final BlockStore store = new BlockStore();
+        final NodeBlockProcessor processor = new NodeBlockProcessor(store, blockchain);
+        final SimpleMessageSender sender = new SimpleMessageSender();
+
+        processor.setBlockDownloader(new BlockDownloader(BlockDownloader.BATCH_SIZE, BlockDownloader.REQUEST_TIMEOUT, 1));
+
+        final List<BlockHeader> headers = new ArrayList<>();
+
+        for (Block block : blocks)
+            headers.add(block.getHeader());
+
+        processor.processBlockHeaders(sender, headers);
+
+        Assert.assertEquals(1, sender.getMessages().size());
+        Assert.assertEquals(MessageType.GET_BLOCKS_MESSAGE, sender.getMessages().get(0).getMessageType());
+
+        processor.processBlocks(sender, Collections.emptyList());
+
+        Assert.assertEquals(11, sender.getMessages().size());
+
+        for (int k = 0; k < blocks.size(); k++) {
+            Assert.assertEquals(MessageType.GET_BLOCK_MESSAGE, sender.getMessages().get(k + 1).getMessageType());
+            Assert.assertArrayEquals(blocks.get(k).getHash(), ((GetBlockMessage) sender.getMessages().get(k + 1)).getBlockHash());
+            Assert.assertTrue(store.hasHeader(blocks.get(k).getHash()));
+        }
+
+        processor.processBlockHeaders(sender, headers);
+
+        Assert.assertEquals(11, sender.getMessages().size());
+    }
+
+    @Test
+    public void downloadBlocksUsingDownloader() {
+        final Blockchain blockchain = createBlockchain(0);
+        final List<Block> blocks = BlockGenerator.getBlockChain(blockchain.getBestBlock(), 10);
+        final NodeBlockProcessor processor = new NodeBlockProcessor(new BlockStore(), blockchain);
+        final SimpleMessageSender sender = new SimpleMessageSender();
+
+        processor.setBlockDownloader(new BlockDownloader());
+
+        final List<BlockHeader> headers = new ArrayList<>();
+
+        for (int k = blocks.size(); k-- > 0;)
+            headers.add(blocks.get(k).getHeader());
+
+        processor.processBlockHeaders(sender, headers);
+
+        Assert.assertTrue(sender.getGetBlockMessages().isEmpty());
+        Assert.assertEquals(1, sender.getMessages().size());
+        Assert.assertEquals(MessageType.GET_BLOCKS_MESSAGE, sender.getMessages().get(0).getMessageType());
+        Assert.assertEquals(10, ((GetBlocksMessage) sender.getMessages().get(0)).getHashes().size());
+
+        final List<Block> received = new ArrayList<>(blocks);
+        Collections.reverse(received);
+
+        processor.processBlocks(sender, received);
+
+        Assert.assertEquals(10, blockchain.getBestBlock().getNumber());
+        Assert.assertArrayEquals(blocks.get(9).getHash(), blockchain.getBestBlock().getHash());
+        Assert.assertTrue(sender.getGetBlockMessages().isEmpty());
+    }
+
+    private static List<GetBlocksMessage> getGetBlocksMessages(SimpleMessageSender sender) {
+        final List<GetBlocksMessage> result = new ArrayList<>();
+
+        for (Message message : sender.getMessages())
+            if (message.getMessageType() == MessageType.GET_BLOCKS_MESSAGE)
+                result.add((GetBlocksMessage) message);
+
+        return result;
+    }
+
     private static Blockchain createBlockchain(int size) {
         BlockChainBuilder builder = new BlockChainBuilder();
         BlockChainImpl blockChain = builder.build();
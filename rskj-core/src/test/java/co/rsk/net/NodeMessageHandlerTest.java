@@ -105,6 +105,51 @@ public class NodeMessageHandlerTest {
         Assert.assertSame(block, sbp.getBlocks().get(0));
     }
 
+    @Test
+    public void postGetBlockMessageUsingProcessor() throws InterruptedException {
+        final Block block = BlockGenerator.getBlock(3);
+        final World world = new World();
+        final BlockStore store = new BlockStore();
+
+        store.saveBlock(block);
+
+        final NodeBlockProcessor bp = new NodeBlockProcessor(store, world.getBlockChain());
+        final NodeMessageHandler handler = new NodeMessageHandler(bp, null, null, null);
+        final SimpleMessageSender sender = new SimpleMessageSender();
+
+        handler.start();
+        handler.postMessage(sender, new GetBlockMessage(block.getHash()));
+
+        Thread.sleep(1000);
+
+        handler.stop();
+
+        Assert.assertEquals(0, handler.getMessageQueueSize());
+        Assert.assertEquals(1, sender.getMessages().size());
+        Assert.assertEquals(MessageType.BLOCK_MESSAGE, sender.getMessages().get(0).getMessageType());
+    }
+
+    @Test
+    public void discardMessagesFromFloodingPeer() throws InterruptedException {
+        final NodeMessageHandler handler = new NodeMessageHandler(new SimpleBlockProcessor(), null, null, null);
+        final SimpleMessageSender sender = new SimpleMessageSender();
+        sender.setNodeID(new byte[] {1});
+        final SimpleMessageSender sender2 = new SimpleMessageSender();
+        sender2.setNodeID(new byte[] {2});
+
+        final TransactionsMessage message = new TransactionsMessage(TransactionUtils.getTransactions(1));
+
+        for (int k = 0; k < 150; k++)
+            handler.postMessage(sender, message);
+
+        Assert.assertEquals(100, handler.getMessageQueueSize());
+
+        handler.postMessage(sender2, message);
+        handler.postMessage(sender, new BlockMessage(new Block(Hex.decode(rlp))));
+
+        Assert.assertEquals(102, handler.getMessageQueueSize());
+    }
+
     @Test
     public void processInvalidPoWMessageUsingProcessor() {
         SimpleBlockProcessor sbp = new SimpleBlockProcessor();
@@ -120,6 +165,22 @@ public class NodeMessageHandlerTest {
         Assert.assertEquals(0, sbp.getBlocks().size());
     }
 
+    @Test
+    public void processInvalidPoWBlockHeadersMessageUsingProcessor() {
+        SimpleBlockProcessor sbp = new SimpleBlockProcessor();
+        NodeMessageHandler processor = new NodeMessageHandler(sbp, null, null, null);
+        Block block = new Block(Hex.decode(rlp));
+        Block invalid = new Block(Hex.decode(rlp));
+        byte[] mergedMiningHeader = invalid.getBitcoinMergedMiningHeader();
+        mergedMiningHeader[76] += 3; //change merged mining nonce.
+        Message message = new BlockHeadersMessage(Arrays.asList(block.getHeader(), invalid.getHeader()));
+
+        processor.processMessage(new SimpleMessageSender(), message);
+
+        Assert.assertEquals(1, sbp.getBlockHeaders().size());
+        Assert.assertSame(block.getHeader(), sbp.getBlockHeaders().get(0));
+    }
+
     @Test
     public void processMissingPoWBlockMessageUsingProcessor() {
         SimpleBlockProcessor sbp = new SimpleBlockProcessor();
@@ -552,6 +613,24 @@ public class NodeMessageHandlerTest {
                                 blocks.get(baseBlock - 6).getHeader(),
                                 blocks.get(baseBlock - 8).getHeader()
                         )
+                ),
+                new TestCase(
+                        new GetBlockHeadersMessage(0, blocks.get(0).getHash(), 5, 1, true),
+                        Arrays.asList(
+                                blocks.get(0).getHeader(),
+                                blocks.get(2).getHeader(),
+                                blocks.get(4).getHeader(),
+                                blocks.get(6).getHeader(),
+                                blocks.get(8).getHeader()
+                        )
+                ),
+                new TestCase(
+                        new GetBlockHeadersMessage(blocks.get(baseBlock - 2).getNumber(), null, 5, 0, true),
+                        Arrays.asList(
+                                blocks.get(baseBlock - 2).getHeader(),
+                                blocks.get(baseBlock - 1).getHeader(),
+                                blocks.get(baseBlock).getHeader()
+                        )
                 )
         };
 
@@ -623,6 +702,7 @@ public class NodeMessageHandlerTest {
         final TransactionsMessage message = new TransactionsMessage(txs);
 
         handler.processMessage(sender, message);
+        handler.relayTransactions();
 
         Assert.assertNotNull(channelManager.getTransactions());
         Assert.assertEquals(10, channelManager.getTransactions().size());
@@ -635,6 +715,7 @@ public class NodeMessageHandlerTest {
         Assert.assertTrue(channelManager.getLastSkip().contains(sender.getNodeID()));
 
         handler.processMessage(sender2, message);
+        handler.relayTransactions();
 
         Assert.assertNotNull(channelManager.getLastSkip());
         Assert.assertEquals(2, channelManager.getLastSkip().size());
@@ -656,7 +737,48 @@ public class NodeMessageHandlerTest {
 
         handler.processMessage(null, message);
 
+        handler.relayTransactions();
+
         verify(channelManager, never()).broadcastTransaction(any(), any());
+        verify(channelManager, never()).broadcastTransactions(any(), any());
+    }
+
+    @Test
+    public void relayTransactionsOfSeveralMessagesInOneBatch() {
+        final SimpleChannelManager channelManager = new SimpleChannelManager();
+        TxHandler txmock = Mockito.mock(TxHandler.class);
+        BlockProcessor blockProcessor = Mockito.mock(BlockProcessor.class);
+        Mockito.when(blockProcessor.hasBetterBlockToSync()).thenReturn(false);
+
+        final NodeMessageHandler handler = new NodeMessageHandler(blockProcessor, channelManager, null, txmock);
+
+        final SimpleMessageSender sender = new SimpleMessageSender();
+        sender.setNodeID(new byte[] {1});
+
+        final List<Transaction> txs = TransactionUtils.getTransactions(10);
+        final List<Transaction> txs1 = txs.subList(0, 6);
+        final List<Transaction> txs2 = txs.subList(4, 10);
+
+        Mockito.when(txmock.retrieveValidTxs(any(List.class))).thenReturn(txs1).thenReturn(txs2);
+
+        handler.processMessage(sender, new TransactionsMessage(txs1));
+        handler.processMessage(sender, new TransactionsMessage(txs2));
+
+        Assert.assertTrue(channelManager.getTransactions().isEmpty());
+
+        handler.relayTransactions();
+
+        Assert.assertEquals(10, channelManager.getTransactions().size());
+
+        for (int k = 0; k < 10; k++)
+            Assert.assertSame(txs.get(k), channelManager.getTransactions().get(k));
+
+        Assert.assertEquals(1, channelManager.getLastSkip().size());
+        Assert.assertTrue(channelManager.getLastSkip().contains(sender.getNodeID()));
+
+        handler.relayTransactions();
+
+        Assert.assertEquals(10, channelManager.getTransactions().size());
     }
 
     @Test
@@ -679,6 +801,7 @@ public class NodeMessageHandlerTest {
         final TransactionsMessage message = new TransactionsMessage(txs);
 
         handler.processMessage(sender, message);
+        handler.relayTransactions();
 
         Assert.assertNotNull(channelManager.getTransactions());
         Assert.assertEquals(10, channelManager.getTransactions().size());
@@ -692,6 +815,7 @@ public class NodeMessageHandlerTest {
 
         channelManager.setLastSkip(null);
         handler.processMessage(sender2, message);
+        handler.relayTransactions();
 
         Assert.assertNull(channelManager.getLastSkip());
     }
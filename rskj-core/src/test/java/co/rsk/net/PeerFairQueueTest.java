@@ -0,0 +1,73 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package co.rsk.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PeerFairQueueTest {
+    private static final NodeID NODE1 = new NodeID(new byte[] { 1 });
+    private static final NodeID NODE2 = new NodeID(new byte[] { 2 });
+
+    @Test
+    public void emptyQueue() {
+        PeerFairQueue<String> queue = new PeerFairQueue<>(10);
+
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(0, queue.size());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void pollPeersInRoundRobin() {
+        PeerFairQueue<String> queue = new PeerFairQueue<>(10);
+
+        queue.offer(NODE1, "a1");
+        queue.offer(NODE1, "a2");
+        queue.offer(NODE1, "a3");
+        queue.offer(NODE2, "b1");
+        queue.offer(NODE2, "b2");
+
+        Assert.assertEquals(5, queue.size());
+
+        Assert.assertEquals("a1", queue.poll());
+        Assert.assertEquals("b1", queue.poll());
+        Assert.assertEquals("a2", queue.poll());
+        Assert.assertEquals("b2", queue.poll());
+        Assert.assertEquals("a3", queue.poll());
+        Assert.assertNull(queue.poll());
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void rejectElementsOverPeerLimit() {
+        PeerFairQueue<String> queue = new PeerFairQueue<>(2);
+
+        Assert.assertTrue(queue.offer(NODE1, "a1"));
+        Assert.assertTrue(queue.offer(NODE1, "a2"));
+        Assert.assertFalse(queue.offer(NODE1, "a3"));
+        Assert.assertTrue(queue.offer(NODE2, "b1"));
+
+        Assert.assertEquals(3, queue.size());
+
+        Assert.assertEquals("a1", queue.poll());
+        Assert.assertTrue(queue.offer(NODE1, "a3"));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net;
+
+import co.rsk.net.messages.MessageType;
+import co.rsk.net.messages.TrieNodesMessage;
+import co.rsk.net.simples.SimpleMessageSender;
+import co.rsk.trie.Trie;
+import co.rsk.trie.TrieImpl;
+import co.rsk.trie.TrieStoreImpl;
+import org.ethereum.crypto.SHA3Helper;
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StateSyncProcessorTest {
+    @Test
+    public void serveTrieNodes() {
+        TrieStoreImpl store = new TrieStoreImpl(new HashMapDB());
+        Trie trie = new TrieImpl(store, false).put("foo", "bar".getBytes());
+        trie.save();
+
+        StateSyncProcessor processor = new StateSyncProcessor(store);
+        SimpleMessageSender sender = new SimpleMessageSender();
+
+        processor.processGetTrieNodes(sender, Arrays.asList(trie.getHash(), new byte[32]));
+
+        Assert.assertEquals(1, sender.getMessages().size());
+        Assert.assertEquals(MessageType.TRIE_NODES_MESSAGE, sender.getMessages().get(0).getMessageType());
+
+        List<byte[]> nodes = ((TrieNodesMessage) sender.getMessages().get(0)).getNodes();
+
+        Assert.assertEquals(1, nodes.size());
+        Assert.assertArrayEquals(trie.toMessage(), nodes.get(0));
+    }
+
+    @Test
+    public void serveAtMostMaxNodesByRequest() {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+        Trie trie = new TrieImpl(store, false);
+
+        for (int k = 0; k < 1000; k++)
+            trie = trie.put("account" + k, ("value" + k).getBytes());
+
+        trie.save();
+
+        List<byte[]> hashes = new ArrayList<>();
+
+        for (byte[] key : map.keys())
+            hashes.add(key);
+
+        Assert.assertTrue(hashes.size() > StateSyncProcessor.MAX_NODES_BY_REQUEST);
+
+        StateSyncProcessor processor = new StateSyncProcessor(store);
+        SimpleMessageSender sender = new SimpleMessageSender();
+
+        processor.processGetTrieNodes(sender, hashes);
+
+        List<byte[]> nodes = ((TrieNodesMessage) sender.getMessages().get(0)).getNodes();
+
+        Assert.assertEquals(StateSyncProcessor.MAX_NODES_BY_REQUEST, nodes.size());
+
+        for (int k = 0; k < nodes.size(); k++)
+            Assert.assertArrayEquals(hashes.get(k), SHA3Helper.sha3(nodes.get(k)));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package co.rsk.net.eth;
+
+import co.rsk.config.RskSystemProperties;
+import org.ethereum.config.SystemProperties;
+import org.ethereum.core.genesis.GenesisLoader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RskWireProtocolTest {
+    @Test
+    public void getGenesisHashOfConfiguredGenesis() {
+        SystemProperties config = RskSystemProperties.CONFIG;
+        byte[] expected = GenesisLoader.loadGenesis(config.genesisInfo(), config.getBlockchainConfig().getCommonConstants().getInitialNonce(), true).getHash();
+
+        Assert.assertArrayEquals(expected, RskWireProtocol.getGenesisHash(config));
+    }
+
+    @Test
+    public void getGenesisHashLoadsGenesisOnce() {
+        SystemProperties config = RskSystemProperties.CONFIG;
+
+        byte[] hash1 = RskWireProtocol.getGenesisHash(config);
+        byte[] hash2 = RskWireProtocol.getGenesisHash(config);
+
+        Assert.assertSame(hash1, hash2);
+    }
+}
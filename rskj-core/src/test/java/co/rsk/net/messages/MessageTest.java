@@ -226,4 +226,52 @@ public class MessageTest {
             Assert.assertArrayEquals(tx1.getHash(), tx2.getHash());
         }
     }
+
+    @Test
+    public void encodeDecodeGetBlocksMessage() {
+        List<byte[]> hashes = new LinkedList<>();
+
+        for (Block block : BlockGenerator.getBlockChain(3))
+            hashes.add(block.getHash());
+
+        GetBlocksMessage message = new GetBlocksMessage(hashes);
+
+        byte[] encoded = message.getEncoded();
+
+        Message result = Message.create(encoded);
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(encoded, result.getEncoded());
+        Assert.assertEquals(MessageType.GET_BLOCKS_MESSAGE, result.getMessageType());
+
+        GetBlocksMessage newmessage = (GetBlocksMessage) result;
+
+        Assert.assertEquals(hashes.size(), newmessage.getHashes().size());
+
+        for (int k = 0; k < hashes.size(); k++)
+            Assert.assertArrayEquals(hashes.get(k), newmessage.getHashes().get(k));
+    }
+
+    @Test
+    public void encodeDecodeBlocksMessage() {
+        List<Block> blocks = BlockGenerator.getBlockChain(BlockGenerator.getGenesisBlock(), 3, 2);
+        BlocksMessage message = new BlocksMessage(blocks);
+
+        byte[] encoded = message.getEncoded();
+
+        Message result = Message.create(encoded);
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(encoded, result.getEncoded());
+        Assert.assertEquals(MessageType.BLOCKS_MESSAGE, result.getMessageType());
+
+        BlocksMessage newmessage = (BlocksMessage) result;
+
+        Assert.assertEquals(blocks.size(), newmessage.getBlocks().size());
+
+        for (int k = 0; k < blocks.size(); k++) {
+            Assert.assertArrayEquals(blocks.get(k).getHash(), newmessage.getBlocks().get(k).getHash());
+            Assert.assertArrayEquals(blocks.get(k).getEncoded(), newmessage.getBlocks().get(k).getEncoded());
+        }
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.net.messages;
+
+import org.ethereum.crypto.HashUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TrieNodesMessageTest {
+    @Test
+    public void encodeAndDecodeGetTrieNodesMessage() {
+        List<byte[]> hashes = Arrays.asList(HashUtil.sha3(new byte[] { 1 }), HashUtil.sha3(new byte[] { 2 }));
+        GetTrieNodesMessage message = new GetTrieNodesMessage(hashes);
+
+        Assert.assertEquals(MessageType.GET_TRIE_NODES_MESSAGE, message.getMessageType());
+
+        Message result = Message.create(message.getEncoded());
+
+        Assert.assertEquals(MessageType.GET_TRIE_NODES_MESSAGE, result.getMessageType());
+
+        List<byte[]> resultHashes = ((GetTrieNodesMessage) result).getHashes();
+
+        Assert.assertEquals(2, resultHashes.size());
+        Assert.assertArrayEquals(hashes.get(0), resultHashes.get(0));
+        Assert.assertArrayEquals(hashes.get(1), resultHashes.get(1));
+    }
+
+    @Test
+    public void encodeAndDecodeTrieNodesMessage() {
+        List<byte[]> nodes = Arrays.asList(new byte[] { 2, 0, 0, 0, 0, 0, 1 }, new byte[] { 2, 0, 0, 0, 0, 0, 2, 3 });
+        TrieNodesMessage message = new TrieNodesMessage(nodes);
+
+        Assert.assertEquals(MessageType.TRIE_NODES_MESSAGE, message.getMessageType());
+
+        Message result = Message.create(message.getEncoded());
+
+        Assert.assertEquals(MessageType.TRIE_NODES_MESSAGE, result.getMessageType());
+
+        List<byte[]> resultNodes = ((TrieNodesMessage) result).getNodes();
+
+        Assert.assertEquals(2, resultNodes.size());
+        Assert.assertArrayEquals(nodes.get(0), resultNodes.get(0));
+        Assert.assertArrayEquals(nodes.get(1), resultNodes.get(1));
+    }
+
+    @Test
+    public void encodeAndDecodeEmptyTrieNodesMessage() {
+        Message result = Message.create(new TrieNodesMessage(Arrays.asList()).getEncoded());
+
+        Assert.assertEquals(MessageType.TRIE_NODES_MESSAGE, result.getMessageType());
+        Assert.assertTrue(((TrieNodesMessage) result).getNodes().isEmpty());
+    }
+}
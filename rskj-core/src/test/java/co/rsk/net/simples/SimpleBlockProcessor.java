@@ -38,6 +38,7 @@ public class SimpleBlockProcessor implements BlockProcessor {
 
     public long lastKnownBlockNumber = 0;
     private List<Block> blocks = new ArrayList<Block>();
+    private List<BlockHeader> blockHeaders = new ArrayList<BlockHeader>();
 
 
     @Override
@@ -53,6 +54,16 @@ public class SimpleBlockProcessor implements BlockProcessor {
 
     }
 
+    @Override
+    public void processGetBlocks(MessageSender sender, List<byte[]> hashes) {
+
+    }
+
+    @Override
+    public void processBlocks(MessageSender sender, List<Block> blocks) {
+        this.blocks.addAll(blocks);
+    }
+
     @Override
     public void processGetBlockHeaders(MessageSender sender, long blockNumber, byte[] hash, int maxHeaders, int skip, boolean reverse) {
 
@@ -82,6 +93,10 @@ public class SimpleBlockProcessor implements BlockProcessor {
         return this.blocks;
     }
 
+    public List<BlockHeader> getBlockHeaders() {
+        return this.blockHeaders;
+    }
+
     public long getLastKnownBlockNumber() {
         return lastKnownBlockNumber;
     }
@@ -93,7 +108,7 @@ public class SimpleBlockProcessor implements BlockProcessor {
 
     @Override
     public void processBlockHeaders(MessageSender sender, List<BlockHeader> blockHeaders) {
-
+        this.blockHeaders.addAll(blockHeaders);
     }
 
     @Override
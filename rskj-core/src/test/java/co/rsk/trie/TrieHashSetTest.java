@@ -0,0 +1,69 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package co.rsk.trie;
+
+import org.ethereum.crypto.SHA3Helper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrieHashSetTest {
+    @Test
+    public void addAndContainsHashes() {
+        TrieHashSet set = new TrieHashSet();
+
+        byte[] hash1 = SHA3Helper.sha3("foo".getBytes());
+        byte[] hash2 = SHA3Helper.sha3("bar".getBytes());
+
+        Assert.assertTrue(set.add(hash1));
+        Assert.assertFalse(set.add(hash1));
+
+        Assert.assertTrue(set.contains(hash1));
+        Assert.assertFalse(set.contains(hash2));
+        Assert.assertEquals(1, set.size());
+    }
+
+    @Test
+    public void keepHashesWhenGrowing() {
+        TrieHashSet set = new TrieHashSet();
+
+        for (int k = 0; k < 10000; k++)
+            Assert.assertTrue(set.add(SHA3Helper.sha3(("value" + k).getBytes())));
+
+        Assert.assertEquals(10000, set.size());
+
+        for (int k = 0; k < 10000; k++)
+            Assert.assertTrue(set.contains(SHA3Helper.sha3(("value" + k).getBytes())));
+
+        Assert.assertFalse(set.contains(SHA3Helper.sha3("value10000".getBytes())));
+    }
+
+    @Test
+    public void doesNotContainHashesOfOtherLength() {
+        TrieHashSet set = new TrieHashSet();
+
+        Assert.assertFalse(set.contains(new byte[] { 1, 2, 3 }));
+        Assert.assertFalse(set.contains(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectHashesOfOtherLength() {
+        new TrieHashSet().add(new byte[] { 1, 2, 3 });
+    }
+}
@@ -120,6 +120,60 @@ public class TrieImplHashTest {
         Assert.assertFalse(Arrays.equals(trie1.getHash(), trie2.getHash()));
     }
 
+    @Test
+    public void parallelHashIsEqualToSequentialHash() {
+        Trie trie1 = buildTrie(new TrieImpl(), 1000);
+        Trie trie2 = buildTrie(new TrieImpl(), 1000);
+
+        byte[] hash1 = trie1.getHash();
+        byte[] hash2 = getParallelHash(trie2, 8);
+
+        Assert.assertArrayEquals(hash1, hash2);
+    }
+
+    @Test
+    public void parallelHashIsEqualToSequentialHashUsingArity16() {
+        Trie trie1 = buildTrie(new TrieImpl(16, false), 1000);
+        Trie trie2 = buildTrie(new TrieImpl(16, false), 1000);
+
+        byte[] hash1 = trie1.getHash();
+        byte[] hash2 = getParallelHash(trie2, 8);
+
+        Assert.assertArrayEquals(hash1, hash2);
+    }
+
+    @Test
+    public void parallelHashOfUpdatedTrieIsEqualToSequentialHash() {
+        Trie trie1 = buildTrie(new TrieImpl(), 1000);
+        Trie trie2 = buildTrie(new TrieImpl(), 1000);
+
+        getParallelHash(trie2, 8);
+
+        trie1 = trie1.put("foo", "bar".getBytes()).delete("key10".getBytes());
+        trie2 = trie2.put("foo", "bar".getBytes()).delete("key10".getBytes());
+
+        Assert.assertArrayEquals(trie1.getHash(), getParallelHash(trie2, 2));
+    }
+
+    private static Trie buildTrie(Trie trie, int nkeys) {
+        for (int k = 0; k < nkeys; k++)
+            trie = trie.put("key" + k, ("value" + k).getBytes());
+
+        return trie;
+    }
+
+    private static byte[] getParallelHash(Trie trie, int threshold) {
+        int previous = TrieImpl.getParallelHashThreshold();
+
+        try {
+            TrieImpl.setParallelHashThreshold(threshold);
+            return trie.getHash();
+        }
+        finally {
+            TrieImpl.setParallelHashThreshold(previous);
+        }
+    }
+
     public static byte[] makeEmptyHash() {
         return sha3(RLP.encodeElement(EMPTY_BYTE_ARRAY));
     }
@@ -23,6 +23,11 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by ajlopez on 11/01/2017.
@@ -191,4 +196,44 @@ public class TrieImplSaveRetrieveTest {
         Assert.assertArrayEquals(trie.get("bar"), trie2.get("bar"));
         Assert.assertArrayEquals(trie.get("answer"), trie2.get("answer"));
     }
+
+    @Test
+    public void retrieveAndGetKeyValuesFromManyThreads() throws Exception {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie trie = new TrieImpl(store, false);
+
+        for (int k = 0; k < 1000; k++)
+            trie = trie.put(k + "", (k + "").getBytes());
+
+        trie.save();
+
+        Trie trie2 = store.retrieve(trie.getHash());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+
+            results.add(executor.submit(() -> {
+                for (int k = 0; k < 1000; k++) {
+                    String key = (k * 7 + offset * 250) % 1000 + "";
+
+                    if (!key.equals(new String(trie2.get(key))))
+                        return false;
+                }
+
+                return true;
+            }));
+        }
+
+        for (Future<Boolean> result : results)
+            Assert.assertTrue(result.get());
+
+        executor.shutdown();
+
+        Assert.assertEquals(trie.trieSize(), trie2.trieSize());
+    }
 }
@@ -18,6 +18,8 @@
 
 package co.rsk.trie;
 
+import org.ethereum.crypto.SHA3Helper;
+import org.ethereum.datasource.HashMapDB;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -31,5 +33,52 @@ public class TrieImplTest {
         Assert.assertArrayEquals(new byte[] { 0x0a, 0x0a }, TrieImpl.bytesToKey(new byte[] { (byte)0xaa }, 16));
         Assert.assertArrayEquals(new byte[] { 0x02, 0x02, 0x02, 0x02 }, TrieImpl.bytesToKey(new byte[] { (byte)0xaa }, 4));
     }
-}
 
+    @Test
+    public void saveAndRetrieveNodeWithAllSubnodes() {
+        HashMapDB map = new HashMapDB();
+        Trie trie = new TrieImpl(16, new TrieStoreImpl(map), false);
+
+        for (int k = 0; k < 16; k++)
+            trie = trie.put(new byte[] { (byte) (k << 4), 1 }, new byte[] { (byte) k });
+
+        trie.save();
+
+        Trie retrieved = new TrieStoreImpl(map).retrieve(trie.getHash());
+
+        Assert.assertArrayEquals(trie.toMessage(), retrieved.toMessage());
+        Assert.assertArrayEquals(trie.getHash(), retrieved.getHash());
+
+        for (int k = 0; k < 16; k++)
+            Assert.assertArrayEquals(new byte[] { (byte) k }, retrieved.get(new byte[] { (byte) (k << 4), 1 }));
+    }
+
+    @Test
+    public void performanceMemoryByNode() {
+        boolean performanceEnabled = false;
+
+        if (performanceEnabled) {
+            final int NKEYS = 300000;
+            Runtime runtime = Runtime.getRuntime();
+
+            System.gc();
+            long before = runtime.totalMemory() - runtime.freeMemory();
+
+            Trie trie = new TrieImpl(false);
+
+            for (int k = 0; k < NKEYS; k++)
+                trie = trie.put(SHA3Helper.sha3(Integer.toString(k).getBytes()), new byte[] { 1 });
+
+            trie.getHash();
+
+            System.gc();
+            long after = runtime.totalMemory() - runtime.freeMemory();
+
+            int nodes = trie.trieSize();
+
+            System.out.println("Trie with " + NKEYS + " keys: " + nodes + " nodes, " + (after - before) / nodes + " bytes by node");
+        } else {
+            System.out.println("Performance test for trie memory by node disabled");
+        }
+    }
+}
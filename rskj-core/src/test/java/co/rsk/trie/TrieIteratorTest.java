@@ -0,0 +1,134 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.crypto.SHA3Helper;
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class TrieIteratorTest {
+    @Test
+    public void iterateEmptyTrie() {
+        TrieIterator iterator = new TrieImpl().iterator(null, null);
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void nextAfterLastKey() {
+        TrieIterator iterator = new TrieImpl().put("foo", "bar".getBytes()).iterator(null, null);
+
+        iterator.next();
+        iterator.next();
+    }
+
+    @Test
+    public void iterateKeysInOrder() {
+        Trie trie = new TrieImpl()
+                .put("foo", "1".getBytes())
+                .put("bar", "2".getBytes())
+                .put("fo", "3".getBytes())
+                .put("foz", "4".getBytes())
+                .put("a", "5".getBytes());
+
+        List<String> keys = getKeys(trie.iterator(null, null));
+
+        Assert.assertEquals(5, keys.size());
+        Assert.assertEquals("a", keys.get(0));
+        Assert.assertEquals("bar", keys.get(1));
+        Assert.assertEquals("fo", keys.get(2));
+        Assert.assertEquals("foo", keys.get(3));
+        Assert.assertEquals("foz", keys.get(4));
+    }
+
+    @Test
+    public void iterateKeysInRange() {
+        Trie trie = new TrieImpl(16, false)
+                .put("foo", "1".getBytes())
+                .put("bar", "2".getBytes())
+                .put("fo", "3".getBytes())
+                .put("foz", "4".getBytes())
+                .put("a", "5".getBytes());
+
+        List<String> keys = getKeys(trie.iterator("b".getBytes(), "foz".getBytes()));
+
+        Assert.assertEquals(3, keys.size());
+        Assert.assertEquals("bar", keys.get(0));
+        Assert.assertEquals("fo", keys.get(1));
+        Assert.assertEquals("foo", keys.get(2));
+
+        keys = getKeys(trie.iterator("fo".getBytes(), null));
+
+        Assert.assertEquals(3, keys.size());
+        Assert.assertEquals("fo", keys.get(0));
+    }
+
+    @Test
+    public void iterateRetrievedTrie() {
+        HashMapDB map = new HashMapDB();
+        Trie trie = new TrieImpl(new TrieStoreImpl(map), false);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(String.format("key%03d", k), ("value" + k).getBytes());
+
+        trie.save();
+
+        Trie retrieved = new TrieStoreImpl(map).retrieve(trie.getHash());
+        TrieIterator iterator = retrieved.iterator(null, null);
+
+        for (int k = 0; k < 100; k++) {
+            TrieIterator.Entry entry = iterator.next();
+            Assert.assertEquals(String.format("key%03d", k), new String(entry.getKey()));
+            Assert.assertArrayEquals(("value" + k).getBytes(), entry.getValue());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void iterateSecureTrieByKeyHashes() {
+        Trie trie = new TrieImpl(true).put("foo", "bar".getBytes());
+
+        TrieIterator iterator = trie.iterator(null, null);
+
+        Assert.assertArrayEquals(SHA3Helper.sha3("foo".getBytes()), iterator.next().getKey());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void keyToBytes() {
+        Assert.assertArrayEquals(new byte[] { (byte)0xaa }, TrieImpl.keyToBytes(new byte[] { 0x01, 0x00, 0x01, 0x00, 0x01, 0x00, 0x01, 0x00 }, 2));
+        Assert.assertArrayEquals(new byte[] { (byte)0xaa }, TrieImpl.keyToBytes(new byte[] { 0x0a, 0x0a }, 16));
+        Assert.assertArrayEquals(new byte[] { (byte)0xaa }, TrieImpl.keyToBytes(new byte[] { 0x02, 0x02, 0x02, 0x02 }, 4));
+    }
+
+    private static List<String> getKeys(TrieIterator iterator) {
+        List<String> keys = new ArrayList<>();
+
+        while (iterator.hasNext())
+            keys.add(new String(iterator.next().getKey()));
+
+        return keys;
+    }
+}
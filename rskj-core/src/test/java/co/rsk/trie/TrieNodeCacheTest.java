@@ -0,0 +1,151 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrieNodeCacheTest {
+    @Test
+    public void getUnknownHash() {
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+
+        Assert.assertNull(cache.get(new byte[] { 0x01, 0x02, 0x03, 0x04 }, null));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void putAndGetNode() {
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieImpl trie = (TrieImpl) new TrieImpl(new TrieStoreImpl(new HashMapDB()), false).put("foo", "bar".getBytes());
+
+        cache.put(trie.getHash(), trie, trie.toMessage().length);
+
+        Trie result = cache.get(trie.getHash(), null);
+
+        Assert.assertNotNull(result);
+        Assert.assertNotSame(trie, result);
+        Assert.assertArrayEquals(trie.getHash(), result.getHash());
+        Assert.assertArrayEquals("bar".getBytes(), result.get("foo"));
+        Assert.assertEquals(1, cache.getNodeCount());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedNodes() {
+        Trie trie1 = new TrieImpl().put("foo", "bar".getBytes());
+        Trie trie2 = new TrieImpl().put("bar", "foo".getBytes());
+        Trie trie3 = new TrieImpl().put("baz", "qux".getBytes());
+
+        int length = trie1.toMessage().length;
+        TrieNodeCache cache = new TrieNodeCache(2 * (length + trie1.getHash().length + 128));
+
+        cache.put(trie1.getHash(), (TrieImpl) trie1, length);
+        cache.put(trie2.getHash(), (TrieImpl) trie2, length);
+
+        Assert.assertNotNull(cache.get(trie1.getHash(), null));
+
+        cache.put(trie3.getHash(), (TrieImpl) trie3, length);
+
+        Assert.assertEquals(2, cache.getNodeCount());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+
+        Assert.assertNotNull(cache.get(trie1.getHash(), null));
+        Assert.assertNull(cache.get(trie2.getHash(), null));
+        Assert.assertNotNull(cache.get(trie3.getHash(), null));
+    }
+
+    @Test
+    public void retrieveSavedNodesFromCache() {
+        HashMapDB map = new HashMapDB();
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieStoreImpl store = new TrieStoreImpl(map, cache);
+
+        Trie trie = new TrieImpl(store, false)
+                .put("foo", "bar".getBytes())
+                .put("bar", "foo".getBytes());
+
+        trie.save();
+
+        for (byte[] key : map.keys())
+            map.delete(key);
+
+        Trie result = store.retrieve(trie.getHash());
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals("bar".getBytes(), result.get("foo"));
+        Assert.assertArrayEquals("foo".getBytes(), result.get("bar"));
+        Assert.assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void retrieveFromStoreFillsCache() {
+        HashMapDB map = new HashMapDB();
+        Trie trie = new TrieImpl(new TrieStoreImpl(map), false)
+                .put("foo", "bar".getBytes())
+                .put("bar", "foo".getBytes());
+
+        trie.save();
+
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieStoreImpl store = new TrieStoreImpl(map, cache);
+
+        Assert.assertEquals(trie.trieSize(), store.retrieve(trie.getHash()).trieSize());
+        Assert.assertEquals(trie.trieSize(), cache.getMisses());
+        Assert.assertEquals(trie.trieSize(), cache.getNodeCount());
+
+        Trie result = store.retrieve(trie.getHash());
+
+        Assert.assertEquals(trie.trieSize(), result.trieSize());
+        Assert.assertEquals(trie.trieSize(), cache.getHits());
+        Assert.assertArrayEquals(trie.getHash(), result.getHash());
+    }
+
+    @Test
+    public void retrieveCachedNodeUsingTheRetrievingStore() {
+        HashMapDB map = new HashMapDB();
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieStoreImpl store = new TrieStoreImpl(map, cache);
+
+        Trie trie = new TrieImpl(new TrieStoreImpl(new HashMapDB()), false)
+                .put("foo", "bar".getBytes())
+                .put("bar", "foo".getBytes());
+
+        trie.save();
+        trie.copyTo(store);
+
+        Trie result = store.retrieve(trie.getHash());
+
+        Assert.assertEquals(0, cache.getMisses());
+        Assert.assertSame(store, ((TrieImpl) result).getStore());
+
+        Trie updated = result.put("baz", "qux".getBytes());
+        updated.save();
+
+        Trie retrieved = new TrieStoreImpl(map).retrieve(updated.getHash());
+
+        Assert.assertNotNull(retrieved);
+        Assert.assertArrayEquals("bar".getBytes(), retrieved.get("foo"));
+        Assert.assertArrayEquals("foo".getBytes(), retrieved.get("bar"));
+        Assert.assertArrayEquals("qux".getBytes(), retrieved.get("baz"));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TrieStoreExporterTest {
+    @Test
+    public void exportAndImportTrie() throws IOException {
+        HashMapDB map = new HashMapDB();
+        Trie trie = new TrieImpl(new TrieStoreImpl(map), false);
+
+        for (int k = 0; k < 2000; k++)
+            trie = trie.put("key" + k, ("value" + k).getBytes());
+
+        trie.save();
+
+        Trie old = trie.put("key0", "other".getBytes());
+        old.save();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long exported = new TrieStoreExporter(new TrieStoreImpl(map)).exportTries(Collections.singletonList(trie.getHash()), null, output);
+
+        Assert.assertEquals(trie.trieSize(), exported);
+
+        HashMapDB result = new HashMapDB();
+        long imported = TrieStoreExporter.importTries(new ByteArrayInputStream(output.toByteArray()), result);
+
+        Assert.assertEquals(exported, imported);
+        Assert.assertEquals(exported, result.keys().size());
+
+        Trie retrieved = new TrieStoreImpl(result).retrieve(trie.getHash());
+
+        for (int k = 0; k < 2000; k++)
+            Assert.assertArrayEquals(("value" + k).getBytes(), retrieved.get("key" + k));
+    }
+
+    @Test
+    public void exportReferencedTries() throws IOException {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie storage = new TrieImpl(store, false).put("foo", "bar".getBytes());
+        storage.save();
+
+        Trie trie = new TrieImpl(store, false)
+                .put("account1", storage.getHash())
+                .put("account2", storage.getHash());
+        trie.save();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long exported = new TrieStoreExporter(store).exportTries(Collections.singletonList(trie.getHash()), value -> value, output);
+
+        // the storage trie is exported once by account
+        Assert.assertEquals(trie.trieSize() + 2, exported);
+
+        HashMapDB result = new HashMapDB();
+        TrieStoreExporter.importTries(new ByteArrayInputStream(output.toByteArray()), result);
+
+        Assert.assertEquals(map.keys().size(), result.keys().size());
+
+        TrieStoreImpl resultStore = new TrieStoreImpl(result);
+        byte[] storageRoot = resultStore.retrieve(trie.getHash()).get("account1");
+
+        Assert.assertArrayEquals(storage.getHash(), storageRoot);
+        Assert.assertArrayEquals("bar".getBytes(), resultStore.retrieve(storageRoot).get("foo"));
+    }
+
+    @Test(expected = TrieSerializationException.class)
+    public void exportMissingRoot() throws IOException {
+        TrieStoreExporter exporter = new TrieStoreExporter(new TrieStoreImpl(new HashMapDB()));
+
+        exporter.exportTries(Arrays.asList(new byte[32]), null, new ByteArrayOutputStream());
+    }
+}
@@ -151,6 +151,51 @@ public class TrieStoreImplTest {
         Assert.assertEquals(trie.trieSize() + 1, store.getSaveCount());
     }
 
+    @Test
+    public void saveFullTrieInOneBatch() {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie trie = new TrieImpl(store, false)
+                .put("foo", "bar".getBytes())
+                .put("bar", "foo".getBytes());
+
+        trie.save();
+
+        Assert.assertEquals(trie.trieSize(), store.getSaveCount());
+        Assert.assertEquals(1, store.getBatchCount());
+        Assert.assertEquals(trie.trieSize(), map.keys().size());
+
+        long bytes = 0;
+
+        for (byte[] key : map.keys())
+            bytes += map.get(key).length;
+
+        Assert.assertEquals(bytes, store.getBatchBytes());
+    }
+
+    @Test
+    public void saveOnlyUpdatedNodesInNewBatch() {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie trie = new TrieImpl(store, false).put("foo", "bar".getBytes());
+
+        trie.save();
+
+        trie = trie.put("bar", "foo".getBytes());
+
+        trie.save();
+        trie.save();
+
+        Assert.assertEquals(2, store.getBatchCount());
+
+        Trie result = store.retrieve(trie.getHash());
+
+        Assert.assertArrayEquals("bar".getBytes(), result.get("foo"));
+        Assert.assertArrayEquals("foo".getBytes(), result.get("bar"));
+    }
+
     @Test
     public void retrieveUnknownHash() {
         HashMapDB map = new HashMapDB();
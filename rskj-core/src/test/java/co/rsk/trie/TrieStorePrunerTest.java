@@ -0,0 +1,130 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.trie;
+
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TrieStorePrunerTest {
+    @Test
+    public void pruneNodesNotReachableFromRoots() {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie trie1 = new TrieImpl(store, false)
+                .put("foo", "bar".getBytes())
+                .put("bar", "foo".getBytes());
+
+        trie1.save();
+
+        Trie trie2 = trie1.put("foo", "baz".getBytes());
+
+        trie2.save();
+
+        int nkeys = map.keys().size();
+
+        TrieStorePruner pruner = new TrieStorePruner(store);
+
+        pruner.startPruning();
+        int deleted = pruner.prune(Collections.singletonList(trie2.getHash()));
+
+        Assert.assertTrue(deleted > 0);
+        Assert.assertEquals(nkeys - deleted, map.keys().size());
+        Assert.assertEquals(trie2.trieSize(), map.keys().size());
+        Assert.assertNull(map.get(trie1.getHash()));
+
+        Trie result = new TrieStoreImpl(map).retrieve(trie2.getHash());
+
+        Assert.assertArrayEquals("baz".getBytes(), result.get("foo"));
+        Assert.assertArrayEquals("foo".getBytes(), result.get("bar"));
+    }
+
+    @Test
+    public void keepNodesReachableFromAnyRoot() {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie trie1 = new TrieImpl(store, false).put("foo", "bar".getBytes());
+        trie1.save();
+
+        Trie trie2 = trie1.put("bar", "foo".getBytes());
+        trie2.save();
+
+        int nkeys = map.keys().size();
+
+        TrieStorePruner pruner = new TrieStorePruner(store);
+
+        pruner.startPruning();
+
+        Assert.assertEquals(0, pruner.prune(Arrays.asList(trie1.getHash(), trie2.getHash())));
+        Assert.assertEquals(nkeys, map.keys().size());
+    }
+
+    @Test
+    public void keepNodesSavedWhilePruning() {
+        HashMapDB map = new HashMapDB();
+        TrieStoreImpl store = new TrieStoreImpl(map);
+
+        Trie trie1 = new TrieImpl(store, false).put("foo", "bar".getBytes());
+        trie1.save();
+
+        TrieStorePruner pruner = new TrieStorePruner(store);
+
+        pruner.startPruning();
+
+        Trie trie2 = new TrieImpl(store, false).put("bar", "foo".getBytes());
+        trie2.save();
+
+        Assert.assertEquals(0, pruner.prune(Collections.singletonList(trie1.getHash())));
+        Assert.assertNotNull(map.get(trie2.getHash()));
+
+        pruner.startPruning();
+
+        Assert.assertEquals(1, pruner.prune(Collections.singletonList(trie1.getHash())));
+        Assert.assertNull(map.get(trie2.getHash()));
+    }
+
+    @Test
+    public void removePrunedNodesFromCache() {
+        HashMapDB map = new HashMapDB();
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieStoreImpl store = new TrieStoreImpl(map, cache);
+
+        Trie trie1 = new TrieImpl(store, false).put("foo", "bar".getBytes());
+        trie1.save();
+
+        Trie trie2 = new TrieImpl(store, false).put("bar", "foo".getBytes());
+        trie2.save();
+
+        Assert.assertEquals(2, cache.getNodeCount());
+
+        TrieStorePruner pruner = new TrieStorePruner(store);
+
+        pruner.startPruning();
+        pruner.prune(Collections.singletonList(trie2.getHash()));
+
+        Assert.assertEquals(1, cache.getNodeCount());
+        Assert.assertNull(store.retrieve(trie1.getHash()));
+        Assert.assertNotNull(store.retrieve(trie2.getHash()));
+    }
+}
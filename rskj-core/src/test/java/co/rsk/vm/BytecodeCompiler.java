@@ -104,6 +104,26 @@ public class BytecodeCompiler {
             return (byte)0x8e;
         if ("dup16".equals(token))
             return (byte)0x8f;
+        if ("swap1".equals(token))
+            return (byte)0x90;
+        if ("swap2".equals(token))
+            return (byte)0x91;
+        if ("swap3".equals(token))
+            return (byte)0x92;
+        if ("swap4".equals(token))
+            return (byte)0x93;
+        if ("stop".equals(token))
+            return 0x00;
+        if ("exp".equals(token))
+            return 0x0a;
+        if ("gas".equals(token))
+            return 0x5a;
+        if ("pop".equals(token))
+            return 0x50;
+        if ("mstore".equals(token))
+            return 0x52;
+        if ("sload".equals(token))
+            return 0x54;
         if ("jump".equals(token))
             return (byte)0x56;
         if ("jumpi".equals(token))
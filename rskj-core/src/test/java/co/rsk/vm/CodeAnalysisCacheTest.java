@@ -0,0 +1,78 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.vm;
+
+import org.ethereum.crypto.HashUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CodeAnalysisCacheTest {
+    @Test
+    public void getUnknownCode() {
+        CodeAnalysisCache cache = new CodeAnalysisCache(10);
+
+        Assert.assertNull(cache.get(HashUtil.sha3(new byte[] { 0x01 }), 1));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void putAndGetCodeAnalysis() {
+        CodeAnalysisCache cache = new CodeAnalysisCache(10);
+        byte[] codeHash = HashUtil.sha3(new byte[] { 0x5b });
+        CodeAnalysis analysis = new CodeAnalysis(1, (byte) 0, (byte) 0, 0, new BitSet(1));
+
+        cache.put(codeHash, analysis);
+
+        Assert.assertSame(analysis, cache.get(codeHash, 1));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void getWithOtherCodeLength() {
+        CodeAnalysisCache cache = new CodeAnalysisCache(10);
+        byte[] codeHash = HashUtil.sha3(new byte[] { 0x5b });
+
+        cache.put(codeHash, new CodeAnalysis(1, (byte) 0, (byte) 0, 0, new BitSet(1)));
+
+        Assert.assertNull(cache.get(codeHash, 2));
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        CodeAnalysisCache cache = new CodeAnalysisCache(2);
+        byte[] codeHash1 = HashUtil.sha3(new byte[] { 0x01 });
+        byte[] codeHash2 = HashUtil.sha3(new byte[] { 0x02 });
+        byte[] codeHash3 = HashUtil.sha3(new byte[] { 0x03 });
+
+        cache.put(codeHash1, new CodeAnalysis(1, (byte) 0, (byte) 0, 0, new BitSet(1)));
+        cache.put(codeHash2, new CodeAnalysis(1, (byte) 0, (byte) 0, 0, new BitSet(1)));
+
+        Assert.assertNotNull(cache.get(codeHash1, 1));
+
+        cache.put(codeHash3, new CodeAnalysis(1, (byte) 0, (byte) 0, 0, new BitSet(1)));
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get(codeHash1, 1));
+        Assert.assertNull(cache.get(codeHash2, 1));
+        Assert.assertNotNull(cache.get(codeHash3, 1));
+    }
+}
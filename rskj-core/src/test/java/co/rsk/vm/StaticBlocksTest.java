@@ -0,0 +1,84 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package co.rsk.vm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StaticBlocksTest {
+    private final BytecodeCompiler compiler = new BytecodeCompiler();
+
+    @Test
+    public void decodeRunsOfStaticInstructions() {
+        StaticBlocks blocks = StaticBlocks.decode(compiler.compile("PUSH1 1 PUSH1 2 ADD SLOAD PUSH1 3 POP"), 0);
+
+        Assert.assertEquals(2, blocks.getNumberOfRuns());
+
+        int run = blocks.getRun(0);
+
+        Assert.assertEquals(3, blocks.getLength(run));
+        Assert.assertEquals(9, blocks.getGas(run));
+        Assert.assertEquals(0, blocks.getStackNeeded(run));
+        Assert.assertEquals(2, blocks.getStackGrowth(run));
+
+        Assert.assertEquals(-1, blocks.getRun(2));
+        Assert.assertEquals(-1, blocks.getRun(5));
+
+        run = blocks.getRun(6);
+
+        Assert.assertEquals(2, blocks.getLength(run));
+        Assert.assertEquals(5, blocks.getGas(run));
+        Assert.assertEquals(0, blocks.getStackNeeded(run));
+        Assert.assertEquals(1, blocks.getStackGrowth(run));
+    }
+
+    @Test
+    public void startRunAtJumpDestination() {
+        StaticBlocks blocks = StaticBlocks.decode(compiler.compile("PUSH1 0x03 JUMP JUMPDEST PUSH1 1 ADD"), 0);
+
+        Assert.assertEquals(1, blocks.getNumberOfRuns());
+        Assert.assertEquals(-1, blocks.getRun(0));
+
+        int run = blocks.getRun(3);
+
+        Assert.assertEquals(3, blocks.getLength(run));
+        Assert.assertEquals(7, blocks.getGas(run));
+        Assert.assertEquals(1, blocks.getStackNeeded(run));
+        Assert.assertEquals(1, blocks.getStackGrowth(run));
+    }
+
+    @Test
+    public void stackNeededByDupAndSwap() {
+        StaticBlocks blocks = StaticBlocks.decode(compiler.compile("DUP2 SWAP3"), 0);
+
+        int run = blocks.getRun(0);
+
+        Assert.assertEquals(2, blocks.getLength(run));
+        Assert.assertEquals(3, blocks.getStackNeeded(run));
+        Assert.assertEquals(1, blocks.getStackGrowth(run));
+    }
+
+    @Test
+    public void noRunsWithoutStaticInstructions() {
+        StaticBlocks blocks = StaticBlocks.decode(compiler.compile("SLOAD GAS MSTORE PUSH1 1 EXP"), 0);
+
+        Assert.assertEquals(0, blocks.getNumberOfRuns());
+        Assert.assertEquals(-1, blocks.getRun(100));
+    }
+}
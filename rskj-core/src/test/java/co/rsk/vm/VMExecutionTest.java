@@ -18,6 +18,7 @@
 
 package co.rsk.vm;
 
+import org.ethereum.crypto.HashUtil;
 import org.ethereum.vm.VM;
 import org.ethereum.vm.program.Program;
 import org.ethereum.vm.program.invoke.ProgramInvokeMockImpl;
@@ -121,6 +122,50 @@ public class VMExecutionTest {
         }
     }
 
+    @Test
+    public void jumpUsingCachedCodeAnalysis() {
+        byte[] code = compiler.compile("PUSH1 0x05 JUMP PUSH1 0xa0 JUMPDEST PUSH1 0x01");
+        byte[] codeHash = HashUtil.sha3(code);
+        CodeAnalysisCache cache = Program.getCodeAnalysisCache();
+
+        for (int k = 0; k < 2; k++) {
+            long hits = cache.getHits();
+
+            VM vm = new VM();
+            program = new Program(code, codeHash, invoke);
+
+            for (int j = 0; j < 4; j++)
+                vm.step(program);
+
+            assertEquals("0000000000000000000000000000000000000000000000000000000000000001", Hex.toHexString(program.getStack().peek().getData()));
+            assertEquals(k == 0 ? hits : hits + 1, cache.getHits());
+        }
+    }
+
+    @Test
+    public void executeLoopWithStaticBlocks() {
+        byte[] code = compiler.compile("PUSH1 0x0a JUMPDEST PUSH1 0x01 SWAP1 SUB DUP1 PUSH1 0x02 JUMPI STOP");
+        boolean useStaticBlocks = VM.getUseStaticBlocks();
+
+        try {
+            VM.setUseStaticBlocks(false);
+            Program expected = new Program(code, invoke);
+            new VM().play(expected);
+
+            VM.setUseStaticBlocks(true);
+            Program result = new Program(code, invoke);
+            new VM().play(result);
+
+            Assert.assertNull(result.getResult().getException());
+            Assert.assertEquals(expected.getResult().getGasUsed(), result.getResult().getGasUsed());
+            Assert.assertArrayEquals(expected.getStack().toArray(), result.getStack().toArray());
+            Assert.assertTrue(result.getStack().peek().isZero());
+        }
+        finally {
+            VM.setUseStaticBlocks(useStaticBlocks);
+        }
+    }
+
     @Test
     public void thePathOfFifteenThousandJumps() {
         byte[] bytecode = new byte[15000 * 6 + 3];
@@ -0,0 +1,77 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ethereum.core;
+
+import org.ethereum.crypto.ECKey;
+import org.ethereum.db.ByteArrayWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.ethereum.TestUtils.randomAddress;
+
+public class TransactionSendersTest {
+    @Test
+    public void recoverSendersInParallel() {
+        List<Transaction> txs = new ArrayList<>();
+        List<ECKey> keys = new ArrayList<>();
+
+        for (int k = 0; k < 10; k++) {
+            ECKey key = new ECKey();
+            keys.add(key);
+            txs.add(new Transaction(createSignedTransaction(key, k).getEncoded()));
+        }
+
+        TransactionSenders.recoverSenders(txs);
+
+        for (int k = 0; k < 10; k++) {
+            Assert.assertTrue(txs.get(k).hasSender());
+            Assert.assertArrayEquals(keys.get(k).getAddress(), txs.get(k).getSender());
+        }
+    }
+
+    @Test
+    public void reuseRecoveredSender() {
+        ECKey key = new ECKey();
+        Transaction tx = createSignedTransaction(key, 1);
+        ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash());
+
+        Assert.assertNull(TransactionSenders.getSender(hash));
+
+        tx.getSender();
+
+        Assert.assertArrayEquals(key.getAddress(), TransactionSenders.getSender(hash));
+
+        Transaction received = new Transaction(tx.getEncoded());
+
+        Assert.assertFalse(received.hasSender());
+        Assert.assertArrayEquals(key.getAddress(), received.getSender());
+    }
+
+    private static Transaction createSignedTransaction(ECKey key, long nonce) {
+        Transaction tx = new Transaction(BigInteger.valueOf(nonce).toByteArray(), BigInteger.ONE.toByteArray(),
+                BigInteger.valueOf(21000).toByteArray(), randomAddress(), BigInteger.TEN.toByteArray(), null);
+        tx.sign(key.getPrivKeyBytes());
+        return tx;
+    }
+}
@@ -22,7 +22,9 @@ package org.ethereum.datasource;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.ethereum.TestUtils.randomBytes;
@@ -61,6 +63,26 @@ public class LevelDbDataSourceTest {
         dataSource.close();
     }
 
+    @Test
+    public void testDeletingWhileVisitingKeys() {
+        LevelDbDataSource dataSource = new LevelDbDataSource("test-keys");
+        dataSource.init();
+
+        final int batchSize = 100;
+        dataSource.updateBatch(createBatch(batchSize));
+
+        List<byte[]> keys = new ArrayList<>();
+        dataSource.forEachKey(key -> {
+            keys.add(key);
+            dataSource.delete(key);
+        });
+
+        assertEquals(batchSize, keys.size());
+        assertEquals(0, dataSource.keys().size());
+
+        dataSource.close();
+    }
+
     private static Map<byte[], byte[]> createBatch(int batchSize) {
         HashMap<byte[], byte[]> result = new HashMap<>();
         for (int i = 0; i < batchSize; i++) {
@@ -20,6 +20,7 @@
 package org.ethereum.db;
 
 import co.rsk.db.ContractDetailsImpl;
+import co.rsk.trie.TrieStoreImpl;
 import org.ethereum.config.SystemProperties;
 import org.ethereum.datasource.DataSourcePool;
 import org.ethereum.datasource.HashMapDB;
@@ -29,6 +30,8 @@ import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.ethereum.TestUtils.*;
@@ -145,6 +148,43 @@ public class DetailsDataStoreTest {
         assertEquals(encoded1, encoded2);
     }
 
+    @Test
+    public void flushUsingTrieStore() {
+        HashMapDB map = new HashMapDB();
+        DatabaseImpl db = new DatabaseImpl(new HashMapDB());
+        DetailsDataStore dds = new DetailsDataStore();
+        dds.setDB(db);
+        dds.setTrieStore(new TrieStoreImpl(map));
+
+        byte[] c_key = Hex.decode("1a2b");
+        byte[] code = Hex.decode("60606060");
+        byte[] key =  Hex.decode("11");
+        byte[] value =  Hex.decode("aa");
+
+        ContractDetails contractDetails = new ContractDetailsImpl();
+        contractDetails.setCode(code);
+        contractDetails.put(new DataWord(key), new DataWord(value));
+
+        dds.update(c_key, contractDetails);
+        dds.flush();
+
+        assertFalse(map.keys().isEmpty());
+        List<byte[]> roots = new ArrayList<>();
+        dds.forEachStorageKeysRoot(roots::add);
+        assertEquals(1, roots.size());
+
+        DetailsDataStore dds2 = new DetailsDataStore();
+        dds2.setDB(db);
+        dds2.setTrieStore(new TrieStoreImpl(map));
+
+        ContractDetails result = dds2.get(c_key);
+
+        assertArrayEquals(code, result.getCode());
+        assertArrayEquals(contractDetails.getStorageHash(), result.getStorageHash());
+        assertEquals(new DataWord(value), result.get(new DataWord(key)));
+        assertEquals(1, result.getStorageSize());
+    }
+
     @Test
     public void test4() {
 
@@ -0,0 +1,118 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ethereum.db;
+
+import co.rsk.blockchain.utils.BlockGenerator;
+import co.rsk.net.utils.TransactionUtils;
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.datasource.HashMapDB;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class IndexedBlockStoreHeadersTest {
+    private List<Block> blocks;
+    private IndexedBlockStore indexedBlockStore;
+
+    @Before
+    public void setup() {
+        Block genesis = BlockGenerator.getGenesisBlock();
+
+        blocks = new ArrayList<>();
+        blocks.add(genesis);
+        blocks.addAll(BlockGenerator.getBlockChain(genesis, 20));
+
+        indexedBlockStore = new IndexedBlockStore();
+        indexedBlockStore.init(new HashMap<>(), new HashMapDB(), null, null);
+
+        BigInteger cummDiff = BigInteger.ZERO;
+
+        for (Block block : blocks.subList(0, 20)) {
+            cummDiff = cummDiff.add(block.getCumulativeDifficulty());
+            indexedBlockStore.saveBlock(block, cummDiff, true);
+        }
+    }
+
+    @Test
+    public void parseHeader() {
+        Block uncle = BlockGenerator.createChildBlock(blocks.get(4));
+        Block block = BlockGenerator.createChildBlock(blocks.get(5), TransactionUtils.getTransactions(2),
+                Collections.singletonList(uncle.getHeader()), 1, null);
+        BlockHeader header = Block.parseHeader(block.getEncoded());
+
+        Assert.assertArrayEquals(block.getHash(), header.getHash());
+        Assert.assertArrayEquals(block.getHeader().getEncoded(), header.getEncoded());
+    }
+
+    @Test
+    public void getBlockHashByNumber() {
+        for (int k = 0; k < 20; k++)
+            Assert.assertArrayEquals(blocks.get(k).getHash(), indexedBlockStore.getBlockHashByNumber(k));
+
+        Assert.assertNull(indexedBlockStore.getBlockHashByNumber(20));
+    }
+
+    @Test
+    public void getBlockHeaderByHash() {
+        Block block = blocks.get(15);
+        BlockHeader header = indexedBlockStore.getBlockHeaderByHash(block.getHash());
+
+        Assert.assertArrayEquals(block.getHash(), header.getHash());
+        Assert.assertEquals(15, header.getNumber());
+        Assert.assertNull(indexedBlockStore.getBlockHeaderByHash(blocks.get(20).getHash()));
+    }
+
+    @Test
+    public void getHeadersToParents() {
+        List<BlockHeader> headers = indexedBlockStore.getHeaders(blocks.get(10).getHash(), 3, 1, false);
+
+        Assert.assertEquals(3, headers.size());
+        Assert.assertArrayEquals(blocks.get(10).getHash(), headers.get(0).getHash());
+        Assert.assertArrayEquals(blocks.get(8).getHash(), headers.get(1).getHash());
+        Assert.assertArrayEquals(blocks.get(6).getHash(), headers.get(2).getHash());
+
+        headers = indexedBlockStore.getHeaders(blocks.get(3).getHash(), 10, 0, false);
+
+        Assert.assertEquals(4, headers.size());
+        Assert.assertArrayEquals(blocks.get(0).getHash(), headers.get(3).getHash());
+    }
+
+    @Test
+    public void getHeadersToChildren() {
+        List<BlockHeader> headers = indexedBlockStore.getHeaders(blocks.get(2).getHash(), 3, 2, true);
+
+        Assert.assertEquals(3, headers.size());
+        Assert.assertArrayEquals(blocks.get(2).getHash(), headers.get(0).getHash());
+        Assert.assertArrayEquals(blocks.get(5).getHash(), headers.get(1).getHash());
+        Assert.assertArrayEquals(blocks.get(8).getHash(), headers.get(2).getHash());
+
+        headers = indexedBlockStore.getHeaders(blocks.get(17).getHash(), 10, 0, true);
+
+        Assert.assertEquals(3, headers.size());
+        Assert.assertArrayEquals(blocks.get(19).getHash(), headers.get(2).getHash());
+    }
+}
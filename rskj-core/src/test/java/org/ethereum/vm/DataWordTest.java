@@ -24,6 +24,10 @@ import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BinaryOperator;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -204,6 +208,159 @@ public class DataWordTest {
         System.out.println(result2);
     }
 
+    @Test
+    public void arithmeticAsBigInteger() {
+        List<DataWord> words = createWords();
+
+        for (DataWord word1 : words)
+            for (DataWord word2 : words) {
+                assertOperation("add", word1, word2, (a, b) -> a.add(b));
+                assertOperation("sub", word1, word2, (a, b) -> a.subtract(b));
+                assertOperation("mul", word1, word2, (a, b) -> a.multiply(b));
+                assertOperation("div", word1, word2, (a, b) -> b.signum() == 0 ? BigInteger.ZERO : a.divide(b));
+                assertOperation("mod", word1, word2, (a, b) -> b.signum() == 0 ? BigInteger.ZERO : a.mod(b));
+                assertSignedOperation("sDiv", word1, word2, (a, b) -> b.signum() == 0 ? BigInteger.ZERO : a.divide(b));
+                assertSignedOperation("sMod", word1, word2, (a, b) -> b.signum() == 0 ? BigInteger.ZERO : a.abs().mod(b.abs()).multiply(BigInteger.valueOf(a.signum() < 0 ? -1 : 1)));
+
+                DataWord result = word1.clone();
+                result.exp(word2.clone());
+                assertEquals("exp " + word1 + " " + word2, word1.value().modPow(word2.value(), DataWord._2_256), result.value());
+
+                assertEquals(word1.sValue().compareTo(word2.sValue()), word1.compareToSigned(word2));
+
+                for (DataWord word3 : words) {
+                    DataWord mulmod = word1.clone();
+                    mulmod.mulmod(word2.clone(), word3.clone());
+                    BigInteger expected = word3.isZero() ? BigInteger.ZERO : word1.value().multiply(word2.value()).mod(word3.value());
+                    assertEquals("mulmod " + word1 + " " + word2 + " " + word3, expected, mulmod.value());
+                }
+            }
+    }
+
+    @Test
+    public void expOfPowersOfTwo() {
+        for (int k : new int[] { 0, 1, 7, 32, 100, 255 })
+            for (int e = 0; e <= 300; e++) {
+                byte[] bytes = new byte[32];
+                bytes[31 - k / 8] = (byte) (1 << (k % 8));
+
+                DataWord base = new DataWord(bytes);
+                DataWord exponent = new DataWord(e);
+                BigInteger expected = BigInteger.ONE.shiftLeft(k).modPow(BigInteger.valueOf(e), DataWord._2_256);
+
+                base.exp(exponent);
+
+                assertEquals("exp 2^" + k + " " + e, expected, base.value());
+            }
+    }
+
+    @Test
+    public void operateWithItself() {
+        DataWord word = new DataWord("ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff56");
+        BigInteger value = word.value();
+
+        word.mul(word);
+        assertEquals(value.multiply(value).and(DataWord.MAX_VALUE), word.value());
+
+        word.sub(word);
+        assertTrue(word.isZero());
+    }
+
+    @Test
+    public void testArithmeticPerformance() {
+        boolean enabled = false;
+
+        if (enabled) {
+            List<DataWord> words = createWords();
+            int ITERATIONS = 100;
+
+            for (String operation : new String[] { "mul", "div", "sDiv", "sub", "exp", "mod", "sMod", "mulmod" }) {
+                long now1 = System.currentTimeMillis();
+                for (int i = 0; i < ITERATIONS; i++)
+                    for (DataWord word1 : words)
+                        for (DataWord word2 : words)
+                            executeOperation(operation, word1.clone(), word2);
+                long time1 = System.currentTimeMillis() - now1;
+
+                long now2 = System.currentTimeMillis();
+                for (int i = 0; i < ITERATIONS; i++)
+                    for (DataWord word1 : words)
+                        for (DataWord word2 : words)
+                            executeBigIntegerOperation(operation, word1, word2);
+                long time2 = System.currentTimeMillis() - now2;
+
+                System.out.println(operation + ": " + time1 + "ms, with BigInteger: " + time2 + "ms");
+            }
+        } else {
+            System.out.println("Arithmetic performance test is disabled.");
+        }
+    }
+
+    private static void executeOperation(String operation, DataWord word1, DataWord word2) {
+        switch (operation) {
+            case "add": word1.add(word2); break;
+            case "mul": word1.mul(word2); break;
+            case "div": word1.div(word2); break;
+            case "sDiv": word1.sDiv(word2); break;
+            case "sub": word1.sub(word2); break;
+            case "exp": word1.exp(word2); break;
+            case "mod": word1.mod(word2); break;
+            case "sMod": word1.sMod(word2); break;
+            default: word1.mulmod(word2, word2); break;
+        }
+    }
+
+    private static BigInteger executeBigIntegerOperation(String operation, DataWord word1, DataWord word2) {
+        BigInteger a = word1.value();
+        BigInteger b = word2.value();
+
+        switch (operation) {
+            case "mul": return a.multiply(b).and(DataWord.MAX_VALUE);
+            case "div": return b.signum() == 0 ? BigInteger.ZERO : a.divide(b);
+            case "sDiv": return b.signum() == 0 ? BigInteger.ZERO : word1.sValue().divide(word2.sValue()).and(DataWord.MAX_VALUE);
+            case "sub": return a.subtract(b).and(DataWord.MAX_VALUE);
+            case "exp": return a.modPow(b, DataWord._2_256);
+            case "mod": return b.signum() == 0 ? BigInteger.ZERO : a.mod(b);
+            case "sMod": return b.signum() == 0 ? BigInteger.ZERO : word1.sValue().abs().mod(word2.sValue().abs()).and(DataWord.MAX_VALUE);
+            default: return b.signum() == 0 ? BigInteger.ZERO : a.multiply(b).mod(b);
+        }
+    }
+
+    private static void assertOperation(String name, DataWord word1, DataWord word2, BinaryOperator<BigInteger> operation) {
+        DataWord result = word1.clone();
+        executeOperation(name, result, word2.clone());
+        assertEquals(name + " " + word1 + " " + word2, operation.apply(word1.value(), word2.value()).and(DataWord.MAX_VALUE), result.value());
+    }
+
+    private static void assertSignedOperation(String name, DataWord word1, DataWord word2, BinaryOperator<BigInteger> operation) {
+        DataWord result = word1.clone();
+        executeOperation(name, result, word2.clone());
+        assertEquals(name + " " + word1 + " " + word2, operation.apply(word1.sValue(), word2.sValue()).and(DataWord.MAX_VALUE), result.value());
+    }
+
+    private static List<DataWord> createWords() {
+        List<DataWord> words = new ArrayList<>();
+        Random random = new Random(42);
+
+        words.add(new DataWord(0));
+        words.add(new DataWord(1));
+        words.add(new DataWord(2));
+        words.add(new DataWord("ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff"));
+        words.add(new DataWord("8000000000000000000000000000000000000000000000000000000000000000"));
+        words.add(new DataWord("7fffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff"));
+        words.add(new DataWord("0000000000000000000000000000000100000000000000000000000000000000"));
+        words.add(new DataWord("00000000000000000000000000000000ffffffffffffffffffffffffffffffff"));
+        words.add(new DataWord("0000000000000000000000000000000000000000000000010000000000000001"));
+
+        for (int k = 1; k <= 32; k += 3) {
+            byte[] bytes = new byte[k];
+            random.nextBytes(bytes);
+            words.add(new DataWord(bytes));
+        }
+
+        return words;
+    }
+
     @Test
     public void testSignExtend1() {
 
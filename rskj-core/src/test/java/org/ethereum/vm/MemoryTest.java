@@ -530,6 +530,47 @@ public class MemoryTest {
         assertTrue(zero == 10);
     }
 
+    @Test
+    public void writeAndReadAcrossChunks() {
+        Memory memoryBuffer = new Memory();
+
+        byte[] data = new byte[CHUNK_SIZE * 2];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) i;
+
+        memoryBuffer.write(1000, data, data.length, false);
 
+        assertEquals(3 * CHUNK_SIZE, memoryBuffer.internalSize());
+        assertEquals(1000 + data.length + 24, memoryBuffer.size());
+        assertArrayEquals(data, memoryBuffer.read(1000, data.length));
+        assertEquals(0, memoryBuffer.readByte(999));
+        assertEquals(data[2048 - 1000], memoryBuffer.getChunks().get(2)[0]);
+    }
+
+    @Test
+    public void testWordsPerformance() {
+        boolean enabled = false;
 
-}
\ No newline at end of file
+        if (enabled) {
+            int memorySize = 64 * CHUNK_SIZE;
+            int ITERATIONS = 1000;
+            DataWord word = new DataWord(42);
+
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Memory memoryBuffer = new Memory();
+
+                for (int address = 0; address < memorySize; address += WORD_SIZE)
+                    memoryBuffer.write(address, word.getData(), WORD_SIZE, false);
+
+                for (int address = 0; address < memorySize; address += WORD_SIZE)
+                    memoryBuffer.readWord(address);
+
+                memoryBuffer.read(0, memorySize);
+            }
+            System.out.println("Memory words: " + (System.currentTimeMillis() - now) + "ms");
+        } else {
+            System.out.println("Memory performance test is disabled.");
+        }
+    }
+}
@@ -19,6 +19,8 @@
 
 package org.ethereum.vm;
 
+import co.rsk.peg.Bridge;
+import co.rsk.remasc.RemascContract;
 import org.ethereum.core.CallTransaction;
 import org.ethereum.util.ByteUtil;
 import org.ethereum.vm.PrecompiledContracts.PrecompiledContract;
@@ -118,4 +120,29 @@ public class PrecompiledContractTest {
         System.out.println(Hex.toHexString(result));
 
     }
+
+    @Test
+    public void getContractsByAddress() {
+        DataWord identityAddress = new DataWord(PrecompiledContracts.IDENTITY_ADDR);
+
+        Assert.assertSame(PrecompiledContracts.getContractForAddress(identityAddress), PrecompiledContracts.getContractForAddress(new DataWord(PrecompiledContracts.IDENTITY_ADDR)));
+        Assert.assertTrue(PrecompiledContracts.getContractForAddress(new DataWord(PrecompiledContracts.MODEXP_ADDR)) instanceof PrecompiledContracts.Modexp);
+        Assert.assertNull(PrecompiledContracts.getContractForAddress(new DataWord(5)));
+    }
+
+    @Test
+    public void getNewBridgeAndRemascInstances() {
+        DataWord bridgeAddress = new DataWord(PrecompiledContracts.BRIDGE_ADDR);
+        DataWord remascAddress = new DataWord(PrecompiledContracts.REMASC_ADDR);
+
+        PrecompiledContract bridge = PrecompiledContracts.getContractForAddress(bridgeAddress);
+        PrecompiledContract remasc = PrecompiledContracts.getContractForAddress(remascAddress);
+
+        Assert.assertTrue(bridge instanceof Bridge);
+        Assert.assertTrue(remasc instanceof RemascContract);
+        Assert.assertEquals(PrecompiledContracts.BRIDGE_ADDR, bridge.contractAddress);
+        Assert.assertEquals(PrecompiledContracts.REMASC_ADDR, remasc.contractAddress);
+        Assert.assertNotSame(bridge, PrecompiledContracts.getContractForAddress(bridgeAddress));
+        Assert.assertNotSame(remasc, PrecompiledContracts.getContractForAddress(remascAddress));
+    }
 }
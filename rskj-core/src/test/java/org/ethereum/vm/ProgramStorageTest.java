@@ -0,0 +1,72 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.vm;
+
+import org.ethereum.core.Repository;
+import org.ethereum.util.ByteUtil;
+import org.ethereum.vm.program.Program;
+import org.ethereum.vm.program.invoke.ProgramInvokeMockImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ProgramStorageTest {
+    private ProgramInvokeMockImpl invoke = new ProgramInvokeMockImpl();
+
+    @Test
+    public void saveAndLoadStorage() {
+        Program program = new Program(ByteUtil.EMPTY_BYTE_ARRAY, invoke);
+        byte[] owner = program.getOwnerAddress().getLast20Bytes();
+
+        Assert.assertNull(program.storageLoad(DataWord.ONE));
+
+        program.storageSave(DataWord.ONE, new DataWord(42));
+
+        DataWord value = program.storageLoad(DataWord.ONE);
+
+        Assert.assertEquals(new DataWord(42), value);
+        Assert.assertEquals(new DataWord(42), invoke.getRepository().getStorageValue(owner, DataWord.ONE));
+
+        value.add(DataWord.ONE);
+
+        Assert.assertEquals(new DataWord(42), program.storageLoad(DataWord.ONE));
+
+        program.storageSave(DataWord.ONE, DataWord.ZERO);
+
+        Assert.assertNull(program.storageLoad(DataWord.ONE));
+        Assert.assertNull(invoke.getRepository().getStorageValue(owner, DataWord.ONE));
+    }
+
+    @Test
+    public void loadStorageValueOnlyOnce() {
+        Repository repository = Mockito.mock(Repository.class);
+        Mockito.when(repository.getStorageValue(Mockito.any(), Mockito.eq(DataWord.ONE))).thenReturn(new DataWord(42));
+        invoke.setRepository(repository);
+
+        Program program = new Program(ByteUtil.EMPTY_BYTE_ARRAY, invoke);
+
+        for (int k = 0; k < 10; k++) {
+            Assert.assertEquals(new DataWord(42), program.storageLoad(DataWord.ONE));
+            Assert.assertNull(program.storageLoad(DataWord.ZERO));
+        }
+
+        Mockito.verify(repository, Mockito.times(1)).getStorageValue(Mockito.any(), Mockito.eq(DataWord.ONE));
+        Mockito.verify(repository, Mockito.times(1)).getStorageValue(Mockito.any(), Mockito.eq(DataWord.ZERO));
+    }
+}
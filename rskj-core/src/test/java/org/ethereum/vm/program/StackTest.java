@@ -0,0 +1,95 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.ethereum.vm.program;
+
+import org.ethereum.vm.DataWord;
+import org.ethereum.vm.program.listener.ProgramListener;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class StackTest {
+    @Test
+    public void pushPeekAndPop() {
+        Stack stack = new Stack();
+
+        stack.push(new DataWord(1));
+        stack.push(new DataWord(2));
+
+        Assert.assertEquals(2, stack.size());
+        Assert.assertEquals(new DataWord(2), stack.peek());
+        Assert.assertEquals(new DataWord(1), stack.get(0));
+        Assert.assertEquals(new DataWord(2), stack.pop());
+        Assert.assertEquals(new DataWord(1), stack.pop());
+        Assert.assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void swapElements() {
+        Stack stack = new Stack();
+
+        for (int k = 0; k < 3; k++)
+            stack.push(new DataWord(k));
+
+        stack.swap(2, 0);
+
+        Assert.assertArrayEquals(new DataWord[] { new DataWord(2), new DataWord(1), new DataWord(0) }, stack.toArray());
+
+        stack.swap(2, 3);
+
+        Assert.assertEquals(new DataWord(0), stack.peek());
+    }
+
+    @Test
+    public void clearAndIterate() {
+        Stack stack = new Stack();
+
+        for (int k = 0; k < Stack.MAX_SIZE; k++)
+            stack.push(new DataWord(k));
+
+        int count = 0;
+
+        for (DataWord item : stack)
+            Assert.assertEquals(new DataWord(count++), item);
+
+        Assert.assertEquals(Stack.MAX_SIZE, count);
+
+        stack.clear();
+
+        Assert.assertEquals(0, stack.size());
+        Assert.assertEquals(0, stack.toArray().length);
+    }
+
+    @Test
+    public void notifyTraceListener() {
+        Stack stack = new Stack();
+        ProgramListener listener = Mockito.mock(ProgramListener.class);
+        stack.setTraceListener(listener);
+
+        DataWord word = new DataWord(1);
+        stack.push(word);
+        stack.push(new DataWord(2));
+        stack.swap(1, 0);
+        stack.pop();
+
+        Mockito.verify(listener, Mockito.times(1)).onStackPush(word);
+        Mockito.verify(listener, Mockito.times(1)).onStackSwap(1, 0);
+        Mockito.verify(listener, Mockito.times(1)).onStackPop();
+    }
+}
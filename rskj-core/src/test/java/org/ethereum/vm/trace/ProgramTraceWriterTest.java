@@ -0,0 +1,166 @@
+/*
+ * This file is part of RskJ
+ * Copyright (C) 2017 RSK Labs Ltd.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.ethereum.vm.trace;
+
+import org.ethereum.listener.EthereumListener;
+import org.ethereum.util.FileUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.spongycastle.util.encoders.Hex;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+public class ProgramTraceWriterTest {
+    private String testDir;
+
+    @Before
+    public void setup() {
+        testDir = "test_vmtrace_" + new BigInteger(32, new Random());
+    }
+
+    @After
+    public void cleanup() {
+        FileUtil.recursiveDelete(testDir);
+    }
+
+    @Test
+    public void saveTraceFilePerTransaction() throws Exception {
+        ProgramTraceWriter writer = new ProgramTraceWriter(new File(testDir), false, false, 10);
+        EthereumListener listener = Mockito.mock(EthereumListener.class);
+
+        writer.submit(1, "aa", "0102", createTrace("01"), listener);
+        writer.flush();
+
+        File file = new File(testDir, "0102.json");
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+
+        Assert.assertTrue(content.contains("\"result\" : \"01\""));
+        Mockito.verify(listener, Mockito.times(1)).onVMTraceCreated("0102", content);
+    }
+
+    @Test
+    public void appendTracesToBlockFile() throws Exception {
+        ProgramTraceWriter writer = new ProgramTraceWriter(new File(testDir), true, false, 1);
+
+        writer.submit(1, "aa", "0102", createTrace("01"), null);
+        writer.submit(1, "aa", "0304", createTrace("02"), null);
+        writer.flush();
+        writer.submit(1, "aa", "0506", createTrace("03"), null);
+        writer.submit(2, "bb", "0708", createTrace("04"), null);
+        writer.flush();
+
+        List<String> lines = readLines(new File(testDir, "1-aa.json.gz"));
+
+        Assert.assertEquals(3, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("{\"transactionHash\":\"0102\",\"trace\":{"));
+        Assert.assertTrue(lines.get(0).contains("\"result\":\"01\""));
+        Assert.assertTrue(lines.get(1).startsWith("{\"transactionHash\":\"0304\""));
+        Assert.assertTrue(lines.get(2).startsWith("{\"transactionHash\":\"0506\""));
+
+        lines = readLines(new File(testDir, "2-bb.json.gz"));
+
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("{\"transactionHash\":\"0708\""));
+    }
+
+    @Test
+    public void replaceTracesOfReexecutedBlock() throws Exception {
+        ProgramTraceWriter writer = new ProgramTraceWriter(new File(testDir), true, false, 1);
+
+        writer.submit(1, "aa", "0102", createTrace("01"), null);
+        writer.submit(1, "aa", "0304", createTrace("02"), null);
+        writer.flush();
+        writer.submit(1, "aa", "0102", createTrace("01"), null);
+        writer.submit(1, "aa", "0304", createTrace("02"), null);
+        writer.flush();
+
+        List<String> lines = readLines(new File(testDir, "1-aa.json.gz"));
+
+        Assert.assertEquals(2, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("{\"transactionHash\":\"0102\""));
+        Assert.assertTrue(lines.get(1).startsWith("{\"transactionHash\":\"0304\""));
+
+        writer = new ProgramTraceWriter(new File(testDir), true, false, 1);
+
+        writer.submit(1, "aa", "0102", createTrace("01"), null);
+        writer.flush();
+
+        lines = readLines(new File(testDir, "1-aa.json.gz"));
+
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("{\"transactionHash\":\"0102\""));
+    }
+
+    @Test
+    public void closeSavesEnqueuedTraces() throws Exception {
+        ProgramTraceWriter writer = new ProgramTraceWriter(new File(testDir), true, false, 10);
+
+        writer.submit(1, "aa", "0102", createTrace("01"), null);
+        writer.submit(1, "aa", "0304", createTrace("02"), null);
+        writer.close();
+
+        List<String> lines = readLines(new File(testDir, "1-aa.json.gz"));
+
+        Assert.assertEquals(2, lines.size());
+        Assert.assertTrue(lines.get(1).startsWith("{\"transactionHash\":\"0304\""));
+    }
+
+    @Test
+    public void filterByAddress() {
+        byte[] address = Hex.decode("0000000000000000000000000000000001000008");
+        byte[] other = Hex.decode("0000000000000000000000000000000001000006");
+
+        ProgramTraceWriter writer = new ProgramTraceWriter(null, false, false, 1, Collections.singletonList("0000000000000000000000000000000001000008"));
+
+        Assert.assertTrue(writer.isTraced(address));
+        Assert.assertFalse(writer.isTraced(other));
+        Assert.assertFalse(writer.isTraced(null));
+
+        writer = new ProgramTraceWriter(null, false, false, 1);
+
+        Assert.assertTrue(writer.isTraced(other));
+    }
+
+    private static ProgramTrace createTrace(String result) {
+        return new ProgramTrace().result(Hex.decode(result)).error(null);
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+                lines.add(line);
+        }
+
+        return lines;
+    }
+}